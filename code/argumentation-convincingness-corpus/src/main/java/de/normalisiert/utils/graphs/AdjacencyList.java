@@ -26,8 +26,6 @@
  */
 package de.normalisiert.utils.graphs;
 
-import java.util.Vector;
-
 /**
  * Calculates the adjacency-list for a given adjacency-matrix.
  *
@@ -51,17 +49,19 @@ public class AdjacencyList
         int[][] list = new int[adjacencyMatrix.length][];
 
         for (int i = 0; i < adjacencyMatrix.length; i++) {
-            Vector v = new Vector();
+            int size = 0;
             for (int j = 0; j < adjacencyMatrix[i].length; j++) {
                 if (adjacencyMatrix[i][j]) {
-                    v.add(new Integer(j));
+                    size++;
                 }
             }
 
-            list[i] = new int[v.size()];
-            for (int j = 0; j < v.size(); j++) {
-                Integer in = (Integer) v.get(j);
-                list[i][j] = in.intValue();
+            list[i] = new int[size];
+            size = 0;
+            for (int j = 0; j < adjacencyMatrix[i].length; j++) {
+                if (adjacencyMatrix[i][j]) {
+                    list[i][size++] = j;
+                }
             }
         }
 
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2016
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.normalisiert.utils.graphs;
+
+/**
+ * Callback for the elementary cycles found by {@link ElementaryCyclesSearch}.
+ *
+ * @author Ivan Habernal
+ */
+public interface CycleHandler
+{
+    /**
+     * Called for each elementary cycle. The array is re-used by the search, so it must be
+     * copied if needed after returning from this method.
+     *
+     * @param cycle  node indices of the cycle (first {@code length} entries), starting with
+     *               the lowest node index
+     * @param length length of the cycle (number of nodes)
+     * @return true to continue the search, false to stop it
+     */
+    boolean cycleFound(int[] cycle, int length);
+}
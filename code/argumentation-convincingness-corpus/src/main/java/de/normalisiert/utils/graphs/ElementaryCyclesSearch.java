@@ -23,21 +23,29 @@
  * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
  * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
  * OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The iterative implementation on primitive arrays (BitSet blocking, cycle length cap,
+ * cycle budget, cycle callback) is new work by the Ubiquitous Knowledge Processing (UKP) Lab,
+ * Technische Universität Darmstadt, 2016, based on the original code above.
  */
 package de.normalisiert.utils.graphs;
 
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
-import java.util.Vector;
 
 /**
  * Searchs all elementary cycles in a given directed graph. The implementation
  * is independent from the concrete objects that represent the graphnodes, it
- * just needs an array of the objects representing the nodes the graph
- * and an adjacency-matrix of type boolean, representing the edges of the
- * graph. It then calculates based on the adjacency-matrix the elementary
- * cycles and returns a list, which contains lists itself with the objects of the
- * concrete graphnodes-implementation. Each of these lists represents an
- * elementary cycle.<br><br>
+ * just needs an adjacency-list (or an adjacency-matrix of type boolean)
+ * representing the edges of the graph. Each elementary cycle found is passed
+ * to a {@link CycleHandler} as soon as it is found; {@link #getElementaryCycles()}
+ * collects them into a list, which contains lists itself with the objects of the
+ * concrete graphnodes-implementation.<br><br>
+ * <p/>
+ * The search can be limited by the maximal length of the cycles (longer cycles are not
+ * enumerated at all) and by the maximal number of cycles (10,000 by default); self-loops
+ * are reported as cycles of length 1.<br><br>
  * <p/>
  * The implementation uses the algorithm of Donald B. Johnson for the search of
  * the elementary cycles. For a description of the algorithm see:<br>
@@ -49,40 +57,62 @@ import java.util.Vector;
  * Robert Tarjan: Depth-first search and linear graph algorithms. In: SIAM
  * Journal on Computing. Volume 1, Nr. 2 (1972), pp. 146-160.<br>
  *
- * @author Frank Meyer, web_at_normalisiert_dot_de
- * @version 1.2, 22.03.2009
+ * @author Frank Meyer, web_at_normalisiert_dot_de (original recursive implementation)
+ * @author Ivan Habernal (iterative rewrite)
  */
 public class ElementaryCyclesSearch
 {
     /**
-     * List of cycles
+     * Default maximal number of cycles
      */
-    private List<List<Object>> cycles = null;
+    public static final int DEFAULT_MAX_CYCLES = 10000;
 
     /**
      * Adjacency-list of graph
      */
-    private int[][] adjList = null;
+    private final int[][] adjList;
 
     /**
      * Graphnodes
      */
-    private Object[] graphNodes = null;
+    private final Object[] graphNodes;
+
+    /**
+     * Maximal length of cycles (number of nodes)
+     */
+    private int maxCycleLength = Integer.MAX_VALUE;
+
+    /**
+     * Maximal number of cycles
+     */
+    private int maxCycles = DEFAULT_MAX_CYCLES;
 
     /**
      * Blocked nodes, used by the algorithm of Johnson
      */
-    private boolean[] blocked = null;
+    private BitSet blocked;
 
     /**
      * B-Lists, used by the algorithm of Johnson
      */
-    private Vector[] B = null;
+    private BitSet[] B;
 
     /**
-     * Stack for nodes, used by the algorithm of Johnson
+     * Helper stack for unblocking
      */
-    private Vector<Integer> stack = null;
+    private int[] unblockStack;
+
+    /**
+     * Current path of the depth-first search, index of the next successor to visit and flag
+     * whether a cycle has been found from the node on each position
+     */
+    private int[] path;
+    private int[] pathEdge;
+    private boolean[] pathFound;
+
+    private int cycleCount;
+
+    private boolean stopped;
 
     /**
      * Constructor.
@@ -93,9 +123,61 @@ public class ElementaryCyclesSearch
      *                   graph-representation
      */
     public ElementaryCyclesSearch(boolean[][] matrix, Object[] graphNodes)
+    {
+        this(AdjacencyList.getAdjacencyList(matrix), graphNodes);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param adjList    adjacency-list of the graph (first dimension represents the node,
+     *                   second dimension its direct successors)
+     * @param graphNodes array of the graphnodes of the graph; this is used to
+     *                   build sets of the elementary cycles containing the objects of the original
+     *                   graph-representation (may be null if only {@link #search(CycleHandler)}
+     *                   is used)
+     */
+    public ElementaryCyclesSearch(int[][] adjList, Object[] graphNodes)
     {
         this.graphNodes = graphNodes;
-        this.adjList = AdjacencyList.getAdjacencyList(matrix);
+        this.adjList = adjList;
+    }
+
+    /**
+     * Sets the maximal length (number of nodes) of the cycles; longer cycles are not searched
+     *
+     * @param maxCycleLength length (default: unlimited)
+     */
+    public void setMaxCycleLength(int maxCycleLength)
+    {
+        if (maxCycleLength < 1) {
+            throw new IllegalArgumentException("Maximal cycle length must be positive");
+        }
+        this.maxCycleLength = maxCycleLength;
+    }
+
+    /**
+     * Sets the maximal number of cycles; the search stops after finding them
+     *
+     * @param maxCycles number of cycles (default: {@link #DEFAULT_MAX_CYCLES})
+     */
+    public void setMaxCycles(int maxCycles)
+    {
+        if (maxCycles < 1) {
+            throw new IllegalArgumentException("Maximal number of cycles must be positive");
+        }
+        this.maxCycles = maxCycles;
+    }
+
+    /**
+     * Returns true if the last search was stopped before finding all cycles (by reaching
+     * the maximal number of cycles or by the handler)
+     *
+     * @return boolean
+     */
+    public boolean isStopped()
+    {
+        return stopped;
     }
 
     /**
@@ -106,110 +188,164 @@ public class ElementaryCyclesSearch
      */
     public List<List<Object>> getElementaryCycles()
     {
-        this.cycles = new Vector<>();
-        this.blocked = new boolean[this.adjList.length];
-        this.B = new Vector[this.adjList.length];
-        this.stack = new Vector<>();
+        final List<List<Object>> cycles = new ArrayList<>();
+
+        this.search(new CycleHandler()
+        {
+            @Override
+            public boolean cycleFound(int[] cycle, int length)
+            {
+                List<Object> nodes = new ArrayList<>(length);
+                for (int i = 0; i < length; i++) {
+                    nodes.add(graphNodes[cycle[i]]);
+                }
+                cycles.add(nodes);
+                return true;
+            }
+        });
+
+        return cycles;
+    }
+
+    /**
+     * Searches the elementary cycles and passes each of them to the handler
+     *
+     * @param handler handler
+     * @return number of cycles found
+     */
+    public int search(CycleHandler handler)
+    {
+        int n = this.adjList.length;
+        int maxDepth = Math.min(n, this.maxCycleLength);
+
+        this.blocked = new BitSet(n);
+        this.B = new BitSet[n];
+        this.unblockStack = new int[n];
+        this.path = new int[maxDepth];
+        this.pathEdge = new int[maxDepth];
+        this.pathFound = new boolean[maxDepth];
+        this.cycleCount = 0;
+        this.stopped = false;
+
         StrongConnectedComponents sccs = new StrongConnectedComponents(this.adjList);
         int s = 0;
 
-        while (true) {
+        while (s < n && !this.stopped) {
             SCCResult sccResult = sccs.getAdjacencyList(s);
-            if (sccResult != null && sccResult.getAdjList() != null) {
-                Vector[] scc = sccResult.getAdjList();
-                s = sccResult.getLowestNodeId();
-                for (int j = 0; j < scc.length; j++) {
-                    if ((scc[j] != null) && (scc[j].size() > 0)) {
-                        this.blocked[j] = false;
-                        this.B[j] = new Vector();
-                    }
-                }
-
-                this.findCycles(s, s, scc);
-                s++;
-            }
-            else {
+            if (sccResult == null) {
                 break;
             }
+
+            s = sccResult.getLowestNodeId();
+            for (int node : sccResult.getNodes()) {
+                this.blocked.clear(node);
+                if (this.B[node] == null) {
+                    this.B[node] = new BitSet(n);
+                }
+                else {
+                    this.B[node].clear();
+                }
+            }
+
+            this.findCycles(s, sccResult.getAdjList(), handler);
+            s++;
         }
 
-        return this.cycles;
+        return this.cycleCount;
     }
 
     /**
      * Calculates the cycles containing a given node in a strongly connected
-     * component. The method calls itself recursivly.
+     * component (iterative depth-first search). A node, whose search was cut by the maximal
+     * cycle length, is treated as if a cycle was found (i.e., it is unblocked), because
+     * a longer path might still lead to a cycle of allowed length.
      *
-     * @param v
-     * @param s
+     * @param s       start node
      * @param adjList adjacency-list with the subgraph of the strongly
      *                connected component s is part of.
-     * @return true, if cycle found; false otherwise
+     * @param handler handler
      */
-    private boolean findCycles(int v, int s, Vector<Integer>[] adjList)
+    private void findCycles(int s, int[][] adjList, CycleHandler handler)
     {
-        boolean f = false;
-        this.stack.add(v);
-        this.blocked[v] = true;
-
-        for (int i = 0; i < adjList[v].size(); i++) {
-            int w = adjList[v].get(i);
-            // found cycle
-            if (w == s) {
-                Vector cycle = new Vector();
-                for (int j = 0; j < this.stack.size(); j++) {
-                    int index = this.stack.get(j).intValue();
-                    cycle.add(this.graphNodes[index]);
-                }
-                this.cycles.add(cycle);
+        int depth = 0;
+        this.push(s, depth++);
+
+        while (depth > 0) {
+            int top = depth - 1;
+            int v = this.path[top];
+
+            if (!this.stopped && this.pathEdge[top] < adjList[v].length) {
+                int w = adjList[v][this.pathEdge[top]++];
 
+                // found cycle
+                if (w == s) {
+                    this.pathFound[top] = true;
+                    this.cycleCount++;
 
-                // we hard-limit the cycle number to 10k!!
-                if (this.cycles.size() > 10000) {
-                    break;
+                    if (!handler.cycleFound(this.path, depth)
+                            || this.cycleCount >= this.maxCycles) {
+                        this.stopped = true;
+                    }
                 }
+                else if (!this.blocked.get(w)) {
+                    if (depth < this.path.length) {
+                        this.push(w, depth++);
+                    }
+                    else {
+                        // too long
+                        this.pathFound[top] = true;
+                    }
+                }
+                continue;
+            }
 
-                f = true;
+            // all successors of v done
+            if (this.pathFound[top]) {
+                this.unblock(v);
             }
-            else if (!this.blocked[w]) {
-                if (this.findCycles(w, s, adjList)) {
-                    f = true;
+            else {
+                for (int w : adjList[v]) {
+                    this.B[w].set(v);
                 }
             }
-        }
 
-        if (f) {
-            this.unblock(v);
-        }
-        else {
-            for (int i = 0; i < adjList[v].size(); i++) {
-                int w = ((Integer) adjList[v].get(i)).intValue();
-                if (!this.B[w].contains(new Integer(v))) {
-                    this.B[w].add(new Integer(v));
-                }
+            depth--;
+            if (depth > 0 && this.pathFound[top]) {
+                this.pathFound[depth - 1] = true;
             }
         }
+    }
 
-        this.stack.remove(new Integer(v));
-        return f;
+    private void push(int node, int position)
+    {
+        this.path[position] = node;
+        this.pathEdge[position] = 0;
+        this.pathFound[position] = false;
+        this.blocked.set(node);
     }
 
     /**
-     * Unblocks recursivly all blocked nodes, starting with a given node.
+     * Unblocks all blocked nodes, starting with a given node.
      *
      * @param node node to unblock
      */
     private void unblock(int node)
     {
-        this.blocked[node] = false;
-        Vector Bnode = this.B[node];
-        while (Bnode.size() > 0) {
-            Integer w = (Integer) Bnode.get(0);
-            Bnode.remove(0);
-            if (this.blocked[w.intValue()]) {
-                this.unblock(w.intValue());
+        int size = 0;
+        this.blocked.clear(node);
+        this.unblockStack[size++] = node;
+
+        while (size > 0) {
+            int u = this.unblockStack[--size];
+            BitSet bu = this.B[u];
+
+            for (int w = bu.nextSetBit(0); w >= 0; w = bu.nextSetBit(w + 1)) {
+                if (this.blocked.get(w)) {
+                    this.blocked.clear(w);
+                    this.unblockStack[size++] = w;
+                }
             }
+            bu.clear();
         }
     }
 }
-
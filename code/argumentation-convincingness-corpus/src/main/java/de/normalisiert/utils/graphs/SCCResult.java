@@ -26,31 +26,37 @@
  */
 package de.normalisiert.utils.graphs;
 
-import java.util.HashSet;
-import java.util.Set;
-import java.util.Vector;
-
+/**
+ * Strongly connected component found by {@link StrongConnectedComponents}: its nodes and the
+ * adjacency-list of the subgraph induced by them.
+ */
 public class SCCResult
 {
-    private Set nodeIDsOfSCC = null;
-    private Vector[] adjList = null;
-    private int lowestNodeId = -1;
+    private final int[] nodes;
+    private final int[][] adjList;
+    private final int lowestNodeId;
 
-    public SCCResult(Vector[] adjList, int lowestNodeId)
+    /**
+     * Constructor.
+     *
+     * @param nodes        nodes of the component (sorted)
+     * @param adjList      adjacency-list of the whole graph size, containing only edges within
+     *                     the component (empty arrays for other nodes)
+     * @param lowestNodeId lowest node of the component
+     */
+    public SCCResult(int[] nodes, int[][] adjList, int lowestNodeId)
     {
+        this.nodes = nodes;
         this.adjList = adjList;
         this.lowestNodeId = lowestNodeId;
-        this.nodeIDsOfSCC = new HashSet();
-        if (this.adjList != null) {
-            for (int i = this.lowestNodeId; i < this.adjList.length; i++) {
-                if (this.adjList[i].size() > 0) {
-                    this.nodeIDsOfSCC.add(new Integer(i));
-                }
-            }
-        }
     }
 
-    public Vector[] getAdjList()
+    public int[] getNodes()
+    {
+        return nodes;
+    }
+
+    public int[][] getAdjList()
     {
         return adjList;
     }
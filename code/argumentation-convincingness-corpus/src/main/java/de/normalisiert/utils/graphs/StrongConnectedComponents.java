@@ -23,10 +23,14 @@
  * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
  * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
  * OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The iterative implementation on primitive arrays (re-used helper arrays, restricted
+ * int adjacency lists) is new work by the Ubiquitous Knowledge Processing (UKP) Lab,
+ * Technische Universität Darmstadt, 2016, based on the original code above.
  */
 package de.normalisiert.utils.graphs;
 
-import java.util.Vector;
+import java.util.Arrays;
 
 /**
  * This is a helpclass for the search of all elementary cycles in a graph
@@ -40,6 +44,9 @@ import java.util.Vector;
  * component of this subgraph which contains the lowest nodenumber of all
  * nodes in the subgraph.<br><br>
  * <p/>
+ * The search is iterative (no recursion) and works on primitive arrays only; the helper
+ * arrays are allocated once and re-used for all calls.<br><br>
+ * <p/>
  * For a description of the algorithm for calculating the strong connected
  * components see:<br>
  * Robert Tarjan: Depth-first search and linear graph algorithms. In: SIAM
@@ -49,50 +56,33 @@ import java.util.Vector;
  * Donald B. Johnson: Finding All the Elementary Circuits of a Directed Graph.
  * SIAM Journal on Computing. Volumne 4, Nr. 1 (1975), pp. 77-84.<br><br>
  *
- * @author Frank Meyer, web_at_normalisiert_dot_de
- * @version 1.1, 22.03.2009
+ * @author Frank Meyer, web_at_normalisiert_dot_de (original recursive implementation)
+ * @author Ivan Habernal (iterative rewrite)
  */
 public class StrongConnectedComponents
 {
     /**
      * Adjacency-list of original graph
      */
-    private int[][] adjListOriginal = null;
-
-    /**
-     * Adjacency-list of currently viewed subgraph
-     */
-    private int[][] adjList = null;
+    private final int[][] adjListOriginal;
 
     /**
-     * Helpattribute for finding scc's
+     * Helpattributes for finding scc's (Tarjan's index and lowlink; -1 = not visited)
      */
-    private boolean[] visited = null;
+    private final int[] number;
+    private final int[] lowlink;
 
     /**
-     * Helpattribute for finding scc's
+     * Stack of nodes of the scc's being built
      */
-    private Vector stack = null;
+    private final int[] sccStack;
+    private final boolean[] onSccStack;
 
     /**
-     * Helpattribute for finding scc's
+     * Stack of the depth-first search (node and the index of its next successor)
      */
-    private int[] lowlink = null;
-
-    /**
-     * Helpattribute for finding scc's
-     */
-    private int[] number = null;
-
-    /**
-     * Helpattribute for finding scc's
-     */
-    private int sccCounter = 0;
-
-    /**
-     * Helpattribute for finding scc's
-     */
-    private Vector currentSCCs = null;
+    private final int[] callStack;
+    private final int[] callStackEdge;
 
     /**
      * Constructor.
@@ -102,14 +92,22 @@ public class StrongConnectedComponents
     public StrongConnectedComponents(int[][] adjList)
     {
         this.adjListOriginal = adjList;
+
+        int n = adjList.length;
+        this.number = new int[n];
+        this.lowlink = new int[n];
+        this.sccStack = new int[n];
+        this.onSccStack = new boolean[n];
+        this.callStack = new int[n];
+        this.callStackEdge = new int[n];
     }
 
     /**
      * This method returns the adjacency-structure of the strong connected
      * component with the least vertex in a subgraph of the original graph
      * induced by the nodes {s, s + 1, ..., n}, where s is a given node. Note
-     * that trivial strong connected components with just one node will not
-     * be returned.
+     * that trivial strong connected components with just one node (without
+     * a self-loop) will not be returned.
      *
      * @param node node s
      * @return SCCResult with adjacency-structure of the strong
@@ -117,162 +115,131 @@ public class StrongConnectedComponents
      */
     public SCCResult getAdjacencyList(int node)
     {
-        this.visited = new boolean[this.adjListOriginal.length];
-        this.lowlink = new int[this.adjListOriginal.length];
-        this.number = new int[this.adjListOriginal.length];
-        this.visited = new boolean[this.adjListOriginal.length];
-        this.stack = new Vector();
-        this.currentSCCs = new Vector();
-
-        this.makeAdjListSubgraph(node);
-
-        for (int i = node; i < this.adjListOriginal.length; i++) {
-            if (!this.visited[i]) {
-                this.getStrongConnectedComponents(i);
-                Vector nodes = this.getLowestIdComponent();
-                if (nodes != null && !nodes.contains(new Integer(node)) && !nodes
-                        .contains(new Integer(node + 1))) {
-                    return this.getAdjacencyList(node + 1);
-                }
-                else {
-                    Vector[] adjacencyList = this.getAdjList(nodes);
-                    if (adjacencyList != null) {
-                        for (int j = 0; j < this.adjListOriginal.length; j++) {
-                            if (adjacencyList[j].size() > 0) {
-                                return new SCCResult(adjacencyList, j);
-                            }
-                        }
-                    }
-                }
-            }
-        }
+        int n = this.adjListOriginal.length;
+        Arrays.fill(this.number, -1);
 
-        return null;
-    }
+        int counter = 0;
+        int sccStackSize = 0;
 
-    /**
-     * Builds the adjacency-list for a subgraph containing just nodes
-     * >= a given index.
-     *
-     * @param node Node with lowest index in the subgraph
-     */
-    private void makeAdjListSubgraph(int node)
-    {
-        this.adjList = new int[this.adjListOriginal.length][0];
+        // the best component so far, stored as a range of the scc stack copied out
+        int[] lowestComponent = null;
+        int lowestComponentMin = Integer.MAX_VALUE;
 
-        for (int i = node; i < this.adjList.length; i++) {
-            Vector successors = new Vector();
-            for (int j = 0; j < this.adjListOriginal[i].length; j++) {
-                if (this.adjListOriginal[i][j] >= node) {
-                    successors.add(new Integer(this.adjListOriginal[i][j]));
-                }
+        for (int root = node; root < n; root++) {
+            if (this.number[root] >= 0) {
+                continue;
             }
-            if (successors.size() > 0) {
-                this.adjList[i] = new int[successors.size()];
-                for (int j = 0; j < successors.size(); j++) {
-                    Integer succ = (Integer) successors.get(j);
-                    this.adjList[i][j] = succ.intValue();
+
+            int callStackSize = 0;
+            this.number[root] = this.lowlink[root] = counter++;
+            this.sccStack[sccStackSize++] = root;
+            this.onSccStack[root] = true;
+            this.callStack[callStackSize] = root;
+            this.callStackEdge[callStackSize++] = 0;
+
+            while (callStackSize > 0) {
+                int v = this.callStack[callStackSize - 1];
+                int[] successors = this.adjListOriginal[v];
+
+                if (this.callStackEdge[callStackSize - 1] < successors.length) {
+                    int w = successors[this.callStackEdge[callStackSize - 1]++];
+
+                    // only the subgraph {s, s + 1, ..., n}
+                    if (w < node) {
+                        continue;
+                    }
+
+                    if (this.number[w] < 0) {
+                        this.number[w] = this.lowlink[w] = counter++;
+                        this.sccStack[sccStackSize++] = w;
+                        this.onSccStack[w] = true;
+                        this.callStack[callStackSize] = w;
+                        this.callStackEdge[callStackSize++] = 0;
+                    }
+                    else if (this.onSccStack[w]) {
+                        this.lowlink[v] = Math.min(this.lowlink[v], this.number[w]);
+                    }
+                    continue;
                 }
-            }
-        }
-    }
 
-    /**
-     * Calculates the strong connected component out of a set of scc's, that
-     * contains the node with the lowest index.
-     *
-     * @return Vector::Integer of the scc containing the lowest nodenumber
-     */
-    private Vector getLowestIdComponent()
-    {
-        int min = this.adjList.length;
-        Vector currScc = null;
-
-        for (int i = 0; i < this.currentSCCs.size(); i++) {
-            Vector scc = (Vector) this.currentSCCs.get(i);
-            for (int j = 0; j < scc.size(); j++) {
-                Integer node = (Integer) scc.get(j);
-                if (node.intValue() < min) {
-                    currScc = scc;
-                    min = node.intValue();
+                // all successors of v done
+                callStackSize--;
+                if (callStackSize > 0) {
+                    int parent = this.callStack[callStackSize - 1];
+                    this.lowlink[parent] = Math.min(this.lowlink[parent], this.lowlink[v]);
                 }
-            }
-        }
 
-        return currScc;
-    }
+                // found scc
+                if (this.lowlink[v] == this.number[v]) {
+                    int start = sccStackSize;
+                    int min = Integer.MAX_VALUE;
+                    int next;
+                    do {
+                        next = this.sccStack[--start];
+                        this.onSccStack[next] = false;
+                        min = Math.min(min, next);
+                    }
+                    while (next != v);
 
-    /**
-     * @return Vector[]::Integer representing the adjacency-structure of the
-     * strong connected component with least vertex in the currently viewed
-     * subgraph
-     */
-    private Vector[] getAdjList(Vector nodes)
-    {
-        Vector[] lowestIdAdjacencyList = null;
+                    int size = sccStackSize - start;
+                    boolean nonTrivial = size > 1 || hasSelfLoop(v);
 
-        if (nodes != null) {
-            lowestIdAdjacencyList = new Vector[this.adjList.length];
-            for (int i = 0; i < lowestIdAdjacencyList.length; i++) {
-                lowestIdAdjacencyList[i] = new Vector();
-            }
-            for (int i = 0; i < nodes.size(); i++) {
-                int node = ((Integer) nodes.get(i)).intValue();
-                for (int j = 0; j < this.adjList[node].length; j++) {
-                    int succ = this.adjList[node][j];
-                    if (nodes.contains(new Integer(succ))) {
-                        lowestIdAdjacencyList[node].add(new Integer(succ));
+                    if (nonTrivial && min < lowestComponentMin) {
+                        lowestComponentMin = min;
+                        lowestComponent = Arrays.copyOfRange(this.sccStack, start,
+                                sccStackSize);
                     }
+
+                    sccStackSize = start;
                 }
             }
         }
 
-        return lowestIdAdjacencyList;
+        if (lowestComponent == null) {
+            return null;
+        }
+
+        Arrays.sort(lowestComponent);
+
+        return new SCCResult(lowestComponent, this.getAdjList(lowestComponent),
+                lowestComponentMin);
     }
 
     /**
-     * Searchs for strong connected components reachable from a given node.
-     *
-     * @param root node to start from.
+     * @param nodes nodes of the component (sorted)
+     * @return adjacency-list representing the adjacency-structure of the
+     * strong connected component (edges within the component only)
      */
-    private void getStrongConnectedComponents(int root)
+    private int[][] getAdjList(int[] nodes)
     {
-        this.sccCounter++;
-        this.lowlink[root] = this.sccCounter;
-        this.number[root] = this.sccCounter;
-        this.visited[root] = true;
-        this.stack.add(new Integer(root));
-
-        for (int i = 0; i < this.adjList[root].length; i++) {
-            int w = this.adjList[root][i];
-            if (!this.visited[w]) {
-                this.getStrongConnectedComponents(w);
-                this.lowlink[root] = Math.min(lowlink[root], lowlink[w]);
-            }
-            else if (this.number[w] < this.number[root]) {
-                if (this.stack.contains(new Integer(w))) {
-                    lowlink[root] = Math.min(this.lowlink[root], this.number[w]);
+        int[][] result = new int[this.adjListOriginal.length][];
+        Arrays.fill(result, new int[0]);
+
+        for (int node : nodes) {
+            int[] successors = this.adjListOriginal[node];
+            int[] filtered = new int[successors.length];
+            int size = 0;
+
+            for (int succ : successors) {
+                if (Arrays.binarySearch(nodes, succ) >= 0) {
+                    filtered[size++] = succ;
                 }
             }
-        }
 
-        // found scc
-        if ((lowlink[root] == number[root]) && (stack.size() > 0)) {
-            int next = -1;
-            Vector scc = new Vector();
+            result[node] = Arrays.copyOf(filtered, size);
+        }
 
-            do {
-                next = ((Integer) this.stack.get(stack.size() - 1)).intValue();
-                this.stack.remove(stack.size() - 1);
-                scc.add(new Integer(next));
-            }
-            while (this.number[next] > this.number[root]);
+        return result;
+    }
 
-            // simple scc's with just one node will not be added
-            if (scc.size() > 1) {
-                this.currentSCCs.add(scc);
+    private boolean hasSelfLoop(int node)
+    {
+        for (int succ : this.adjListOriginal[node]) {
+            if (succ == node) {
+                return true;
             }
         }
+        return false;
     }
 
     public static void main(String[] args)
@@ -283,19 +250,6 @@ public class StrongConnectedComponents
             adjMatrix[i] = new boolean[10];
         }
 
-		/*adjMatrix[0][1] = true;
-        adjMatrix[1][2] = true;
-		adjMatrix[2][0] = true;
-		adjMatrix[2][4] = true;
-		adjMatrix[1][3] = true;
-		adjMatrix[3][6] = true;
-		adjMatrix[6][5] = true;
-		adjMatrix[5][3] = true;
-		adjMatrix[6][7] = true;
-		adjMatrix[7][8] = true;
-		adjMatrix[7][9] = true;
-		adjMatrix[9][6] = true;*/
-
         adjMatrix[0][1] = true;
         adjMatrix[1][2] = true;
         adjMatrix[2][0] = true;
@@ -316,12 +270,12 @@ public class StrongConnectedComponents
             System.out.print("i: " + i + "\n");
             SCCResult r = scc.getAdjacencyList(i);
             if (r != null) {
-                Vector[] al = scc.getAdjacencyList(i).getAdjList();
+                int[][] al = r.getAdjList();
                 for (int j = i; j < al.length; j++) {
-                    if (al[j].size() > 0) {
+                    if (al[j].length > 0) {
                         System.out.print("j: " + j);
-                        for (int k = 0; k < al[j].size(); k++) {
-                            System.out.print(" _" + al[j].get(k).toString());
+                        for (int k = 0; k < al[j].length; k++) {
+                            System.out.print(" _" + al[j][k]);
                         }
                         System.out.print("\n");
                     }
@@ -19,39 +19,32 @@
 package de.tudarmstadt.ukp.experiments.argumentation.convincingness.createdebate;
 
 import com.thoughtworks.xstream.XStream;
-import com.thoughtworks.xstream.io.xml.StaxDriver;
+import de.tudarmstadt.ukp.experiments.argumentation.convincingness.sampling.XStreamTools;
 
 /**
+ * Serializes debates with the shared (thread-safe) instance from {@link XStreamTools}
+ *
  * @author Ivan Habernal
  */
 public class DebateSerializer
 {
-    protected static XStream xStream = null;
-
     public static String serializeToXML(Debate debate)
     {
-        if (xStream == null) {
-            initializeXStream();
-        }
-
-        return xStream.toXML(debate);
+        return XStreamTools.getXStream().toXML(debate);
     }
 
     public static Debate deserializeFromXML(String xml)
     {
-        if (xStream == null) {
-            initializeXStream();
-        }
-
-        return (Debate) xStream.fromXML(xml);
+        return (Debate) XStreamTools.getXStream().fromXML(xml);
     }
 
+    /**
+     * Returns the shared instance (kept for compatibility, nothing is initialized anymore)
+     *
+     * @return XStream
+     */
     public static XStream initializeXStream()
     {
-        xStream = new XStream(new StaxDriver());
-        xStream.alias("argument", Argument.class);
-        xStream.alias("debate", Debate.class);
-
-        return xStream;
+        return XStreamTools.getXStream();
     }
 }
@@ -0,0 +1,293 @@
+/*
+ * Copyright 2016
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.tudarmstadt.ukp.experiments.argumentation.convincingness.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compact directed graph of arguments. Node IDs are interned to dense integers (in the order
+ * of insertion), edges are stored in parallel primitive arrays (source, target, weight) and
+ * the adjacency is available in a compressed sparse row (CSR) layout, which is (re)built
+ * lazily after the graph has changed. Duplicate edges are ignored, self-loops are allowed.
+ *
+ * @author Ivan Habernal
+ */
+public class ArgumentGraph
+{
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Node ID to node index
+     */
+    private final Map<String, Integer> nodeIndices = new HashMap<>();
+
+    private String[] nodeIds = new String[INITIAL_CAPACITY];
+
+    /**
+     * Arguments clustered in each node (null for a node with a single argument)
+     */
+    private final List<Set<String>> clusteredArguments = new ArrayList<>();
+
+    private int nodeCount;
+
+    private int[] edgeSources = new int[INITIAL_CAPACITY];
+    private int[] edgeTargets = new int[INITIAL_CAPACITY];
+    private double[] edgeWeights = new double[INITIAL_CAPACITY];
+    private int edgeCount;
+
+    /**
+     * Linked lists of outgoing edges (head per node, next per edge); used for duplicate checks
+     * while the graph is being built
+     */
+    private int[] firstOutEdge = new int[INITIAL_CAPACITY];
+    private int[] nextOutEdge = new int[INITIAL_CAPACITY];
+
+    /**
+     * CSR adjacency: successors of node n are outTargets[outOffsets[n]..outOffsets[n+1]),
+     * predecessors are inSources[inOffsets[n]..inOffsets[n+1])
+     */
+    private int[] outOffsets;
+    private int[] outTargets;
+    private int[] inOffsets;
+    private int[] inSources;
+
+    /**
+     * Adds a node; if a node with the same ID exists, nothing is added
+     *
+     * @param nodeId node ID
+     * @return index of the (new or existing) node
+     */
+    public int addNode(String nodeId)
+    {
+        Integer existing = nodeIndices.get(nodeId);
+        if (existing != null) {
+            return existing;
+        }
+
+        if (nodeCount == nodeIds.length) {
+            nodeIds = Arrays.copyOf(nodeIds, nodeCount * 2);
+            firstOutEdge = Arrays.copyOf(firstOutEdge, nodeCount * 2);
+        }
+
+        int node = nodeCount++;
+        nodeIds[node] = nodeId;
+        firstOutEdge[node] = -1;
+        clusteredArguments.add(null);
+        nodeIndices.put(nodeId, node);
+
+        invalidateAdjacency();
+
+        return node;
+    }
+
+    /**
+     * Adds a directed edge between two existing nodes
+     *
+     * @param source source node index
+     * @param target target node index
+     * @param weight edge weight
+     * @return index of the new edge or -1 if the edge already exists
+     */
+    public int addEdge(int source, int target, double weight)
+    {
+        for (int e = firstOutEdge[source]; e >= 0; e = nextOutEdge[e]) {
+            if (edgeTargets[e] == target) {
+                return -1;
+            }
+        }
+
+        if (edgeCount == edgeSources.length) {
+            int capacity = edgeCount * 2;
+            edgeSources = Arrays.copyOf(edgeSources, capacity);
+            edgeTargets = Arrays.copyOf(edgeTargets, capacity);
+            edgeWeights = Arrays.copyOf(edgeWeights, capacity);
+            nextOutEdge = Arrays.copyOf(nextOutEdge, capacity);
+        }
+
+        int edge = edgeCount++;
+        edgeSources[edge] = source;
+        edgeTargets[edge] = target;
+        edgeWeights[edge] = weight;
+        nextOutEdge[edge] = firstOutEdge[source];
+        firstOutEdge[source] = edge;
+
+        invalidateAdjacency();
+
+        return edge;
+    }
+
+    /**
+     * Returns the node index
+     *
+     * @param nodeId node ID
+     * @return index or -1 if there is no such node
+     */
+    public int getNodeIndex(String nodeId)
+    {
+        Integer result = nodeIndices.get(nodeId);
+        return result != null ? result : -1;
+    }
+
+    public String getNodeId(int node)
+    {
+        return nodeIds[node];
+    }
+
+    /**
+     * Returns all node IDs in the order of their indices
+     *
+     * @return array of IDs
+     */
+    public String[] getNodeIds()
+    {
+        return Arrays.copyOf(nodeIds, nodeCount);
+    }
+
+    public Set<String> getClusteredArguments(int node)
+    {
+        return clusteredArguments.get(node);
+    }
+
+    public void setClusteredArguments(int node, Set<String> arguments)
+    {
+        clusteredArguments.set(node, arguments);
+    }
+
+    public int getNodeCount()
+    {
+        return nodeCount;
+    }
+
+    public int getEdgeCount()
+    {
+        return edgeCount;
+    }
+
+    public int getEdgeSource(int edge)
+    {
+        return edgeSources[edge];
+    }
+
+    public int getEdgeTarget(int edge)
+    {
+        return edgeTargets[edge];
+    }
+
+    public double getEdgeWeight(int edge)
+    {
+        return edgeWeights[edge];
+    }
+
+    public int getOutDegree(int node)
+    {
+        ensureAdjacency();
+        return outOffsets[node + 1] - outOffsets[node];
+    }
+
+    public int getInDegree(int node)
+    {
+        ensureAdjacency();
+        return inOffsets[node + 1] - inOffsets[node];
+    }
+
+    /**
+     * Returns the i-th successor of the node (in the order of edge insertion)
+     *
+     * @param node node index
+     * @param i    0 &lt;= i &lt; out-degree
+     * @return successor node index
+     */
+    public int getSuccessor(int node, int i)
+    {
+        ensureAdjacency();
+        return outTargets[outOffsets[node] + i];
+    }
+
+    /**
+     * Returns the i-th predecessor of the node (in the order of edge insertion)
+     *
+     * @param node node index
+     * @param i    0 &lt;= i &lt; in-degree
+     * @return predecessor node index
+     */
+    public int getPredecessor(int node, int i)
+    {
+        ensureAdjacency();
+        return inSources[inOffsets[node] + i];
+    }
+
+    /**
+     * Returns the adjacency-list (first dimension = node, second = its successors)
+     *
+     * @return adjacency list
+     */
+    public int[][] getAdjacencyList()
+    {
+        ensureAdjacency();
+
+        int[][] result = new int[nodeCount][];
+        for (int n = 0; n < nodeCount; n++) {
+            result[n] = Arrays.copyOfRange(outTargets, outOffsets[n], outOffsets[n + 1]);
+        }
+
+        return result;
+    }
+
+    private void invalidateAdjacency()
+    {
+        outOffsets = null;
+        inOffsets = null;
+    }
+
+    /**
+     * Builds CSR arrays from the edge arrays (counting sort by source and by target, which
+     * keeps the order of edge insertion within each node)
+     */
+    private void ensureAdjacency()
+    {
+        if (outOffsets != null) {
+            return;
+        }
+
+        outOffsets = new int[nodeCount + 1];
+        inOffsets = new int[nodeCount + 1];
+        for (int e = 0; e < edgeCount; e++) {
+            outOffsets[edgeSources[e] + 1]++;
+            inOffsets[edgeTargets[e] + 1]++;
+        }
+        for (int n = 0; n < nodeCount; n++) {
+            outOffsets[n + 1] += outOffsets[n];
+            inOffsets[n + 1] += inOffsets[n];
+        }
+
+        outTargets = new int[edgeCount];
+        inSources = new int[edgeCount];
+        int[] outPositions = Arrays.copyOf(outOffsets, nodeCount);
+        int[] inPositions = Arrays.copyOf(inOffsets, nodeCount);
+        for (int e = 0; e < edgeCount; e++) {
+            outTargets[outPositions[edgeSources[e]]++] = edgeTargets[e];
+            inSources[inPositions[edgeTargets[e]]++] = edgeSources[e];
+        }
+    }
+}
@@ -24,6 +24,7 @@ import de.tudarmstadt.ukp.experiments.argumentation.convincingness.sampling.Step
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 
 /**
  * @author Ivan Habernal
@@ -35,15 +36,16 @@ public class AscendingScoreArgumentPairListSorter
     @Override
     public void sortArgumentPairs(List<AnnotatedArgumentPair> list)
     {
+        // each weight is computed only once, not in every comparison
+        final Map<AnnotatedArgumentPair, Double> edgeWeights = Step6GraphTransitivityCleaner
+                .computeEdgeWeights(list, Step6GraphTransitivityCleaner.LAMBDA_PENALTY);
+
         Collections.sort(list, new Comparator<AnnotatedArgumentPair>()
         {
             @Override
             public int compare(AnnotatedArgumentPair o1, AnnotatedArgumentPair o2)
             {
-                return Double.compare(Step6GraphTransitivityCleaner
-                                .computeEdgeWeight(o1, Step6GraphTransitivityCleaner.LAMBDA_PENALTY),
-                        Step6GraphTransitivityCleaner.computeEdgeWeight(o2,
-                                Step6GraphTransitivityCleaner.LAMBDA_PENALTY));
+                return Double.compare(edgeWeights.get(o1), edgeWeights.get(o2));
             }
         });
     }
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2016
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.tudarmstadt.ukp.experiments.argumentation.convincingness.graph;
+
+import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
+
+import java.util.Arrays;
+
+/**
+ * Shortest and longest paths (in number of edges) in a directed acyclic graph. The graph is
+ * sorted topologically only once; paths from a source node are then computed by a single
+ * pass over the nodes following the source in the topological order, i.e., O(V + E) per
+ * source instead of O(V * E) of Bellman-Ford.
+ *
+ * @author Ivan Habernal
+ */
+public class DAGTransitivityScorer
+{
+    /**
+     * Path length for unreachable nodes
+     */
+    public static final int UNREACHABLE = -1;
+
+    private final ArgumentGraph graph;
+
+    /**
+     * Nodes in topological order
+     */
+    private final int[] topologicalOrder;
+
+    /**
+     * Position of each node in the topological order
+     */
+    private final int[] positions;
+
+    /**
+     * Creates the scorer and sorts the graph topologically
+     *
+     * @param graph graph (must be DAG)
+     * @throws IllegalArgumentException if the graph contains a cycle
+     */
+    public DAGTransitivityScorer(ArgumentGraph graph)
+    {
+        this.graph = graph;
+        this.topologicalOrder = sortTopologically(graph);
+        this.positions = new int[topologicalOrder.length];
+
+        for (int i = 0; i < topologicalOrder.length; i++) {
+            positions[topologicalOrder[i]] = i;
+        }
+    }
+
+    /**
+     * Kahn's algorithm
+     *
+     * @param graph graph
+     * @return nodes in topological order
+     * @throws IllegalArgumentException if the graph contains a cycle
+     */
+    public static int[] sortTopologically(ArgumentGraph graph)
+    {
+        int nodeCount = graph.getNodeCount();
+        int[] inDegrees = new int[nodeCount];
+        int[] result = new int[nodeCount];
+        int head = 0;
+        int tail = 0;
+
+        for (int n = 0; n < nodeCount; n++) {
+            inDegrees[n] = graph.getInDegree(n);
+            if (inDegrees[n] == 0) {
+                result[tail++] = n;
+            }
+        }
+
+        while (head < tail) {
+            int n = result[head++];
+            for (int i = 0; i < graph.getOutDegree(n); i++) {
+                int w = graph.getSuccessor(n, i);
+                if (--inDegrees[w] == 0) {
+                    result[tail++] = w;
+                }
+            }
+        }
+
+        if (tail < nodeCount) {
+            throw new IllegalArgumentException("Graph is not a DAG");
+        }
+
+        return result;
+    }
+
+    /**
+     * Computes the number of edges on the shortest paths from the source to all nodes
+     *
+     * @param source source node
+     * @return path lengths ({@link #UNREACHABLE} for unreachable nodes, 0 for the source)
+     */
+    public int[] computeShortestPathLengths(int source)
+    {
+        return computePathLengths(source, false);
+    }
+
+    /**
+     * Computes the number of edges on the longest paths from the source to all nodes
+     *
+     * @param source source node
+     * @return path lengths ({@link #UNREACHABLE} for unreachable nodes, 0 for the source)
+     */
+    public int[] computeLongestPathLengths(int source)
+    {
+        return computePathLengths(source, true);
+    }
+
+    private int[] computePathLengths(int source, boolean longest)
+    {
+        int[] result = new int[topologicalOrder.length];
+        Arrays.fill(result, UNREACHABLE);
+        result[source] = 0;
+
+        // only nodes after the source can be reached
+        for (int i = positions[source]; i < topologicalOrder.length; i++) {
+            int n = topologicalOrder[i];
+            if (result[n] == UNREACHABLE) {
+                continue;
+            }
+
+            for (int j = 0; j < graph.getOutDegree(n); j++) {
+                int w = graph.getSuccessor(n, j);
+                int length = result[n] + 1;
+
+                if (result[w] == UNREACHABLE || (longest ?
+                        length > result[w] :
+                        length < result[w])) {
+                    result[w] = length;
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Transitivity score is a collection of scores computed for each pair of nodes A and B with
+     * multiple paths between them. A single score for such a pair is a ratio of the longest
+     * path from A to B and the shortest path (only pairs connected directly by an edge are
+     * considered, so the shortest path is always 1).
+     *
+     * @return statistics
+     */
+    public DescriptiveStatistics computeTransitivityScores()
+    {
+        DescriptiveStatistics result = new DescriptiveStatistics();
+
+        for (int source = 0; source < graph.getNodeCount(); source++) {
+            // only out-degree > 1 nodes can have multiple paths
+            if (graph.getOutDegree(source) <= 1) {
+                continue;
+            }
+
+            int[] longestPaths = null;
+
+            // direct successors are the targets with the shortest path of length 1
+            for (int i = 0; i < graph.getOutDegree(source); i++) {
+                int target = graph.getSuccessor(source, i);
+
+                if (graph.getInDegree(target) <= 1) {
+                    continue;
+                }
+
+                if (longestPaths == null) {
+                    longestPaths = computeLongestPathLengths(source);
+                }
+
+                int longestPathLength = longestPaths[target];
+                if (longestPathLength > 1) {
+                    result.addValue((double) longestPathLength);
+                }
+            }
+        }
+
+        return result;
+    }
+}
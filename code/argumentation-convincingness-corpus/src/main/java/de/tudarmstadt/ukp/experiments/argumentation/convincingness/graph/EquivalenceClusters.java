@@ -0,0 +1,330 @@
+/*
+ * Copyright 2016
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.tudarmstadt.ukp.experiments.argumentation.convincingness.graph;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * Clusters of arguments connected by the "equal" relation (disjoint-set forest with path
+ * compression and union by size). Elements are interned to dense integers in the order of
+ * insertion; clusters can be extended incrementally by {@link #union(String, String)}.
+ * <p/>
+ * The canonical name of a cluster consists of the sorted IDs of its members joined by "+"; it
+ * is computed once per cluster and cached until the cluster changes. Member sets are
+ * unmodifiable snapshots, a union creates a new set, so sets obtained earlier (e.g., stored
+ * in a graph) do not change.
+ *
+ * @author Ivan Habernal
+ */
+public class EquivalenceClusters
+{
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final Map<String, Integer> indices = new HashMap<>();
+
+    private final List<String> elements = new ArrayList<>();
+
+    private int[] parents = new int[INITIAL_CAPACITY];
+
+    private int[] sizes = new int[INITIAL_CAPACITY];
+
+    /**
+     * Members of each cluster, stored at its root (null for single-element clusters)
+     */
+    private final List<SortedSet<String>> members = new ArrayList<>();
+
+    /**
+     * Cached canonical names, stored at the root
+     */
+    private final List<String> names = new ArrayList<>();
+
+    /**
+     * Adds an element as a single-element cluster; if it exists, nothing is added
+     *
+     * @param element element (argument ID)
+     * @return index of the element
+     */
+    public int add(String element)
+    {
+        Integer existing = indices.get(element);
+        if (existing != null) {
+            return existing;
+        }
+
+        int index = elements.size();
+        if (index == parents.length) {
+            parents = Arrays.copyOf(parents, index * 2);
+            sizes = Arrays.copyOf(sizes, index * 2);
+        }
+
+        parents[index] = index;
+        sizes[index] = 1;
+        elements.add(element);
+        members.add(null);
+        names.add(null);
+        indices.put(element, index);
+
+        return index;
+    }
+
+    /**
+     * Returns the index of the element
+     *
+     * @param element element
+     * @return index or -1 if the element has not been added
+     */
+    public int getIndex(String element)
+    {
+        Integer result = indices.get(element);
+        return result != null ? result : -1;
+    }
+
+    public String getElement(int index)
+    {
+        return elements.get(index);
+    }
+
+    public int size()
+    {
+        return elements.size();
+    }
+
+    /**
+     * Returns the root (cluster ID) of the element's cluster
+     *
+     * @param index element index
+     * @return root index
+     */
+    public int find(int index)
+    {
+        int root = index;
+        while (parents[root] != root) {
+            root = parents[root];
+        }
+
+        // path compression
+        int current = index;
+        while (parents[current] != root) {
+            int next = parents[current];
+            parents[current] = root;
+            current = next;
+        }
+
+        return root;
+    }
+
+    /**
+     * Merges clusters of both elements (which are added if needed)
+     *
+     * @param element1 element
+     * @param element2 element
+     * @return root of the merged cluster
+     */
+    public int union(String element1, String element2)
+    {
+        return union(add(element1), add(element2));
+    }
+
+    /**
+     * Merges clusters of both elements
+     *
+     * @param index1 element index
+     * @param index2 element index
+     * @return root of the merged cluster
+     */
+    public int union(int index1, int index2)
+    {
+        int root1 = find(index1);
+        int root2 = find(index2);
+
+        if (root1 == root2) {
+            return root1;
+        }
+
+        // attach the smaller tree to the larger one
+        if (sizes[root1] < sizes[root2]) {
+            int tmp = root1;
+            root1 = root2;
+            root2 = tmp;
+        }
+
+        parents[root2] = root1;
+        sizes[root1] += sizes[root2];
+
+        SortedSet<String> mergedMembers = new TreeSet<>(getMembers(root1));
+        mergedMembers.addAll(getMembers(root2));
+        members.set(root1, Collections.unmodifiableSortedSet(mergedMembers));
+        members.set(root2, null);
+
+        names.set(root1, null);
+        names.set(root2, null);
+
+        return root1;
+    }
+
+    /**
+     * Returns the number of elements in the element's cluster
+     *
+     * @param index element index
+     * @return size
+     */
+    public int getClusterSize(int index)
+    {
+        return sizes[find(index)];
+    }
+
+    /**
+     * Returns the (sorted) members of the cluster containing the given element
+     *
+     * @param element element
+     * @return members or null if the element is not in a cluster with other elements
+     */
+    public SortedSet<String> getCluster(String element)
+    {
+        int index = getIndex(element);
+        if (index < 0) {
+            return null;
+        }
+
+        return members.get(find(index));
+    }
+
+    /**
+     * Returns the canonical name of the cluster containing the element (sorted member IDs
+     * joined by "+"); a single element is its own name
+     *
+     * @param element element
+     * @return name
+     */
+    public String getClusterName(String element)
+    {
+        int index = getIndex(element);
+        if (index < 0) {
+            return element;
+        }
+
+        return getClusterName(index);
+    }
+
+    /**
+     * Returns the canonical name of the cluster containing the element
+     *
+     * @param index element index
+     * @return name
+     */
+    public String getClusterName(int index)
+    {
+        int root = find(index);
+
+        if (members.get(root) == null) {
+            return elements.get(root);
+        }
+
+        String result = names.get(root);
+        if (result == null) {
+            result = StringUtils.join(members.get(root), "+");
+            names.set(root, result);
+        }
+
+        return result;
+    }
+
+    /**
+     * Maps each element to a dense cluster ID (clusters are numbered in the order of their
+     * first element)
+     *
+     * @return array of cluster IDs indexed by element index
+     */
+    public int[] getClusterIds()
+    {
+        int[] result = new int[elements.size()];
+        int[] rootToId = new int[elements.size()];
+        Arrays.fill(rootToId, -1);
+        int clusterCount = 0;
+
+        for (int i = 0; i < result.length; i++) {
+            int root = find(i);
+            if (rootToId[root] < 0) {
+                rootToId[root] = clusterCount++;
+            }
+            result[i] = rootToId[root];
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns all clusters with more than one element, in the order of their first element
+     *
+     * @return list of clusters
+     */
+    public List<SortedSet<String>> getClusters()
+    {
+        List<SortedSet<String>> result = new ArrayList<>();
+        boolean[] seen = new boolean[elements.size()];
+
+        for (int i = 0; i < elements.size(); i++) {
+            int root = find(i);
+            if (!seen[root] && members.get(root) != null) {
+                seen[root] = true;
+                result.add(members.get(root));
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Creates an independent copy (e.g., for a tentative union)
+     *
+     * @return copy
+     */
+    public EquivalenceClusters copy()
+    {
+        EquivalenceClusters result = new EquivalenceClusters();
+        result.indices.putAll(indices);
+        result.elements.addAll(elements);
+        result.parents = Arrays.copyOf(parents, parents.length);
+        result.sizes = Arrays.copyOf(sizes, sizes.length);
+
+        // member sets are immutable, so they can be shared
+        result.members.addAll(members);
+        result.names.addAll(names);
+
+        return result;
+    }
+
+    private SortedSet<String> getMembers(int root)
+    {
+        SortedSet<String> result = members.get(root);
+        if (result == null) {
+            return new TreeSet<>(Collections.singleton(elements.get(root)));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,423 @@
+/*
+ * Copyright 2016
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.tudarmstadt.ukp.experiments.argumentation.convincingness.graph;
+
+import java.util.Arrays;
+
+/**
+ * Directed acyclic graph with an online topological order (Pearce-Kelly algorithm) that
+ * answers "would this edge create a cycle?" without rebuilding the graph. Only the nodes
+ * between the two end points in the current topological order are visited, so edges that
+ * agree with the order are checked in constant time.
+ * <p/>
+ * Nodes are dense integers created by {@link #addNode()}; two nodes can be merged into one
+ * (used for clustering arguments connected by "equal" relation).
+ * <p/>
+ * For a description of the algorithm see:<br>
+ * David J. Pearce, Paul H.J. Kelly: A Dynamic Topological Sort Algorithm for Directed Acyclic
+ * Graphs. ACM Journal of Experimental Algorithmics, Volume 11 (2006).
+ *
+ * @author Ivan Habernal
+ */
+public class IncrementalCycleDetector
+{
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Successors of each node
+     */
+    private int[][] outEdges = new int[INITIAL_CAPACITY][];
+    private int[] outDegrees = new int[INITIAL_CAPACITY];
+
+    /**
+     * Predecessors of each node
+     */
+    private int[][] inEdges = new int[INITIAL_CAPACITY][];
+    private int[] inDegrees = new int[INITIAL_CAPACITY];
+
+    /**
+     * Position of each node in the topological order
+     */
+    private int[] order = new int[INITIAL_CAPACITY];
+
+    /**
+     * Node on each position of the topological order
+     */
+    private int[] nodeAtPosition = new int[INITIAL_CAPACITY];
+
+    /**
+     * Nodes merged into another node; they keep their position but have no edges
+     */
+    private boolean[] merged = new boolean[INITIAL_CAPACITY];
+
+    /**
+     * Helper attributes for the depth-first searches
+     */
+    private boolean[] visited = new boolean[INITIAL_CAPACITY];
+    private int[] stack = new int[INITIAL_CAPACITY];
+
+    private int nodeCount;
+    private int edgeCount;
+
+    /**
+     * Adds a new isolated node at the end of the topological order
+     *
+     * @return index of the new node
+     */
+    public int addNode()
+    {
+        if (nodeCount == order.length) {
+            int capacity = order.length * 2;
+            outEdges = Arrays.copyOf(outEdges, capacity);
+            outDegrees = Arrays.copyOf(outDegrees, capacity);
+            inEdges = Arrays.copyOf(inEdges, capacity);
+            inDegrees = Arrays.copyOf(inDegrees, capacity);
+            order = Arrays.copyOf(order, capacity);
+            nodeAtPosition = Arrays.copyOf(nodeAtPosition, capacity);
+            merged = Arrays.copyOf(merged, capacity);
+            visited = Arrays.copyOf(visited, capacity);
+            stack = Arrays.copyOf(stack, capacity);
+        }
+
+        int node = nodeCount++;
+        outEdges[node] = new int[2];
+        inEdges[node] = new int[2];
+        order[node] = node;
+        nodeAtPosition[node] = node;
+
+        return node;
+    }
+
+    /**
+     * Returns true if there is a directed path from {@code from} to {@code to} (a node is
+     * always reachable from itself)
+     *
+     * @param from source node
+     * @param to   target node
+     * @return boolean
+     */
+    public boolean isReachable(int from, int to)
+    {
+        if (from == to) {
+            return true;
+        }
+
+        // everything reachable from "from" lies after it in the topological order
+        int upperBound = order[to];
+        if (order[from] > upperBound) {
+            return false;
+        }
+
+        boolean found = false;
+        int[] visitedNodes = new int[8];
+        int visitedCount = 0;
+        int stackSize = 0;
+
+        stack[stackSize++] = from;
+        visited[from] = true;
+        visitedNodes = append(visitedNodes, visitedCount++, from);
+
+        while (stackSize > 0 && !found) {
+            int n = stack[--stackSize];
+
+            for (int i = 0; i < outDegrees[n]; i++) {
+                int w = outEdges[n][i];
+                if (w == to) {
+                    found = true;
+                    break;
+                }
+                if (!visited[w] && order[w] < upperBound) {
+                    visited[w] = true;
+                    visitedNodes = append(visitedNodes, visitedCount++, w);
+                    stack[stackSize++] = w;
+                }
+            }
+        }
+
+        for (int i = 0; i < visitedCount; i++) {
+            visited[visitedNodes[i]] = false;
+        }
+
+        return found;
+    }
+
+    /**
+     * Returns true if adding edge {@code source -> target} would introduce a cycle (including
+     * a self-loop)
+     *
+     * @param source source node
+     * @param target target node
+     * @return boolean
+     */
+    public boolean wouldCreateCycle(int source, int target)
+    {
+        return isReachable(target, source);
+    }
+
+    /**
+     * Returns true if merging the two nodes into one would introduce a cycle, i.e., there is
+     * a path between them in any direction
+     *
+     * @param node1 node
+     * @param node2 node
+     * @return boolean
+     */
+    public boolean wouldCreateCycleByMerging(int node1, int node2)
+    {
+        return node1 != node2 && (isReachable(node1, node2) || isReachable(node2, node1));
+    }
+
+    /**
+     * Adds an edge and updates the topological order. Adding an existing edge has no effect.
+     *
+     * @param source source node
+     * @param target target node
+     * @throws IllegalArgumentException if the edge would introduce a cycle
+     */
+    public void addEdge(int source, int target)
+    {
+        if (merged[source] || merged[target]) {
+            throw new IllegalArgumentException("Cannot add edge to a merged node");
+        }
+
+        if (hasEdge(source, target)) {
+            return;
+        }
+
+        if (wouldCreateCycle(source, target)) {
+            throw new IllegalArgumentException(
+                    "Edge " + source + "->" + target + " would introduce a cycle");
+        }
+
+        int lowerBound = order[target];
+        int upperBound = order[source];
+
+        // the order is violated; re-arrange the affected region
+        if (lowerBound < upperBound) {
+            int[] forward = collect(target, upperBound, true);
+            int[] backward = collect(source, lowerBound, false);
+            reorder(forward, backward);
+        }
+
+        outEdges[source] = append(outEdges[source], outDegrees[source]++, target);
+        inEdges[target] = append(inEdges[target], inDegrees[target]++, source);
+        edgeCount++;
+    }
+
+    /**
+     * Merges node {@code removed} into node {@code kept}; all edges of the removed node are
+     * re-attached to the kept node. The removed node must not be used afterwards.
+     *
+     * @param kept    node that remains in the graph
+     * @param removed node that is merged into the kept one
+     * @throws IllegalArgumentException if the merge would introduce a cycle
+     */
+    public void mergeNodes(int kept, int removed)
+    {
+        if (kept == removed) {
+            return;
+        }
+
+        if (wouldCreateCycleByMerging(kept, removed)) {
+            throw new IllegalArgumentException(
+                    "Merging " + kept + " and " + removed + " would introduce a cycle");
+        }
+
+        int[] successors = Arrays.copyOf(outEdges[removed], outDegrees[removed]);
+        int[] predecessors = Arrays.copyOf(inEdges[removed], inDegrees[removed]);
+
+        // detach the removed node
+        for (int s : successors) {
+            removeEdge(removed, s);
+        }
+        for (int p : predecessors) {
+            removeEdge(p, removed);
+        }
+        merged[removed] = true;
+
+        // and re-attach its edges; there is no path between the nodes, so no cycle can emerge
+        for (int s : successors) {
+            addEdge(kept, s);
+        }
+        for (int p : predecessors) {
+            addEdge(p, kept);
+        }
+    }
+
+    /**
+     * Returns true if the edge exists
+     *
+     * @param source source node
+     * @param target target node
+     * @return boolean
+     */
+    public boolean hasEdge(int source, int target)
+    {
+        for (int i = 0; i < outDegrees[source]; i++) {
+            if (outEdges[source][i] == target) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns all non-merged nodes sorted in the topological order
+     *
+     * @return node indices
+     */
+    public int[] getTopologicalOrder()
+    {
+        int[] result = new int[nodeCount];
+        int size = 0;
+        for (int position = 0; position < nodeCount; position++) {
+            int node = nodeAtPosition[position];
+            if (!merged[node]) {
+                result[size++] = node;
+            }
+        }
+
+        return Arrays.copyOf(result, size);
+    }
+
+    /**
+     * Number of nodes (including the merged ones)
+     *
+     * @return int
+     */
+    public int getNodeCount()
+    {
+        return nodeCount;
+    }
+
+    public int getEdgeCount()
+    {
+        return edgeCount;
+    }
+
+    /**
+     * Collects nodes reachable from {@code start} (forward) or reaching {@code start}
+     * (backward) which lie within the affected region of the topological order
+     *
+     * @param start   start node
+     * @param bound   upper bound (forward) or lower bound (backward) of the affected region
+     * @param forward direction
+     * @return visited nodes sorted by their current position
+     */
+    private int[] collect(int start, int bound, boolean forward)
+    {
+        int[] result = new int[8];
+        int resultSize = 0;
+        int stackSize = 0;
+
+        stack[stackSize++] = start;
+        visited[start] = true;
+
+        while (stackSize > 0) {
+            int n = stack[--stackSize];
+            result = append(result, resultSize++, n);
+
+            int[] neighbors = forward ? outEdges[n] : inEdges[n];
+            int degree = forward ? outDegrees[n] : inDegrees[n];
+
+            for (int i = 0; i < degree; i++) {
+                int w = neighbors[i];
+                boolean inRegion = forward ? order[w] < bound : order[w] > bound;
+                if (!visited[w] && inRegion) {
+                    visited[w] = true;
+                    stack[stackSize++] = w;
+                }
+            }
+        }
+
+        for (int i = 0; i < resultSize; i++) {
+            visited[result[i]] = false;
+        }
+
+        // sort by position in the topological order
+        long[] keys = new long[resultSize];
+        for (int i = 0; i < resultSize; i++) {
+            keys[i] = ((long) order[result[i]] << 32) | result[i];
+        }
+        Arrays.sort(keys);
+        for (int i = 0; i < resultSize; i++) {
+            result[i] = (int) keys[i];
+        }
+
+        return Arrays.copyOf(result, resultSize);
+    }
+
+    /**
+     * Places all backward-visited nodes before all forward-visited nodes re-using the
+     * positions they occupied so far
+     *
+     * @param forward  nodes reachable from the edge target
+     * @param backward nodes reaching the edge source
+     */
+    private void reorder(int[] forward, int[] backward)
+    {
+        int[] positions = new int[forward.length + backward.length];
+        int[] nodes = new int[positions.length];
+
+        int k = 0;
+        for (int n : backward) {
+            positions[k] = order[n];
+            nodes[k++] = n;
+        }
+        for (int n : forward) {
+            positions[k] = order[n];
+            nodes[k++] = n;
+        }
+
+        Arrays.sort(positions);
+
+        for (int i = 0; i < nodes.length; i++) {
+            order[nodes[i]] = positions[i];
+            nodeAtPosition[positions[i]] = nodes[i];
+        }
+    }
+
+    private void removeEdge(int source, int target)
+    {
+        outDegrees[source] = remove(outEdges[source], outDegrees[source], target);
+        inDegrees[target] = remove(inEdges[target], inDegrees[target], source);
+        edgeCount--;
+    }
+
+    private static int remove(int[] array, int size, int value)
+    {
+        for (int i = 0; i < size; i++) {
+            if (array[i] == value) {
+                array[i] = array[size - 1];
+                return size - 1;
+            }
+        }
+        throw new IllegalStateException("Value " + value + " not found");
+    }
+
+    private static int[] append(int[] array, int index, int value)
+    {
+        int[] result = array;
+        if (index == array.length) {
+            result = Arrays.copyOf(array, Math.max(2, array.length * 2));
+        }
+        result[index] = value;
+        return result;
+    }
+}
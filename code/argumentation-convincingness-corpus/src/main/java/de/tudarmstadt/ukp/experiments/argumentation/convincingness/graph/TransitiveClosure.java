@@ -0,0 +1,163 @@
+/*
+ * Copyright 2016
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.tudarmstadt.ukp.experiments.argumentation.convincingness.graph;
+
+import de.tudarmstadt.ukp.experiments.argumentation.convincingness.createdebate.Argument;
+import de.tudarmstadt.ukp.experiments.argumentation.convincingness.sampling.GeneratedArgumentPair;
+
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Transitive closure of a directed acyclic graph; reachability of each node is stored as a
+ * bit row. Rows are computed in a single pass over the reverse topological order, where the
+ * row of a node is the union of its successors and their rows.
+ *
+ * @author Ivan Habernal
+ */
+public class TransitiveClosure
+{
+    private final ArgumentGraph graph;
+
+    /**
+     * Nodes reachable from each node (the node itself is never included)
+     */
+    private final BitSet[] reachable;
+
+    /**
+     * Computes the closure
+     *
+     * @param graph graph (must be DAG)
+     * @throws IllegalArgumentException if the graph contains a cycle
+     */
+    public TransitiveClosure(ArgumentGraph graph)
+    {
+        this.graph = graph;
+        this.reachable = new BitSet[graph.getNodeCount()];
+
+        int[] order = DAGTransitivityScorer.sortTopologically(graph);
+
+        for (int i = order.length - 1; i >= 0; i--) {
+            int n = order[i];
+            BitSet row = new BitSet(graph.getNodeCount());
+
+            for (int j = 0; j < graph.getOutDegree(n); j++) {
+                int w = graph.getSuccessor(n, j);
+                row.set(w);
+                row.or(reachable[w]);
+            }
+
+            reachable[n] = row;
+        }
+    }
+
+    /**
+     * Returns true if there is a path from {@code from} to {@code to}
+     *
+     * @param from source node
+     * @param to   target node
+     * @return boolean
+     */
+    public boolean isReachable(int from, int to)
+    {
+        return reachable[from].get(to);
+    }
+
+    /**
+     * Returns all nodes reachable from the given node (a copy)
+     *
+     * @param node node
+     * @return bit set of node indices
+     */
+    public BitSet getReachableNodes(int node)
+    {
+        return (BitSet) reachable[node].clone();
+    }
+
+    /**
+     * Number of all (source, target) pairs connected by a path
+     *
+     * @return int
+     */
+    public int getPairCount()
+    {
+        int result = 0;
+        for (BitSet row : reachable) {
+            result += row.cardinality();
+        }
+        return result;
+    }
+
+    /**
+     * Creates argument pairs implied by the graph: for each path from A to B a pair (A, B) with
+     * gold label "a1" and the reverse pair (B, A) with gold label "a2". Node IDs must be the
+     * argument IDs, i.e., the graph must not contain clustered nodes.
+     *
+     * @param arguments all arguments (ID, argument)
+     * @return set of pairs
+     * @throws IllegalStateException if there is no argument for a node
+     */
+    public Set<GeneratedArgumentPair> createGeneratedArgumentPairs(Map<String, Argument> arguments)
+    {
+        // both directions for each pair
+        Set<GeneratedArgumentPair> result = new HashSet<>(getPairCount() * 4);
+
+        for (int j = 0; j < reachable.length; j++) {
+            BitSet row = reachable[j];
+
+            if (row.isEmpty()) {
+                continue;
+            }
+
+            Argument arg1 = getArgument(arguments, j);
+
+            for (int k = row.nextSetBit(0); k >= 0; k = row.nextSetBit(k + 1)) {
+                Argument arg2 = getArgument(arguments, k);
+
+                GeneratedArgumentPair ap = new GeneratedArgumentPair();
+                ap.setArg1(arg1);
+                ap.setArg2(arg2);
+                ap.setGoldLabel("a1");
+                result.add(ap);
+
+                // and the reverse one
+                GeneratedArgumentPair reverse = new GeneratedArgumentPair();
+                reverse.setArg1(arg2);
+                reverse.setArg2(arg1);
+                reverse.setGoldLabel("a2");
+                result.add(reverse);
+            }
+        }
+
+        return result;
+    }
+
+    private Argument getArgument(Map<String, Argument> arguments, int node)
+    {
+        Argument result = arguments.get(graph.getNodeId(node));
+
+        if (result == null) {
+            throw new IllegalStateException("Cannot find argument " + graph.getNodeId(node));
+        }
+
+        return result;
+    }
+}
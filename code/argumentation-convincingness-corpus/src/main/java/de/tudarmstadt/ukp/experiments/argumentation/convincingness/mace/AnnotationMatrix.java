@@ -0,0 +1,251 @@
+/*
+ * Copyright 2016
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.tudarmstadt.ukp.experiments.argumentation.convincingness.mace;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sparse matrix of annotations (instance x annotator -> label ID) as the input of
+ * {@link MACE}. Instances are appended row by row; annotations of an instance are stored in
+ * compressed sparse rows (instance offsets, annotators, labels) in the order they were added.
+ * Label names are interned to dense IDs in the order of their first occurrence.
+ *
+ * @author Ivan Habernal
+ */
+public class AnnotationMatrix
+{
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final Map<String, Integer> labelIds = new HashMap<>();
+
+    private final List<String> labelNames = new ArrayList<>();
+
+    private int numInstances;
+
+    private int numAnnotators;
+
+    private int numAnnotations;
+
+    // [d + 1]
+    private int[] instanceOffsets = new int[INITIAL_CAPACITY + 1];
+
+    // [annotation]
+    private int[] annotators = new int[INITIAL_CAPACITY];
+
+    // [annotation]
+    private int[] labels = new int[INITIAL_CAPACITY];
+
+    /**
+     * Creates an empty matrix; the number of annotators is given by the highest annotator
+     * index
+     */
+    public AnnotationMatrix()
+    {
+    }
+
+    /**
+     * Creates an empty matrix with a fixed minimal number of annotators (e.g., annotators
+     * without any annotation still get their competence)
+     *
+     * @param numAnnotators number of annotators
+     */
+    public AnnotationMatrix(int numAnnotators)
+    {
+        this.numAnnotators = numAnnotators;
+    }
+
+    /**
+     * Returns the ID of the label, adds a new one if needed
+     *
+     * @param labelName label
+     * @return label ID
+     */
+    public int addLabel(String labelName)
+    {
+        Integer result = labelIds.get(labelName);
+        if (result == null) {
+            result = labelNames.size();
+            labelIds.put(labelName, result);
+            labelNames.add(labelName);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the label ID
+     *
+     * @param labelName label
+     * @return ID or -1 if there is no such label
+     */
+    public int getLabelId(String labelName)
+    {
+        Integer result = labelIds.get(labelName);
+        return result != null ? result : -1;
+    }
+
+    public String getLabelName(int labelId)
+    {
+        return labelNames.get(labelId);
+    }
+
+    /**
+     * Returns all label names in the order of their IDs
+     *
+     * @return unmodifiable list
+     */
+    public List<String> getLabelNames()
+    {
+        return Collections.unmodifiableList(labelNames);
+    }
+
+    /**
+     * Appends a new instance; following annotations belong to it
+     *
+     * @return index of the instance
+     */
+    public int addInstance()
+    {
+        if (numInstances + 2 > instanceOffsets.length) {
+            instanceOffsets = Arrays.copyOf(instanceOffsets, instanceOffsets.length * 2);
+        }
+
+        numInstances++;
+        instanceOffsets[numInstances] = numAnnotations;
+
+        return numInstances - 1;
+    }
+
+    /**
+     * Adds an annotation of the last instance
+     *
+     * @param annotator annotator index
+     * @param label     label ID
+     * @throws IllegalStateException    if there is no instance yet
+     * @throws IllegalArgumentException if the annotator or label is unknown
+     */
+    public void addAnnotation(int annotator, int label)
+    {
+        if (numInstances == 0) {
+            throw new IllegalStateException("No instance to annotate, call addInstance() first");
+        }
+        if (annotator < 0) {
+            throw new IllegalArgumentException("Negative annotator index " + annotator);
+        }
+        if (label < 0 || label >= labelNames.size()) {
+            throw new IllegalArgumentException("Unknown label ID " + label);
+        }
+
+        if (numAnnotations == labels.length) {
+            annotators = Arrays.copyOf(annotators, numAnnotations * 2);
+            labels = Arrays.copyOf(labels, numAnnotations * 2);
+        }
+
+        annotators[numAnnotations] = annotator;
+        labels[numAnnotations] = label;
+        numAnnotations++;
+        instanceOffsets[numInstances] = numAnnotations;
+
+        numAnnotators = Math.max(numAnnotators, annotator + 1);
+    }
+
+    /**
+     * Adds an annotation of the last instance
+     *
+     * @param annotator annotator index
+     * @param labelName label (added if needed)
+     */
+    public void addAnnotation(int annotator, String labelName)
+    {
+        addAnnotation(annotator, addLabel(labelName));
+    }
+
+    /**
+     * Sets the number of annotators to at least the given number
+     *
+     * @param numAnnotators number of annotators
+     */
+    public void ensureAnnotators(int numAnnotators)
+    {
+        this.numAnnotators = Math.max(this.numAnnotators, numAnnotators);
+    }
+
+    public int getNumInstances()
+    {
+        return numInstances;
+    }
+
+    public int getNumAnnotators()
+    {
+        return numAnnotators;
+    }
+
+    public int getNumLabels()
+    {
+        return labelNames.size();
+    }
+
+    public int getNumAnnotations()
+    {
+        return numAnnotations;
+    }
+
+    /**
+     * @return flag for each annotator whether it has at least one annotation
+     */
+    public boolean[] getAnnotatedAnnotators()
+    {
+        boolean[] result = new boolean[numAnnotators];
+        for (int i = 0; i < numAnnotations; i++) {
+            result[annotators[i]] = true;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the offsets of instances in the annotation arrays; annotations of instance d are
+     * at positions offsets[d] .. offsets[d + 1] - 1
+     *
+     * @return array of size numInstances + 1 (a copy)
+     */
+    public int[] getInstanceOffsets()
+    {
+        return Arrays.copyOf(instanceOffsets, numInstances + 1);
+    }
+
+    /**
+     * @return annotator of each annotation (a copy)
+     */
+    public int[] getAnnotators()
+    {
+        return Arrays.copyOf(annotators, numAnnotations);
+    }
+
+    /**
+     * @return label ID of each annotation (a copy)
+     */
+    public int[] getLabels()
+    {
+        return Arrays.copyOf(labels, numAnnotations);
+    }
+}
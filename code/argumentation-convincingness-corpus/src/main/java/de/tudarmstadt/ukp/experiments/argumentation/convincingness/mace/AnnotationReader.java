@@ -0,0 +1,215 @@
+/*
+ * Copyright 2016
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.tudarmstadt.ukp.experiments.argumentation.convincingness.mace;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Single-pass reader of MACE CSV files (one instance per line, one comma-separated field per
+ * annotator, empty field = no annotation). The input is parsed at the byte level directly into
+ * an {@link AnnotationMatrix}; labels are interned by their bytes in an open-addressing table,
+ * so a string is created only for each distinct label. Lines end with "\n", "\r\n" or "\r";
+ * labels are decoded as UTF-8.
+ *
+ * @author Ivan Habernal
+ */
+public class AnnotationReader
+{
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final AnnotationMatrix matrix = new AnnotationMatrix();
+
+    // current field
+    private byte[] token = new byte[32];
+    private int tokenLength;
+    private int tokenHash;
+
+    // interned labels; slots contain label ID + 1 (0 = empty)
+    private int[] slots = new int[16];
+    private byte[][] labelBytes = new byte[8][];
+    private int[] labelHashes = new int[8];
+    private int numLabels;
+
+    // current line
+    private boolean lineStarted;
+    private int annotator;
+    private int lineNumber;
+    private int numAnnotators;
+
+    /**
+     * Reads all instances from the stream (which is not closed)
+     *
+     * @param inputStream input
+     * @return annotations
+     * @throws IOException if lines have different numbers of fields
+     */
+    public AnnotationMatrix read(InputStream inputStream)
+            throws IOException
+    {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        boolean skipLineFeed = false;
+
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+            for (int i = 0; i < read; i++) {
+                byte b = buffer[i];
+
+                if (skipLineFeed) {
+                    skipLineFeed = false;
+                    if (b == '\n') {
+                        continue;
+                    }
+                }
+
+                if (!lineStarted) {
+                    matrix.addInstance();
+                    lineStarted = true;
+                }
+
+                if (b == ',') {
+                    endField();
+                    annotator++;
+                }
+                else if (b == '\n' || b == '\r') {
+                    endLine();
+                    skipLineFeed = b == '\r';
+                }
+                else {
+                    if (tokenLength == token.length) {
+                        token = Arrays.copyOf(token, tokenLength * 2);
+                    }
+                    token[tokenLength++] = b;
+                    tokenHash = 31 * tokenHash + b;
+                }
+            }
+        }
+
+        // last line without a line break
+        if (lineStarted) {
+            endLine();
+        }
+
+        matrix.ensureAnnotators(numAnnotators);
+
+        return matrix;
+    }
+
+    private void endField()
+    {
+        if (tokenLength > 0) {
+            matrix.addAnnotation(annotator, internLabel());
+        }
+
+        tokenLength = 0;
+        tokenHash = 0;
+    }
+
+    private void endLine()
+            throws IOException
+    {
+        endField();
+
+        if (numAnnotators > 0 && annotator + 1 != numAnnotators) {
+            throw new IOException("number of annotations in line " + (lineNumber + 1)
+                    + " differs from previous line!");
+        }
+        numAnnotators = annotator + 1;
+
+        annotator = 0;
+        lineStarted = false;
+        lineNumber++;
+    }
+
+    /**
+     * Returns the ID of the current token, adds a new label if needed
+     */
+    private int internLabel()
+    {
+        int mask = slots.length - 1;
+        int slot = mix(tokenHash) & mask;
+
+        while (slots[slot] != 0) {
+            int labelId = slots[slot] - 1;
+            if (labelHashes[labelId] == tokenHash && equalsToken(labelBytes[labelId])) {
+                return labelId;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        // new label
+        byte[] bytes = Arrays.copyOf(token, tokenLength);
+        int labelId = matrix.addLabel(new String(bytes, StandardCharsets.UTF_8));
+
+        // invalid UTF-8 sequences may be decoded to an existing label
+        if (labelId < numLabels) {
+            return labelId;
+        }
+
+        if (numLabels == labelBytes.length) {
+            labelBytes = Arrays.copyOf(labelBytes, numLabels * 2);
+            labelHashes = Arrays.copyOf(labelHashes, numLabels * 2);
+        }
+        labelBytes[numLabels] = bytes;
+        labelHashes[numLabels] = tokenHash;
+        numLabels++;
+        slots[slot] = labelId + 1;
+
+        // keep the load factor below 1/2
+        if (numLabels * 2 > slots.length) {
+            rehash();
+        }
+
+        return labelId;
+    }
+
+    private boolean equalsToken(byte[] bytes)
+    {
+        if (bytes.length != tokenLength) {
+            return false;
+        }
+        for (int i = 0; i < tokenLength; i++) {
+            if (bytes[i] != token[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void rehash()
+    {
+        slots = new int[slots.length * 2];
+        int mask = slots.length - 1;
+
+        for (int labelId = 0; labelId < numLabels; labelId++) {
+            int slot = mix(labelHashes[labelId]) & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = labelId + 1;
+        }
+    }
+
+    private static int mix(int hash)
+    {
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -41,11 +41,25 @@ https://opensource.org/licenses/NTP
 */
 package de.tudarmstadt.ukp.experiments.argumentation.convincingness.mace;
 
+import org.apache.commons.lang3.ArrayUtils;
+
 import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.PrintWriter;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * MACE: Multi-Annotator Competence Estimation
@@ -60,43 +74,85 @@ public class MACE
     public static final String VERSION = "0.2";
 
     // defaults
-    private static final int DEFAULT_RR = 10;
-    private static final int DEFAULT_ITERATIONS = 50;
+    public static final int DEFAULT_RR = 10;
+    public static final int DEFAULT_ITERATIONS = 50;
     private static final double DEFAULT_NOISE = 0.5;
-    private static final double DEFAULT_ALPHA = 0.5;
-    private static final double DEFAULT_BETA = 0.5;
+    public static final double DEFAULT_ALPHA = 0.5;
+    public static final double DEFAULT_BETA = 0.5;
+    public static final int DEFAULT_PATIENCE = 5;
 
     // fields
     public int numInstances;
     public int numAnnotators;
     public int numLabels;
 
-    // training data
-    // [d][ai]
-    public int[][] whoLabeled;
-    // [d][ai]
-    public int[][] labels;
+    // no control item for an instance
+    public static final int NO_CONTROL = -1;
+
+    // training data in compressed sparse rows: annotations of instance d are stored at
+    // positions instanceOffsets[d] .. instanceOffsets[d + 1] - 1
+    // [d + 1]
+    public int[] instanceOffsets;
+    // [annotation]
+    public int[] whoLabeled;
+    // [annotation]
+    public int[] labels;
 
+    // all matrices are flattened by rows, e.g. thetas[a * 2 + 1] is thetas[a][1]
     // parameters
-    // [a][2]
-    public double[][] thetas;
-    // [d][l]
-    public double[][] strategies;
+    // [a * 2]; 0 = spamming, 1 = knowing
+    public double[] thetas;
+    // [a * l]
+    public double[] strategies;
 
     // expected counts
-    // [d][l]
-    public double[][] goldLabelMarginals;
-    // [a][l]
-    public double[][] strategyExpectedCounts;
-    // [a][2]
-    public double[][] knowingExpectedCounts;
+    // [d * l]
+    public double[] goldLabelMarginals;
+    // [a * l]
+    public double[] strategyExpectedCounts;
+    // [a * 2]
+    public double[] knowingExpectedCounts;
 
     // priors
-    public double[][] thetaPriors;    // this controls how many of the annotators are actually good
+    public double[] thetaPriors;    // this controls how many of the annotators are actually good
+
+    public double[] strategyPriors;    // for now, these are 1.0
+
+    // terms precomputed for each E-step
+    // [a * l]: thetas[a][0] * strategies[a][l]
+    private double[] spammingTerms;
 
-    public double[][] strategyPriors;    // for now, these are 1.0
+    // sharded E-step: instances are split into contiguous shards, each with its own expected
+    // counts; shards are reduced in their order, so the result only depends on their number
+    private int eStepThreads = 1;
+    private ForkJoinPool eStepPool;
+    // [shard][a * l]
+    private double[][] shardStrategyExpectedCounts;
+    // [shard][a * 2]
+    private double[][] shardKnowingExpectedCounts;
+    // [shard]
+    private double[] shardLogMarginalLikelihoods;
 
     double logMarginalLikelhood;
+    private double initialLogMarginalLikelihood;
+
+    // early stopping: a restart stops after the relative change of the log marginal likelihood
+    // has been below the tolerance for the given number of iterations (0.0 = disabled)
+    private double tolerance = 0.0;
+    private int patience = DEFAULT_PATIENCE;
+    // iterations run by this model (single restart) or by each restart
+    private int iterationsUsed;
+    private int[] iterationsPerRestart = new int[0];
+
+    // warm start: parameters of frozen annotators are not updated by the M-step
+    private boolean[] frozenAnnotators;
+    private double[] frozenThetas;
+    private double[] frozenStrategies;
+
+    // random restarts
+    private int threads = 1;
+    private Long seed;
+    private Random random = new Random();
 
     //hash stuff
     public Map<String, Integer> string2Int;
@@ -112,27 +168,133 @@ public class MACE
     public MACE(String csvFile)
             throws IOException
     {
+        this(readFileData(csvFile));
+    }
 
-        numInstances = fileLineCount(csvFile);
+    /**
+     * Constructor
+     *
+     * @param annotations annotations (instance x annotator -> label)
+     */
+    public MACE(AnnotationMatrix annotations)
+    {
+        this.numInstances = annotations.getNumInstances();
+        this.numAnnotators = annotations.getNumAnnotators();
+        this.numLabels = annotations.getNumLabels();
 
-        labels = new int[numInstances][];
-        whoLabeled = new int[numInstances][];
+        this.instanceOffsets = annotations.getInstanceOffsets();
+        this.whoLabeled = annotations.getAnnotators();
+        this.labels = annotations.getLabels();
 
         // hash stuff
-        string2Int = new HashMap<>();
-        int2String = new ArrayList<>();
-        hashCounter = 0;
+        this.int2String = new ArrayList<>(annotations.getLabelNames());
+        this.string2Int = new HashMap<>();
+        for (int l = 0; l < numLabels; l++) {
+            string2Int.put(int2String.get(l), l);
+        }
+        this.hashCounter = numLabels;
+
+        this.allocateExpectedCounts();
+    }
 
-        // read in CSV file to get all basic information
-        this.readFileData(csvFile);
+    /**
+     * Creates a model for a single random restart; the training data are shared with the
+     * original model (read-only), parameters and expected counts are not
+     *
+     * @param data model with training data
+     * @param seed seed of the random generator for initialization
+     */
+    private MACE(MACE data, long seed)
+    {
+        this.numInstances = data.numInstances;
+        this.numAnnotators = data.numAnnotators;
+        this.numLabels = data.numLabels;
+        this.instanceOffsets = data.instanceOffsets;
+        this.labels = data.labels;
+        this.whoLabeled = data.whoLabeled;
+        this.string2Int = data.string2Int;
+        this.int2String = data.int2String;
+        this.hashCounter = data.hashCounter;
+        this.random = new Random(seed);
+        this.eStepThreads = data.eStepThreads;
+        this.eStepPool = data.eStepPool;
+        this.tolerance = data.tolerance;
+        this.patience = data.patience;
+
+        this.allocateExpectedCounts();
+    }
 
-        //this.numAnnotators = annotatorNumber;
-        this.numLabels = int2String.size();
+    private void allocateExpectedCounts()
+    {
+        this.goldLabelMarginals = new double[numInstances * numLabels];
+        this.strategyExpectedCounts = new double[numAnnotators * numLabels];
+        this.knowingExpectedCounts = new double[numAnnotators * 2];
+        this.spammingTerms = new double[numAnnotators * numLabels];
+    }
 
-        this.goldLabelMarginals = new double[numInstances][numLabels];
-        this.strategyExpectedCounts = new double[numAnnotators][numLabels];
-        this.knowingExpectedCounts = new double[numAnnotators][2];
+    /**
+     * Sets the number of threads for running random restarts in parallel (default: 1)
+     */
+    public void setThreads(int threads)
+    {
+        if (threads < 1) {
+            throw new IllegalArgumentException("number of threads must be positive");
+        }
+        this.threads = threads;
+    }
 
+    /**
+     * Sets the number of threads (and data shards) of the E-step in each restart; the results
+     * are reproducible for a fixed number of threads (default: 1)
+     */
+    public void setEStepThreads(int eStepThreads)
+    {
+        if (eStepThreads < 1) {
+            throw new IllegalArgumentException("number of threads must be positive");
+        }
+        this.eStepThreads = eStepThreads;
+    }
+
+    /**
+     * Enables early stopping: EM of a restart stops once the relative change of the log
+     * marginal likelihood is below the tolerance in {@code patience} consecutive iterations
+     * (default: 0.0, i.e., all iterations are run)
+     */
+    public void setTolerance(double tolerance)
+    {
+        if (tolerance < 0.0) {
+            throw new IllegalArgumentException("tolerance less than 0.0");
+        }
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * Sets the number of consecutive iterations below the tolerance needed to stop (default:
+     * {@link #DEFAULT_PATIENCE})
+     */
+    public void setPatience(int patience)
+    {
+        if (patience < 1) {
+            throw new IllegalArgumentException("patience must be positive");
+        }
+        this.patience = patience;
+    }
+
+    /**
+     * @return number of EM iterations run by each restart of the last training
+     */
+    public int[] getIterationsPerRestart()
+    {
+        return iterationsPerRestart.clone();
+    }
+
+    /**
+     * Sets the seed for random initialization of restarts; with a fixed seed, the results do
+     * not depend on the number of threads (default: no seed)
+     */
+    public void setSeed(long seed)
+    {
+        this.seed = seed;
     }
 
     /**
@@ -140,20 +302,20 @@ public class MACE
      */
     public void initialize(double initNoise)
     {
-        Random rand = new Random();
-        this.thetas = new double[numAnnotators][2];
-        this.strategies = new double[numAnnotators][numLabels];
+        Random rand = this.random;
+        this.thetas = new double[numAnnotators * 2];
+        this.strategies = new double[numAnnotators * numLabels];
+        Arrays.fill(thetas, 1.0);
+        Arrays.fill(strategies, 1.0);
         for (int a = 0; a < numAnnotators; ++a) {
-            Arrays.fill(thetas[a], 1.0);
-            Arrays.fill(strategies[a], 1.0);
-            thetas[a][0] += initNoise * rand.nextDouble();
-            thetas[a][1] += initNoise * rand.nextDouble();
+            thetas[a * 2] += initNoise * rand.nextDouble();
+            thetas[a * 2 + 1] += initNoise * rand.nextDouble();
             for (int l = 0; l < numLabels; ++l) {
-                strategies[a][l] += initNoise * rand.nextDouble();
+                strategies[a * numLabels + l] += initNoise * rand.nextDouble();
             }
         }
-        normalizeInPlace(thetas, 0.0);
-        normalizeInPlace(strategies, 0.0);
+        normalizeInPlace(thetas, 2, 0.0);
+        normalizeInPlace(strategies, numLabels, 0.0);
 
         //System.out.println(thetas[0][0] + " " + thetas[0][1]);
     }
@@ -164,106 +326,239 @@ public class MACE
     public void initialize(double initNoise, double alpha, double beta)
     {
         this.initialize(initNoise);
-        this.thetaPriors = new double[numAnnotators][2];
-        this.strategyPriors = new double[numAnnotators][numLabels];
-        for (int a = 0; a < numAnnotators; ++a) {
-            thetaPriors[a][0] = alpha;
-            thetaPriors[a][1] = beta;
-            Arrays.fill(strategyPriors[a], 10.0);
-        }
+        this.initializePriors(alpha, beta);
     }
 
     /**
-     * compute expected counts when control items are provided
+     * initialize model parameters from a previously trained model; annotators missing in the
+     * model start with equal spamming/knowing probabilities and uniform strategies, labels
+     * missing in the model get the uniform strategy probability before renormalization
+     *
+     * @param model        trained model
+     * @param annotatorIds ID of each annotator (as in the model)
      */
-    public void EStep(Map<Integer, Integer> controls)
+    public void initialize(MACEModel model, List<String> annotatorIds)
     {
+        if (annotatorIds.size() != numAnnotators) {
+            throw new IllegalArgumentException(
+                    "Expected " + numAnnotators + " annotator IDs but got " + annotatorIds.size());
+        }
 
-        // reset counts
+        Map<String, Integer> modelAnnotators = new HashMap<>();
+        for (int m = 0; m < model.getAnnotatorIds().size(); m++) {
+            modelAnnotators.put(model.getAnnotatorIds().get(m), m);
+        }
 
-        for (int d = 0; d < numInstances; ++d) {
-            for (int l = 0; l < numLabels; ++l) {
-                goldLabelMarginals[d][l] = 0.0;
+        int modelNumLabels = model.getLabelNames().size();
+        int[] modelLabels = new int[numLabels];
+        for (int l = 0; l < numLabels; l++) {
+            modelLabels[l] = model.getLabelNames().indexOf(int2String.get(l));
+        }
+
+        this.thetas = new double[numAnnotators * 2];
+        this.strategies = new double[numAnnotators * numLabels];
+        Arrays.fill(thetas, 0.5);
+        Arrays.fill(strategies, 1.0 / numLabels);
+
+        double[] modelThetas = model.getThetas();
+        double[] modelStrategies = model.getStrategies();
+        for (int a = 0; a < numAnnotators; a++) {
+            Integer m = modelAnnotators.get(annotatorIds.get(a));
+            if (m == null) {
+                continue;
+            }
+
+            thetas[a * 2] = modelThetas[m * 2];
+            thetas[a * 2 + 1] = modelThetas[m * 2 + 1];
+            for (int l = 0; l < numLabels; l++) {
+                if (modelLabels[l] >= 0) {
+                    strategies[a * numLabels + l] =
+                            modelStrategies[m * modelNumLabels + modelLabels[l]];
+                }
             }
         }
+        normalizeInPlace(thetas, 2, 0.0);
+        normalizeInPlace(strategies, numLabels, 0.0);
+    }
+
+    /**
+     * set prior matrices
+     */
+    private void initializePriors(double alpha, double beta)
+    {
+        this.thetaPriors = new double[numAnnotators * 2];
+        this.strategyPriors = new double[numAnnotators * numLabels];
         for (int a = 0; a < numAnnotators; ++a) {
-            knowingExpectedCounts[a][0] = 0.0;
-            knowingExpectedCounts[a][1] = 0.0;
+            thetaPriors[a * 2] = alpha;
+            thetaPriors[a * 2 + 1] = beta;
+        }
+        Arrays.fill(strategyPriors, 10.0);
+    }
+
+    /**
+     * compute expected counts when control items are provided
+     *
+     * @param controls control label of each instance or {@link #NO_CONTROL}
+     */
+    public void EStep(final int[] controls)
+    {
+        // precompute the probability of each label given by spamming
+        for (int a = 0; a < numAnnotators; ++a) {
+            double spamming = thetas[a * 2];
             for (int l = 0; l < numLabels; ++l) {
-                strategyExpectedCounts[a][l] = 0.0;
+                spammingTerms[a * numLabels + l] = spamming * strategies[a * numLabels + l];
             }
         }
 
-        // compute marginals
+        int shards = Math.min(eStepThreads, Math.max(numInstances, 1));
 
-        logMarginalLikelhood = 0.0;
+        if (shards == 1 || eStepPool == null) {
+            Arrays.fill(strategyExpectedCounts, 0.0);
+            Arrays.fill(knowingExpectedCounts, 0.0);
+            logMarginalLikelhood = EStep(controls, 0, numInstances, strategyExpectedCounts,
+                    knowingExpectedCounts);
+            return;
+        }
 
-        for (int d = 0; d < numInstances; ++d) {
+        if (shardStrategyExpectedCounts == null || shardStrategyExpectedCounts.length != shards) {
+            shardStrategyExpectedCounts = new double[shards][numAnnotators * numLabels];
+            shardKnowingExpectedCounts = new double[shards][numAnnotators * 2];
+            shardLogMarginalLikelihoods = new double[shards];
+        }
+
+        final List<EStepShard> tasks = new ArrayList<>();
+        for (int s = 0; s < shards; s++) {
+            int firstInstance = (int) ((long) numInstances * s / shards);
+            int lastInstance = (int) ((long) numInstances * (s + 1) / shards);
+            tasks.add(new EStepShard(controls, s, firstInstance, lastInstance));
+        }
+
+        eStepPool.invoke(new RecursiveAction()
+        {
+            @Override
+            protected void compute()
+            {
+                invokeAll(tasks);
+            }
+        });
+
+        // reduce in the order of shards
+        System.arraycopy(shardStrategyExpectedCounts[0], 0, strategyExpectedCounts, 0,
+                strategyExpectedCounts.length);
+        System.arraycopy(shardKnowingExpectedCounts[0], 0, knowingExpectedCounts, 0,
+                knowingExpectedCounts.length);
+        logMarginalLikelhood = shardLogMarginalLikelihoods[0];
+
+        for (int s = 1; s < shards; s++) {
+            double[] shardStrategyCounts = shardStrategyExpectedCounts[s];
+            for (int i = 0; i < strategyExpectedCounts.length; i++) {
+                strategyExpectedCounts[i] += shardStrategyCounts[i];
+            }
+            double[] shardKnowingCounts = shardKnowingExpectedCounts[s];
+            for (int i = 0; i < knowingExpectedCounts.length; i++) {
+                knowingExpectedCounts[i] += shardKnowingCounts[i];
+            }
+            logMarginalLikelhood += shardLogMarginalLikelihoods[s];
+        }
+    }
+
+    /**
+     * E-step of a single shard of instances
+     */
+    private class EStepShard
+            extends RecursiveAction
+    {
+        private final int[] controls;
+        private final int shard;
+        private final int firstInstance;
+        private final int lastInstance;
+
+        EStepShard(int[] controls, int shard, int firstInstance, int lastInstance)
+        {
+            this.controls = controls;
+            this.shard = shard;
+            this.firstInstance = firstInstance;
+            this.lastInstance = lastInstance;
+        }
+
+        @Override
+        protected void compute()
+        {
+            double[] strategyCounts = shardStrategyExpectedCounts[shard];
+            double[] knowingCounts = shardKnowingExpectedCounts[shard];
+            Arrays.fill(strategyCounts, 0.0);
+            Arrays.fill(knowingCounts, 0.0);
+
+            shardLogMarginalLikelihoods[shard] = EStep(controls, firstInstance, lastInstance,
+                    strategyCounts, knowingCounts);
+        }
+    }
+
+    /**
+     * compute marginals of the given instances and add their expected counts
+     *
+     * @return log marginal likelihood of the instances
+     */
+    private double EStep(int[] controls, int firstInstance, int lastInstance,
+            double[] strategyCounts, double[] knowingCounts)
+    {
+        double result = 0.0;
+
+        for (int d = firstInstance; d < lastInstance; ++d) {
             double instanceMarginal = 0.0;
+            int control = controls[d];
+            int first = instanceOffsets[d];
+            int last = instanceOffsets[d + 1];
+            int marginalsOffset = d * numLabels;
 
             for (int l = 0; l < numLabels; ++l) {
-                double goldLabelMarginal = (1.0 / numLabels);
-                for (int ai = 0; ai < labels[d].length; ++ai) {
-                    int a = whoLabeled[d][ai];
-
-                    goldLabelMarginal *=
-                            thetas[a][0] * strategies[a][labels[d][ai]] + (l == labels[d][ai] ?
-                                    thetas[a][1] :
-                                    0.0);
-                }
+                double goldLabelMarginal = 0.0;
+
+                if (control == NO_CONTROL || l == control) {
+                    goldLabelMarginal = (1.0 / numLabels);
+                    for (int ai = first; ai < last; ++ai) {
+                        int a = whoLabeled[ai];
+                        int label = labels[ai];
 
-                if (!controls.containsKey(d) || (controls.containsKey(d) && l == controls.get(d))) {
+                        goldLabelMarginal *= spammingTerms[a * numLabels + label] + (l == label ?
+                                thetas[a * 2 + 1] :
+                                0.0);
+                    }
                     instanceMarginal += goldLabelMarginal;
-                    goldLabelMarginals[d][l] = goldLabelMarginal;
                 }
+
+                goldLabelMarginals[marginalsOffset + l] = goldLabelMarginal;
             }
 
-            logMarginalLikelhood += Math.log(instanceMarginal);
-
-            for (int ai = 0; ai < labels[d].length; ++ai) {
-                int a = whoLabeled[d][ai];
-                double strategyMarginal = 0.0;
-
-                if (controls.containsKey(d)) {
-                    if (labels[d][ai] == controls.get(d)) {
-                        {
-                            int l = controls.get(d);
-                            strategyMarginal += goldLabelMarginals[d][l] / (
-                                    thetas[a][0] * strategies[a][labels[d][ai]] + (
-                                            l == labels[d][ai] ? thetas[a][1] : 0.0));
-                        }
-                        strategyMarginal *= thetas[a][0] * strategies[a][labels[d][ai]];
-                        strategyExpectedCounts[a][labels[d][ai]] +=
-                                strategyMarginal / instanceMarginal;
-                        knowingExpectedCounts[a][0] += strategyMarginal / instanceMarginal;
-                        knowingExpectedCounts[a][1] +=
-                                (goldLabelMarginals[d][labels[d][ai]] * thetas[a][1] / (
-                                        thetas[a][0] * strategies[a][labels[d][ai]] + thetas[a][1]))
-                                        / instanceMarginal;
-                    }
-                    else {
-                        strategyExpectedCounts[a][labels[d][ai]] += 1.0;
-                        knowingExpectedCounts[a][0] += 1.0;
-                    }
-                }
-                else {
-                    for (int l = 0; l < numLabels; ++l) {
-                        strategyMarginal += goldLabelMarginals[d][l] / (
-                                thetas[a][0] * strategies[a][labels[d][ai]] + (l == labels[d][ai] ?
-                                        thetas[a][1] :
-                                        0.0));
-                    }
-                    strategyMarginal *= thetas[a][0] * strategies[a][labels[d][ai]];
-                    strategyExpectedCounts[a][labels[d][ai]] += strategyMarginal / instanceMarginal;
-                    knowingExpectedCounts[a][0] += strategyMarginal / instanceMarginal;
-                    knowingExpectedCounts[a][1] +=
-                            (goldLabelMarginals[d][labels[d][ai]] * thetas[a][1] / (
-                                    thetas[a][0] * strategies[a][labels[d][ai]] + thetas[a][1]))
-                                    / instanceMarginal;
+            result += Math.log(instanceMarginal);
+
+            for (int ai = first; ai < last; ++ai) {
+                int a = whoLabeled[ai];
+                int label = labels[ai];
+                double spamming = spammingTerms[a * numLabels + label];
+                double knowing = thetas[a * 2 + 1];
+                double labelMarginal = goldLabelMarginals[marginalsOffset + label];
+
+                if (control != NO_CONTROL && label != control) {
+                    strategyCounts[a * numLabels + label] += 1.0;
+                    knowingCounts[a * 2] += 1.0;
+                    continue;
                 }
+
+                // the gold label marginals of other labels than the annotated one are
+                // divided and multiplied by the same spamming term; with a control item,
+                // only the control (= annotated) label has a non-zero marginal
+                double strategyMarginal = (instanceMarginal - labelMarginal)
+                        + labelMarginal * spamming / (spamming + knowing);
+
+                strategyCounts[a * numLabels + label] += strategyMarginal / instanceMarginal;
+                knowingCounts[a * 2] += strategyMarginal / instanceMarginal;
+                knowingCounts[a * 2 + 1] +=
+                        (labelMarginal * knowing / (spamming + knowing)) / instanceMarginal;
             }
         }
 
+        return result;
     }
 
     /**
@@ -271,8 +566,9 @@ public class MACE
      */
     public void MStep(double smoothing)
     {
-        thetas = normalize(knowingExpectedCounts, smoothing);
-        strategies = normalize(strategyExpectedCounts, smoothing);
+        normalize(knowingExpectedCounts, thetas, 2, smoothing);
+        normalize(strategyExpectedCounts, strategies, numLabels, smoothing);
+        restoreFrozenAnnotators();
     }
 
     /**
@@ -280,8 +576,24 @@ public class MACE
      */
     public void variationalMStep()
     {
-        thetas = variationalNormalize(knowingExpectedCounts, thetaPriors);
-        strategies = variationalNormalize(strategyExpectedCounts, strategyPriors);
+        variationalNormalize(knowingExpectedCounts, thetaPriors, thetas, 2);
+        variationalNormalize(strategyExpectedCounts, strategyPriors, strategies, numLabels);
+        restoreFrozenAnnotators();
+    }
+
+    private void restoreFrozenAnnotators()
+    {
+        if (frozenAnnotators == null) {
+            return;
+        }
+
+        for (int a = 0; a < numAnnotators; a++) {
+            if (frozenAnnotators[a]) {
+                System.arraycopy(frozenThetas, a * 2, thetas, a * 2, 2);
+                System.arraycopy(frozenStrategies, a * numLabels, strategies, a * numLabels,
+                        numLabels);
+            }
+        }
     }
 
     /**
@@ -290,12 +602,29 @@ public class MACE
      * @return answer vector
      */
     public String[] decode(double threshold)
+    {
+        int[] labelIds = decodeLabelIds(threshold);
+
+        String[] result = new String[numInstances];
+        for (int d = 0; d < numInstances; ++d) {
+            result[d] = labelIds[d] == MACEResult.NO_LABEL ? "" : int2String.get(labelIds[d]);
+        }
+
+        return result;
+    }
+
+    /**
+     * find best answer under the current model, ignore instance above threshold
+     *
+     * @return label ID of each instance or {@link MACEResult#NO_LABEL}
+     */
+    public int[] decodeLabelIds(double threshold)
     {
         // get entropies
         double[] entropies = getLabelEntropies();
         double entropyThreshold = getEntropyForThreshold(threshold);
 
-        String[] result = new String[numInstances];
+        int[] result = new int[numInstances];
         for (int d = 0; d < numInstances; ++d) {
             double bestProb = Double.NEGATIVE_INFINITY;
             int bestLabel = -1;
@@ -304,15 +633,15 @@ public class MACE
             if (entropies[d] <= entropyThreshold) {
                 for (int l = 0; l < numLabels; ++l) {
 
-                    if (goldLabelMarginals[d][l] > bestProb) {
-                        bestProb = goldLabelMarginals[d][l];
+                    if (goldLabelMarginals[d * numLabels + l] > bestProb) {
+                        bestProb = goldLabelMarginals[d * numLabels + l];
                         bestLabel = l;
                     }
                 }
-                result[d] = int2String.get(bestLabel);
+                result[d] = bestLabel;
             }
             else
-                result[d] = "";
+                result[d] = MACEResult.NO_LABEL;
         }
 
         return result;
@@ -329,10 +658,10 @@ public class MACE
             double norm = 0.0;
             double entropy = 0.0;
             for (int l = 0; l < numLabels; ++l) {
-                norm += goldLabelMarginals[d][l];
+                norm += goldLabelMarginals[d * numLabels + l];
             }
             for (int l = 0; l < numLabels; ++l) {
-                double p = goldLabelMarginals[d][l] / norm;
+                double p = goldLabelMarginals[d * numLabels + l] / norm;
                 if (p > 0.0) {
                     entropy += -p * Math.log(p);
                 }
@@ -343,6 +672,89 @@ public class MACE
         return result;
     }
 
+    /**
+     * @return the competence of each annotator (probability of knowing the label)
+     */
+    public double[] getCompetences()
+    {
+        double[] result = new double[numAnnotators];
+        for (int a = 0; a < numAnnotators; ++a) {
+            result[a] = thetas[a * 2 + 1];
+        }
+        return result;
+    }
+
+    /**
+     * Returns the results of the trained model
+     *
+     * @param threshold only instances whose entropy is among the top n% are decoded
+     * @return result
+     */
+    public MACEResult getResult(double threshold)
+    {
+        return new MACEResult(Collections.unmodifiableList(int2String),
+                decodeLabelIds(threshold), getLabelEntropies(), getCompetences(),
+                logMarginalLikelhood, getIterationsPerRestart());
+    }
+
+    /**
+     * Returns the trained parameters, annotators are identified by their index
+     *
+     * @return model
+     */
+    public MACEModel getModel()
+    {
+        return getModel(getAnnotatorIndexIds());
+    }
+
+    /**
+     * @return annotator indices as IDs ("0", "1", ...)
+     */
+    public List<String> getAnnotatorIndexIds()
+    {
+        List<String> result = new ArrayList<>();
+        for (int a = 0; a < numAnnotators; a++) {
+            result.add(String.valueOf(a));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the trained parameters
+     *
+     * @param annotatorIds ID of each annotator
+     * @return model
+     */
+    public MACEModel getModel(List<String> annotatorIds)
+    {
+        return new MACEModel(int2String, annotatorIds, thetas.clone(), strategies.clone());
+    }
+
+    /**
+     * @return default smoothing (0.01 / number of labels)
+     */
+    public double getDefaultSmoothing()
+    {
+        return 0.01 / (double) numLabels;
+    }
+
+    /**
+     * run EM with default smoothing and no priors or control items, and returns the results
+     *
+     * @param numIters    number of iterations
+     * @param numRestarts number of restarts
+     * @param threshold   only instances whose entropy is among the top n% are decoded
+     * @return result
+     * @throws IOException
+     */
+    public MACEResult estimate(int numIters, int numRestarts, double threshold)
+            throws IOException
+    {
+        run(numIters, getDefaultSmoothing(), numRestarts, DEFAULT_ALPHA, DEFAULT_BETA, false,
+                (int[]) null);
+        return getResult(threshold);
+    }
+
     /**
      * run EM with the specified parameters
      *
@@ -350,6 +762,7 @@ public class MACE
      * @param numIters:    number of iterations
      * @param smoothing:   smoothing added to expected counts before normalizing
      * @param numRestarts: number of restarts
+     * @param controlsFile file with control items (may be null)
      * @throws IOException
      */
     public void run(int numIters, double smoothing, int numRestarts, double alpha, double beta,
@@ -357,144 +770,412 @@ public class MACE
             throws
             IOException
     {
-        Map<Integer, Integer> controls;
-        if (controlsFile != null) {
-            controls = this.readControls(controlsFile);
-        }
-        else {
-            controls = new HashMap<>();
-        }
+        run(numIters, smoothing, numRestarts, alpha, beta, variational,
+                controlsFile != null ? this.readControls(controlsFile) : null);
+    }
 
-        double[][] bestThetas = new double[numAnnotators][2];
-        double[][] bestStrategies = new double[numAnnotators][numLabels];
-        double bestLogMarginalLikelihood = Double.NEGATIVE_INFINITY;
-        int rrBestModelOccurredAt = 0;
+    /**
+     * run EM with the specified parameters
+     *
+     * @param beta         beta
+     * @param numIters:    number of iterations
+     * @param smoothing:   smoothing added to expected counts before normalizing
+     * @param numRestarts: number of restarts
+     * @param controls     control label ID of each instance or {@link #NO_CONTROL} (may be
+     *                     null)
+     * @throws IOException
+     */
+    public void run(int numIters, double smoothing, int numRestarts, double alpha, double beta,
+            boolean variational, int[] controls)
+            throws
+            IOException
+    {
+        controls = checkControls(controls);
 
         System.out.println("Running training with the following settings:");
         System.out.println("\t" + numIters + " iterations");
         System.out.println("\t" + numRestarts + " restarts");
+        System.out.println("\t" + threads + " threads");
+        System.out.println("\t" + eStepThreads + " E-step threads");
         System.out.println("\tsmoothing = " + smoothing);
+        if (tolerance > 0.0) {
+            System.out.println("\ttolerance = " + tolerance + ", patience = " + patience);
+        }
         if (variational) {
             System.out.println("\talpha = " + alpha);
             System.out.println("\tbeta = " + beta);
         }
 
         double start = System.currentTimeMillis();
+
+        if (eStepThreads > 1) {
+            eStepPool = new ForkJoinPool(eStepThreads);
+        }
+
+        try {
+            runAndSelectBest(numIters, smoothing, numRestarts, alpha, beta, variational,
+                    controls, start);
+        }
+        finally {
+            if (eStepPool != null) {
+                eStepPool.shutdown();
+                eStepPool = null;
+            }
+        }
+    }
+
+    /**
+     * run EM initialized from a previously trained model (no random restarts); parameters of
+     * frozen annotators (e.g., those without new annotations) keep the values of the model
+     *
+     * @param model            trained model
+     * @param annotatorIds     ID of each annotator (as in the model)
+     * @param frozenAnnotators annotators whose parameters are not updated (may be null)
+     * @param numIters         number of iterations
+     * @param smoothing        smoothing added to expected counts before normalizing
+     * @param controls         control label ID of each instance or {@link #NO_CONTROL} (may
+     *                         be null)
+     * @throws IOException
+     */
+    public void runWarmStart(MACEModel model, List<String> annotatorIds,
+            boolean[] frozenAnnotators, int numIters, double smoothing, double alpha,
+            double beta, boolean variational, int[] controls)
+            throws IOException
+    {
+        controls = checkControls(controls);
+        if (frozenAnnotators != null && frozenAnnotators.length != numAnnotators) {
+            throw new IllegalArgumentException(
+                    "Expected " + numAnnotators + " frozen flags but got "
+                            + frozenAnnotators.length);
+        }
+
+        int numFrozen = 0;
+        for (int a = 0; frozenAnnotators != null && a < numAnnotators; a++) {
+            numFrozen += frozenAnnotators[a] ? 1 : 0;
+        }
+
+        System.out.println("Running warm-start training with the following settings:");
+        System.out.println("\t" + numIters + " iterations");
+        System.out.println("\t" + model.getAnnotatorIds().size() + " annotators in the model, "
+                + numFrozen + " frozen");
+        System.out.println("\t" + eStepThreads + " E-step threads");
+        System.out.println("\tsmoothing = " + smoothing);
+        if (tolerance > 0.0) {
+            System.out.println("\ttolerance = " + tolerance + ", patience = " + patience);
+        }
+        if (variational) {
+            System.out.println("\talpha = " + alpha);
+            System.out.println("\tbeta = " + beta);
+        }
+
+        double start = System.currentTimeMillis();
+
+        initialize(model, annotatorIds);
+        if (variational) {
+            initializePriors(alpha, beta);
+        }
+
+        if (numFrozen > 0) {
+            this.frozenAnnotators = frozenAnnotators.clone();
+            this.frozenThetas = thetas.clone();
+            this.frozenStrategies = strategies.clone();
+        }
+
+        if (eStepThreads > 1) {
+            eStepPool = new ForkJoinPool(eStepThreads);
+        }
+
+        try {
+            runEM(numIters, smoothing, variational, controls);
+        }
+        finally {
+            this.frozenAnnotators = null;
+            this.frozenThetas = null;
+            this.frozenStrategies = null;
+
+            if (eStepPool != null) {
+                eStepPool.shutdown();
+                eStepPool = null;
+            }
+        }
+
+        iterationsPerRestart = new int[] { iterationsUsed };
+
+        System.out.println("initial log marginal likelihood = " + initialLogMarginalLikelihood);
+        System.out.println("final log marginal likelihood = " + logMarginalLikelhood);
+        System.out.println("iterations = " + iterationsUsed);
+        System.out.println(
+                "\nTraining completed in " + ((System.currentTimeMillis() - start) / 1000) + "sec");
+    }
+
+    /**
+     * @return controls or no controls if null
+     */
+    private int[] checkControls(int[] controls)
+    {
+        if (controls == null) {
+            int[] result = new int[numInstances];
+            Arrays.fill(result, NO_CONTROL);
+            return result;
+        }
+        else if (controls.length != numInstances) {
+            throw new IllegalArgumentException(
+                    "Expected " + numInstances + " controls but got " + controls.length);
+        }
+        return controls;
+    }
+
+    /**
+     * run all restarts and keep the parameters of the best one
+     */
+    private void runAndSelectBest(int numIters, double smoothing, int numRestarts, double alpha,
+            double beta, boolean variational, int[] controls, double start)
+            throws IOException
+    {
+        double[] bestThetas = new double[numAnnotators * 2];
+        double[] bestStrategies = new double[numAnnotators * numLabels];
+        double bestLogMarginalLikelihood = Double.NEGATIVE_INFINITY;
+        int rrBestModelOccurredAt = 0;
+
+        iterationsPerRestart = new int[numRestarts];
+        double[] initialLogMarginalLikelihoods = new double[numRestarts];
+        double[] finalLogMarginalLikelihoods = new double[numRestarts];
+
+        MACE best = runRestarts(numIters, smoothing, numRestarts, alpha, beta, variational,
+                controls, initialLogMarginalLikelihoods, finalLogMarginalLikelihoods);
+        int totalIterations = 0;
+
+        // the first best restart wins, so the selection does not depend on the threads
         for (int rr = 0; rr < numRestarts; rr++) {
             System.out.println("\n============");
             System.out.println("Restart " + (rr + 1));
             System.out.println("============");
+            System.out.println(
+                    "initial log marginal likelihood = " + initialLogMarginalLikelihoods[rr]);
+            System.out.println(
+                    "final log marginal likelihood = " + finalLogMarginalLikelihoods[rr]);
+            System.out.println("iterations = " + iterationsPerRestart[rr]);
 
-            // initialize
-            if (variational)
-                initialize(DEFAULT_NOISE, alpha, beta);
-            else
-                initialize(DEFAULT_NOISE);
-
-            // run first E-Step to get counts
-            EStep(controls);
-            System.out.println("initial log marginal likelihood = " + logMarginalLikelhood);
-
-            // iterate
-            for (int t = 0; t < numIters; ++t) {
-                if (variational)
-                    variationalMStep();
-                else
-                    MStep(smoothing);
-                EStep(controls);
-                //System.out.println("iter "+t);
-                //System.out.println("log marginal likelihood "+logMarginalLikelhood);
-            }
-            System.out.println("final log marginal likelihood = " + logMarginalLikelhood);
-
-            // renormalize thetas
-            //normalizeInPlace(thetas, 0.0);
-            //normalizeInPlace(strategies, 0.0);
+            totalIterations += iterationsPerRestart[rr];
 
-            if (logMarginalLikelhood > bestLogMarginalLikelihood) {
+            if (finalLogMarginalLikelihoods[rr] > bestLogMarginalLikelihood) {
                 //if (rr>0) System.out.println("NEW BEST MODEL!\n");
                 rrBestModelOccurredAt = rr + 1;
-                bestLogMarginalLikelihood = logMarginalLikelhood;
-                bestThetas = thetas.clone();
-                bestStrategies = strategies.clone();
+                bestLogMarginalLikelihood = finalLogMarginalLikelihoods[rr];
             }
         }
+        if (best != null) {
+            bestThetas = best.thetas;
+            bestStrategies = best.strategies;
+        }
         System.out.println(
                 "\nTraining completed in " + ((System.currentTimeMillis() - start) / 1000) + "sec");
         System.out.println("Best model came from random restart number " + rrBestModelOccurredAt
                 + " (log marginal likelihood: " + bestLogMarginalLikelihood + ")");
+        System.out.println(
+                "Iterations run: " + totalIterations + " of " + (numIters * numRestarts));
         logMarginalLikelhood = bestLogMarginalLikelihood;
         thetas = bestThetas;
         strategies = bestStrategies;
 
         // run E-step to get marginals of latest model
         EStep(controls);
+    }
+
+    /**
+     * run all random restarts (in parallel if more threads are set); each restart has its own
+     * parameters and random generator. Only the best restart is kept while the others finish,
+     * so at most one model per thread plus the best one are in memory.
+     *
+     * @param initialLogMarginalLikelihoods filled with the initial likelihood of each restart
+     * @param finalLogMarginalLikelihoods   filled with the final likelihood of each restart
+     * @return the first restart with the highest log marginal likelihood (null if none is
+     * higher than negative infinity)
+     */
+    private MACE runRestarts(final int numIters, final double smoothing, int numRestarts,
+            final double alpha, final double beta, final boolean variational,
+            final int[] controls, double[] initialLogMarginalLikelihoods,
+            double[] finalLogMarginalLikelihoods)
+            throws IOException
+    {
+        // seeds are drawn in advance, so each restart gets the same one regardless the threads
+        Random seedGenerator = this.seed != null ? new Random(this.seed) : new Random();
+
+        ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        CompletionService<MACE> completionService = new ExecutorCompletionService<>(
+                executorService);
+        Map<Future<MACE>, Integer> restartIndices = new IdentityHashMap<>();
+
+        try {
+            for (int rr = 0; rr < numRestarts; rr++) {
+                final long restartSeed = seedGenerator.nextLong();
+
+                restartIndices.put(completionService.submit(new Callable<MACE>()
+                {
+                    @Override
+                    public MACE call()
+                            throws Exception
+                    {
+                        MACE restart = new MACE(MACE.this, restartSeed);
+                        restart.runSingleRestart(numIters, smoothing, alpha, beta, variational,
+                                controls);
+                        return restart;
+                    }
+                }), rr);
+            }
+
+            MACE best = null;
+            int bestIndex = -1;
+            double bestLogMarginalLikelihood = Double.NEGATIVE_INFINITY;
+
+            // restarts finish in any order; ties go to the lower restart number
+            for (int i = 0; i < numRestarts; i++) {
+                Future<MACE> future = completionService.take();
+                int rr = restartIndices.remove(future);
+
+                MACE restart;
+                try {
+                    restart = future.get();
+                }
+                catch (ExecutionException e) {
+                    if (e.getCause() instanceof RuntimeException) {
+                        throw (RuntimeException) e.getCause();
+                    }
+                    throw new IOException(e.getCause());
+                }
+
+                initialLogMarginalLikelihoods[rr] = restart.initialLogMarginalLikelihood;
+                finalLogMarginalLikelihoods[rr] = restart.logMarginalLikelhood;
+                iterationsPerRestart[rr] = restart.iterationsUsed;
+
+                if (restart.logMarginalLikelhood > bestLogMarginalLikelihood || (
+                        restart.logMarginalLikelhood == bestLogMarginalLikelihood
+                                && best != null && rr < bestIndex)) {
+                    best = restart;
+                    bestIndex = rr;
+                    bestLogMarginalLikelihood = restart.logMarginalLikelhood;
+                }
+            }
+
+            return best;
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+        finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    /**
+     * initialize and run EM of a single restart
+     */
+    private void runSingleRestart(int numIters, double smoothing, double alpha, double beta,
+            boolean variational, int[] controls)
+    {
+        // initialize
+        if (variational)
+            initialize(DEFAULT_NOISE, alpha, beta);
+        else
+            initialize(DEFAULT_NOISE);
+
+        runEM(numIters, smoothing, variational, controls);
+    }
+
+    /**
+     * run EM from the current parameters
+     */
+    private void runEM(int numIters, double smoothing, boolean variational, int[] controls)
+    {
+        // run first E-Step to get counts
+        EStep(controls);
+        initialLogMarginalLikelihood = logMarginalLikelhood;
+
+        // iterate
+        iterationsUsed = 0;
+        int iterationsBelowTolerance = 0;
+        for (int t = 0; t < numIters; ++t) {
+            double previousLogMarginalLikelihood = logMarginalLikelhood;
 
+            if (variational)
+                variationalMStep();
+            else
+                MStep(smoothing);
+            EStep(controls);
+            iterationsUsed++;
+            //System.out.println("iter "+t);
+            //System.out.println("log marginal likelihood "+logMarginalLikelhood);
+
+            // check convergence
+            if (tolerance > 0.0) {
+                double relativeChange =
+                        Math.abs(logMarginalLikelhood - previousLogMarginalLikelihood) / Math
+                                .abs(previousLogMarginalLikelihood);
+
+                iterationsBelowTolerance = relativeChange < tolerance ?
+                        iterationsBelowTolerance + 1 :
+                        0;
+
+                if (iterationsBelowTolerance >= patience) {
+                    break;
+                }
+            }
+        }
     }
 
     /**
-     * normalize a matrix by row
+     * normalize a flattened matrix by row into the result
      *
-     * @return normalized matrix
+     * @param mat       matrix
+     * @param result    normalized matrix (may be the same as mat)
+     * @param rowLength row length
+     * @param smoothing smoothing added to each value
      */
-    public static double[][] normalize(double[][] mat, double smoothing)
+    public static void normalize(double[] mat, double[] result, int rowLength, double smoothing)
     {
-        double[][] result = new double[mat.length][mat[0].length];
-        for (int i = 0; i < result.length; ++i) {
+        for (int i = 0; i < mat.length; i += rowLength) {
             double norm = 0.0;
-            for (int j = 0; j < result[0].length; ++j) {
-                norm += mat[i][j] + smoothing;
+            for (int j = i; j < i + rowLength; ++j) {
+                norm += mat[j] + smoothing;
             }
-            for (int j = 0; j < result[0].length; ++j) {
-                if (norm > 0.0)
-                    result[i][j] = (mat[i][j] + smoothing) / norm;
+            for (int j = i; j < i + rowLength; ++j) {
+                result[j] = norm > 0.0 ? (mat[j] + smoothing) / norm : 0.0;
             }
         }
-        return result;
     }
 
     /**
-     * normalize a matrix by row using hyperparameters
+     * normalize a flattened matrix by row using hyperparameters into the result
      *
      * @param mat
      * @param hyperparameters: a matrix with the priors
-     * @return normalized matrix
+     * @param result           normalized matrix (may be the same as mat)
+     * @param rowLength        row length
      */
-    public static double[][] variationalNormalize(double[][] mat, double[][] hyperparameters)
+    public static void variationalNormalize(double[] mat, double[] hyperparameters,
+            double[] result, int rowLength)
     {
-        double[][] result = new double[mat.length][mat[0].length];
-        for (int i = 0; i < result.length; ++i) {
+        for (int i = 0; i < mat.length; i += rowLength) {
             double norm = 0.0;
-            for (int j = 0; j < result[0].length; ++j) {
-                norm += mat[i][j] + hyperparameters[i][j];
+            for (int j = i; j < i + rowLength; ++j) {
+                norm += mat[j] + hyperparameters[j];
             }
             norm = Math.exp(Mathematics.digamma(norm));
-            for (int j = 0; j < result[0].length; ++j) {
-                if (norm > 0.0) {
-                    result[i][j] =
-                            Math.exp(Mathematics.digamma((mat[i][j] + hyperparameters[i][j])))
-                                    / norm;
-                }
+            for (int j = i; j < i + rowLength; ++j) {
+                result[j] = norm > 0.0 ?
+                        Math.exp(Mathematics.digamma((mat[j] + hyperparameters[j]))) / norm :
+                        0.0;
             }
         }
-        return result;
     }
 
     /**
-     * normalize a matrix by row, in place
+     * normalize a flattened matrix by row, in place
      */
-    public static void normalizeInPlace(double[][] mat, double smoothing)
+    public static void normalizeInPlace(double[] mat, int rowLength, double smoothing)
     {
-        for (int i = 0; i < mat.length; ++i) {
-            double norm = 0.0;
-            for (int j = 0; j < mat[0].length; ++j) {
-                norm += mat[i][j] + smoothing;
-            }
-            for (int j = 0; j < mat[0].length; ++j) {
-                if (norm > 0.0)
-                    mat[i][j] = (mat[i][j] + smoothing) / norm;
-            }
-        }
+        normalize(mat, mat, rowLength, smoothing);
     }
 
     /**
@@ -502,10 +1183,11 @@ public class MACE
      *
      * @throws IOException
      */
-    public Map<Integer, Integer> readControls(String fileName)
+    public int[] readControls(String fileName)
             throws IOException
     {
-        Map<Integer, Integer> controls = new HashMap<>();
+        int[] controls = new int[numInstances];
+        Arrays.fill(controls, NO_CONTROL);
 
         String line;
         try {
@@ -521,13 +1203,14 @@ public class MACE
                 // record item
                 if (!line.equals("")) {
 
-                    // record value if not hashed yet
-                    if (!string2Int.containsKey(line)) {
-                        string2Int.put(line, hashCounter++);
-                        int2String.add(line);
+                    Integer control = string2Int.get(line);
+                    if (control == null) {
+                        throw new IOException(
+                                "control label '" + line + "' does not occur in the data");
+                    }
+                    if (lineNumber < numInstances) {
+                        controls[lineNumber] = control;
                     }
-
-                    controls.put(lineNumber, string2Int.get(line));
                 }
 
                 lineNumber++;
@@ -547,133 +1230,32 @@ public class MACE
      *
      * @throws IOException
      */
-    public void readFileData(String fileName)
+    public static AnnotationMatrix readFileData(String fileName)
             throws IOException
     {
-        readFileData(new BufferedReader(new FileReader(fileName)));
+        try (InputStream inputStream = new FileInputStream(fileName)) {
+            return readFileData(inputStream);
+        }
     }
 
     /**
-     * read CSV file and record data
+     * read CSV data in a single pass (see {@link AnnotationReader})
      *
      * @throws IOException
      */
-    public void readFileData(BufferedReader bufferedReader)
+    public static AnnotationMatrix readFileData(InputStream inputStream)
             throws IOException
     {
-        String line;
-
         System.out.println("Reading CSV file");
 
-        int lineNumber = 0;
-        while ((line = bufferedReader.readLine()) != null) {
-            if (lineNumber > 0) {
-                if (lineNumber % 5 == 0)
-                    System.out.print(".");
-                if (lineNumber % 100 == 0)
-                    System.out.println(lineNumber);
-            }
-
-            List<Integer> annotatorsOnItem = new ArrayList<>();
-            List<Integer> itemValues = new ArrayList<>();
-
-            // split into items
-            StringBuilder token = new StringBuilder("");
-            int readPosition = 0;
-            int annotatorNumber = 0;
-            char[] charArray = line.toCharArray();
-            for (char c : charArray) {
-                // record values
-                if (c != ',')
-                    token.append(c);
-
-                // record after a comma or at the end of the line
-                if (c == ',' || readPosition + 1 == charArray.length) {
-
-                    // last item can be comma or value, so check for both before you break
-                    String item = token.toString();
-
-                    // reset token
-                    token = new StringBuilder("");
-
-                    // record item
-                    if (!item.equals("")) {
-
-                        // record which annotator gave an answer
-                        annotatorsOnItem.add(annotatorNumber);
-
-                        // record value
-                        if (!string2Int.containsKey(item)) {
-                            string2Int.put(item, hashCounter++);
-                            int2String.add(item);
-                        }
-                        itemValues.add(string2Int.get(item));
-                    }
-
-                }
-
-                // advance reading position
-                readPosition++;
-
-                // separate annotators
-                if (c == ',')
-                    annotatorNumber++;
-
-            }
-
-            if (numAnnotators > 0 && annotatorNumber + 1 != this.numAnnotators) {
-                throw new IOException("number of annotations in line " + (lineNumber + 1)
-                        + " differs from previous line!");
-            }
-            this.numAnnotators = annotatorNumber + 1;
-
-            // store as int[][]
-            labels[lineNumber] = toIntArray(itemValues);
-            whoLabeled[lineNumber] = toIntArray(annotatorsOnItem);
-
-            lineNumber++;
-        }// while there are lines left
+        AnnotationMatrix result = new AnnotationReader().read(inputStream);
 
         System.out.println(
-                "\nstats:\n\t" + lineNumber + " instances,\n\t" + int2String.size() + " labels "
-                        + int2String + ",\n\t" + numAnnotators + " annotators\n");
+                "\nstats:\n\t" + result.getNumInstances() + " instances,\n\t"
+                        + result.getNumLabels() + " labels " + result.getLabelNames() + ",\n\t"
+                        + result.getNumAnnotators() + " annotators\n");
 
-        //printIntArray(whoLabeled);
-
-    }
-
-    /**
-     * print the arrays
-     */
-    public void printIntArray(int[][] someArray)
-    {
-        for (int i = 0; i < someArray.length; i++) {
-            printIntArray(someArray[i]);
-        }
-    }
-
-    /**
-     * print the arrays
-     */
-    public void printIntArray(int[] someArray)
-    {
-        for (int i = 0; i < someArray.length; i++) {
-            System.out.print(String.valueOf(someArray[i]) + " ");
-        }
-        System.out.println();
-    }
-
-    /**
-     * turn an ArrayList into a primitive array
-     *
-     * @return int[]
-     */
-    public int[] toIntArray(List<Integer> list)
-    {
-        int[] ret = new int[list.size()];
-        for (int i = 0; i < ret.length; i++)
-            ret[i] = list.get(i);
-        return ret;
+        return result;
     }
 
     /**
@@ -832,6 +1414,29 @@ public class MACE
         System.out.println("\t--prefix <STRING>:\tprefix used for output files.\n");
         System.out.println("\t--restarts <1-1000>:\tnumber of random restarts to perform. Default: "
                 + MACE.DEFAULT_RR + "\n");
+        System.out.println(
+                "\t--seed <INT>:\t\tseed for the random initialization of restarts. Default: none\n");
+        System.out.println(
+                "\t--threads <INT>:\tnumber of restarts running in parallel. Default: 1\n");
+        System.out.println(
+                "\t--tolerance <FLOAT>:\tstop EM of a restart when the relative change of the log marginal likelihood\n"
+                        +
+                        "\t\t\t\tis below this value in consecutive iterations (see --patience). Default: 0.0 (off)\n");
+        System.out.println(
+                "\t--patience <INT>:\tnumber of consecutive iterations below the tolerance needed to stop. Default: "
+                        + MACE.DEFAULT_PATIENCE + "\n");
+        System.out.println(
+                "\t--warmStart <FILE>:\tinitialize from a model saved by --saveModel (annotators are identified by\n"
+                        +
+                        "\t\t\t\ttheir column) and run EM without random restarts\n");
+        System.out.println(
+                "\t--newBatch <FILE>:\tCSV file with only the new annotations (same columns); annotators without\n"
+                        +
+                        "\t\t\t\tany annotation in it keep their parameters. Requires --warmStart\n");
+        System.out.println(
+                "\t--saveModel <FILE>:\tsave the trained parameters of each annotator for --warmStart\n");
+        System.out.println(
+                "\t--eStepThreads <INT>:\tnumber of threads sharing the E-step of each restart. Default: 1\n");
         System.out.println(
                 "\t--smoothing <0.0-1.0>:\tsmoothing added to fractional counts before normalization.\n"
                         +
@@ -896,6 +1501,9 @@ public class MACE
 
             String outputPredictions = null;
             String outputCompetence = null;
+            String warmStart = null;
+            String newBatch = null;
+            String saveModel = null;
 
             // process all but last arg (which is the CSV file)
             for (int i = 0; i < numberOfArgs - 1; i++) {
@@ -963,17 +1571,70 @@ public class MACE
                 else if (arg.equals("--outputCompetence")) {
                     outputCompetence = args[++i];
                 }
+                else if (arg.equals("--threads")) {
+                    em.setThreads(Integer.valueOf(args[++i]));
+                }
+                else if (arg.equals("--eStepThreads")) {
+                    em.setEStepThreads(Integer.valueOf(args[++i]));
+                }
+                else if (arg.equals("--tolerance")) {
+                    em.setTolerance(Double.valueOf(args[++i]));
+                }
+                else if (arg.equals("--patience")) {
+                    em.setPatience(Integer.valueOf(args[++i]));
+                }
+                else if (arg.equals("--warmStart")) {
+                    warmStart = args[++i];
+                }
+                else if (arg.equals("--newBatch")) {
+                    newBatch = args[++i];
+                }
+                else if (arg.equals("--saveModel")) {
+                    saveModel = args[++i];
+                }
+                else if (arg.equals("--seed")) {
+                    em.setSeed(Long.valueOf(args[++i]));
+                }
                 else {
                     throw new IllegalArgumentException("argument '" + arg + "' not recognized");
                 }
             }
 
             // run with configuration
-            em.run(iterations, smoothing, restarts, alpha, beta, variational, controls);
+            if (warmStart != null) {
+                boolean[] frozen = null;
+                if (newBatch != null) {
+                    // annotators without new annotations keep their parameters
+                    boolean[] annotated = readFileData(newBatch).getAnnotatedAnnotators();
+                    frozen = new boolean[em.numAnnotators];
+                    for (int a = 0; a < em.numAnnotators; a++) {
+                        frozen[a] = a >= annotated.length || !annotated[a];
+                    }
+                }
+
+                em.runWarmStart(MACEModel.read(new File(warmStart)), em.getAnnotatorIndexIds(),
+                        frozen, iterations, smoothing, alpha, beta, variational,
+                        controls != null ? em.readControls(controls) : null);
+            }
+            else {
+                if (newBatch != null) {
+                    throw new IllegalArgumentException("--newBatch requires --warmStart");
+                }
+                em.run(iterations, smoothing, restarts, alpha, beta, variational, controls);
+            }
+
+            if (saveModel != null) {
+                em.getModel().write(new File(saveModel));
+            }
+            MACEResult result = em.getResult(threshold);
 
             // write results to files
             // generate predictions
-            String[] predictions = em.decode(threshold);
+            String[] predictions = new String[em.numInstances];
+            for (int i = 0; i < em.numInstances; i++) {
+                String label = result.getLabelName(i);
+                predictions[i] = label != null ? label : "";
+            }
             String predictionName = prefix == null ? "prediction" : prefix + ".prediction";
             if (outputPredictions != null) {
                 predictionName = outputPredictions;
@@ -981,10 +1642,7 @@ public class MACE
             em.writeArrayToFile(predictions, predictionName, "\n");
 
             // generate competence scores
-            Object[] competence = new Object[em.numAnnotators];
-            for (int i = 0; i < em.numAnnotators; i++) {
-                competence[i] = em.thetas[i][1];
-            }
+            Object[] competence = ArrayUtils.toObject(result.getCompetences());
             String competenceName = prefix == null ? "competence" : prefix + ".competence";
             if (outputCompetence != null) {
                 competenceName = outputCompetence;
@@ -993,10 +1651,7 @@ public class MACE
 
             // generate entropies
             if (entropies) {
-                Object[] entropy = new Object[em.numInstances];
-                double[] entropyArray = em.getLabelEntropies();
-                for (int i = 0; i < em.numAnnotators; i++)
-                    entropy[i] = entropyArray[i];
+                Object[] entropy = ArrayUtils.toObject(result.getEntropies());
                 String entropyName = prefix == null ? "entropies" : prefix + ".entropies";
                 em.writeArrayToFile(entropy, entropyName, "\n");
             }
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2016
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.tudarmstadt.ukp.experiments.argumentation.convincingness.mace;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Trained MACE parameters of each annotator (spamming/knowing probabilities and the spamming
+ * strategy over labels) that can be saved and used to warm-start training on a new batch of
+ * annotations. Annotators and labels are identified by name, so the model does not depend on
+ * their order in the data.
+ * <p/>
+ * File format (UTF-8, tab-separated): a header line with the version, a line with label names
+ * and one line per annotator with its ID, thetas (spamming, knowing) and strategies (in the
+ * order of labels).
+ *
+ * @author Ivan Habernal
+ */
+public class MACEModel
+{
+    private static final String HEADER = "#MACE-model\t1";
+
+    private final List<String> labelNames;
+
+    private final List<String> annotatorIds;
+
+    // [a * 2]
+    private final double[] thetas;
+
+    // [a * l]
+    private final double[] strategies;
+
+    public MACEModel(List<String> labelNames, List<String> annotatorIds, double[] thetas,
+            double[] strategies)
+    {
+        if (thetas.length != annotatorIds.size() * 2
+                || strategies.length != annotatorIds.size() * labelNames.size()) {
+            throw new IllegalArgumentException("Sizes of parameters do not match");
+        }
+
+        this.labelNames = Collections.unmodifiableList(new ArrayList<>(labelNames));
+        this.annotatorIds = Collections.unmodifiableList(new ArrayList<>(annotatorIds));
+        this.thetas = thetas;
+        this.strategies = strategies;
+    }
+
+    public List<String> getLabelNames()
+    {
+        return labelNames;
+    }
+
+    public List<String> getAnnotatorIds()
+    {
+        return annotatorIds;
+    }
+
+    /**
+     * @return thetas flattened by annotators (spamming, knowing)
+     */
+    public double[] getThetas()
+    {
+        return thetas;
+    }
+
+    /**
+     * @return strategies flattened by annotators
+     */
+    public double[] getStrategies()
+    {
+        return strategies;
+    }
+
+    /**
+     * Saves the model
+     *
+     * @param file file
+     * @throws IOException
+     */
+    public void write(File file)
+            throws IOException
+    {
+        try (PrintWriter writer = new PrintWriter(
+                new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+            writer.println(HEADER);
+            writer.println(StringUtils.join(labelNames, "\t"));
+
+            int numLabels = labelNames.size();
+            for (int a = 0; a < annotatorIds.size(); a++) {
+                StringBuilder sb = new StringBuilder(annotatorIds.get(a));
+                sb.append('\t').append(thetas[a * 2]);
+                sb.append('\t').append(thetas[a * 2 + 1]);
+                for (int l = 0; l < numLabels; l++) {
+                    sb.append('\t').append(strategies[a * numLabels + l]);
+                }
+                writer.println(sb);
+            }
+
+            if (writer.checkError()) {
+                throw new IOException("Cannot write model to " + file);
+            }
+        }
+    }
+
+    /**
+     * Loads a model
+     *
+     * @param file file
+     * @return model
+     * @throws IOException if the file is not a valid model
+     */
+    public static MACEModel read(File file)
+            throws IOException
+    {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            if (!HEADER.equals(reader.readLine())) {
+                throw new IOException("Unknown model format of " + file);
+            }
+
+            String labelLine = reader.readLine();
+            if (labelLine == null) {
+                throw new IOException("Missing labels in " + file);
+            }
+            List<String> labelNames = Arrays.asList(labelLine.split("\t"));
+            int numLabels = labelNames.size();
+
+            List<String> annotatorIds = new ArrayList<>();
+            double[] thetas = new double[16];
+            double[] strategies = new double[16 * numLabels];
+
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+
+                String[] fields = line.split("\t");
+                if (fields.length != numLabels + 3) {
+                    throw new IOException(
+                            "Expected " + (numLabels + 3) + " fields but got " + fields.length
+                                    + " in " + file);
+                }
+
+                int a = annotatorIds.size();
+                if (a * 2 == thetas.length) {
+                    thetas = Arrays.copyOf(thetas, thetas.length * 2);
+                    strategies = Arrays.copyOf(strategies, strategies.length * 2);
+                }
+
+                annotatorIds.add(fields[0]);
+                try {
+                    thetas[a * 2] = Double.parseDouble(fields[1]);
+                    thetas[a * 2 + 1] = Double.parseDouble(fields[2]);
+                    for (int l = 0; l < numLabels; l++) {
+                        strategies[a * numLabels + l] = Double.parseDouble(fields[l + 3]);
+                    }
+                }
+                catch (NumberFormatException e) {
+                    throw new IOException("Invalid number in " + file + ": " + line, e);
+                }
+            }
+
+            int numAnnotators = annotatorIds.size();
+            return new MACEModel(labelNames, annotatorIds,
+                    Arrays.copyOf(thetas, numAnnotators * 2),
+                    Arrays.copyOf(strategies, numAnnotators * numLabels));
+        }
+    }
+}
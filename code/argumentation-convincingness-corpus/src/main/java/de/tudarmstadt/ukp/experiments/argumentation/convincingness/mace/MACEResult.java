@@ -0,0 +1,115 @@
+/*
+ * Copyright 2016
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.tudarmstadt.ukp.experiments.argumentation.convincingness.mace;
+
+import java.util.List;
+
+/**
+ * Output of a trained {@link MACE} model: decoded label of each instance, entropy of each
+ * instance and competence of each annotator
+ *
+ * @author Ivan Habernal
+ */
+public class MACEResult
+{
+    /**
+     * Label ID of instances that were not decoded (their entropy is above the threshold)
+     */
+    public static final int NO_LABEL = -1;
+
+    private final List<String> labelNames;
+
+    private final int[] labels;
+
+    private final double[] entropies;
+
+    private final double[] competences;
+
+    private final double logMarginalLikelihood;
+
+    private final int[] iterationsPerRestart;
+
+    public MACEResult(List<String> labelNames, int[] labels, double[] entropies,
+            double[] competences, double logMarginalLikelihood, int[] iterationsPerRestart)
+    {
+        this.labelNames = labelNames;
+        this.labels = labels;
+        this.entropies = entropies;
+        this.competences = competences;
+        this.logMarginalLikelihood = logMarginalLikelihood;
+        this.iterationsPerRestart = iterationsPerRestart;
+    }
+
+    /**
+     * @return label ID of each instance or {@link #NO_LABEL}
+     */
+    public int[] getLabels()
+    {
+        return labels;
+    }
+
+    /**
+     * Returns the decoded label of the instance
+     *
+     * @param instance instance index
+     * @return label name or null if the instance was not decoded
+     */
+    public String getLabelName(int instance)
+    {
+        return labels[instance] == NO_LABEL ? null : labelNames.get(labels[instance]);
+    }
+
+    /**
+     * @return label names in the order of their IDs
+     */
+    public List<String> getLabelNames()
+    {
+        return labelNames;
+    }
+
+    /**
+     * @return entropy of the label distribution of each instance
+     */
+    public double[] getEntropies()
+    {
+        return entropies;
+    }
+
+    /**
+     * @return competence of each annotator
+     */
+    public double[] getCompetences()
+    {
+        return competences;
+    }
+
+    public double getLogMarginalLikelihood()
+    {
+        return logMarginalLikelihood;
+    }
+
+    /**
+     * @return number of EM iterations run by each restart (fewer than the maximum with early
+     * stopping)
+     */
+    public int[] getIterationsPerRestart()
+    {
+        return iterationsPerRestart;
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2016
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.tudarmstadt.ukp.experiments.argumentation.convincingness.sampling;
+
+/**
+ * Binary format of a list of {@link AnnotatedArgumentPair}s (an alternative to the XStream XML
+ * files). All values are big-endian; the file consists of
+ * <ul>
+ * <li>header: magic number, format version, number of strings, debates, arguments, pairs and
+ * assignments (7 ints)</li>
+ * <li>string table: all distinct strings, each as the length in bytes (int) followed by UTF-8
+ * bytes</li>
+ * <li>fixed-size records of debates, arguments, pairs and assignments; strings are referenced
+ * by their index in the string table ({@link #NULL} for null), debates and arguments by their
+ * index in their tables, a pair references a contiguous range of assignments</li>
+ * </ul>
+ * Arguments and debate meta data are interned, so an argument shared by many pairs is stored
+ * only once. Fixed-size records allow random access to pairs in a memory-mapped file.
+ *
+ * @author Ivan Habernal
+ */
+final class BinaryPairStore
+{
+    /**
+     * "UAPS"
+     */
+    static final int MAGIC = 0x55415053;
+
+    static final int VERSION = 1;
+
+    static final int HEADER_SIZE = 7 * 4;
+
+    /**
+     * Reference to a null value (string, debate)
+     */
+    static final int NULL = -1;
+
+    /**
+     * Timestamp of a null date
+     */
+    static final long NULL_DATE = Long.MIN_VALUE;
+
+    // debate: title, description, url
+    static final int DEBATE_RECORD_SIZE = 3 * 4;
+
+    // argument: author, stance, text, parentId, id, originalHTML, voteUpCount, voteDownCount,
+    // timestamp, flags
+    static final int ARGUMENT_RECORD_SIZE = 6 * 4 + 4 + 4 + 8 + 1;
+
+    // pair: id, arg1, arg2, debate, goldLabel, first assignment, assignment count
+    static final int PAIR_RECORD_SIZE = 7 * 4;
+
+    // assignment: turkID, hitID, value, reason, hitComment, assignmentId, workerStance,
+    // accept time, submit time, turkRank, turkCompetence, flags
+    static final int ASSIGNMENT_RECORD_SIZE = 7 * 4 + 8 + 8 + 4 + 8 + 1;
+
+    // flags of nullable numbers
+    static final int HAS_VOTE_UP_COUNT = 1;
+    static final int HAS_TURK_RANK = 1;
+    static final int HAS_TURK_COMPETENCE = 2;
+
+    private BinaryPairStore()
+    {
+        // no instances
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2016
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.tudarmstadt.ukp.experiments.argumentation.convincingness.sampling;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Converts directories of argument pairs between the XML format ({@link XStreamTools}) and the
+ * binary format ({@link BinaryPairStore}); file names are kept, only the extension changes.
+ * <p/>
+ * Usage: {@code toBinary|toXML inputDir outputDir}
+ *
+ * @author Ivan Habernal
+ */
+public class BinaryPairStoreConverter
+{
+    /**
+     * Extension of binary files
+     */
+    public static final String BINARY_EXTENSION = "bin";
+
+    /**
+     * Converts all XML files in the input directory to binary files
+     *
+     * @param inputDir  input dir with XML files
+     * @param outputDir output dir
+     * @throws IOException exception
+     */
+    @SuppressWarnings("unchecked")
+    public static void toBinary(File inputDir, File outputDir)
+            throws IOException
+    {
+        outputDir.mkdirs();
+
+        for (File file : IOHelper.listXmlFiles(inputDir)) {
+            List<AnnotatedArgumentPair> argumentPairs = (List<AnnotatedArgumentPair>) XStreamTools
+                    .getXStream().fromXML(file);
+
+            File outputFile = new File(outputDir,
+                    FilenameUtils.getBaseName(file.getName()) + "." + BINARY_EXTENSION);
+            BinaryPairStoreWriter.write(argumentPairs, outputFile);
+
+            System.out.println("Saved " + argumentPairs.size() + " pairs to " + outputFile);
+        }
+    }
+
+    /**
+     * Converts all binary files in the input directory to XML files
+     *
+     * @param inputDir  input dir with binary files
+     * @param outputDir output dir
+     * @throws IOException exception
+     */
+    public static void toXML(File inputDir, File outputDir)
+            throws IOException
+    {
+        outputDir.mkdirs();
+
+        for (File file : listBinaryFiles(inputDir)) {
+            List<AnnotatedArgumentPair> argumentPairs = BinaryPairStoreReader.read(file);
+
+            File outputFile = new File(outputDir,
+                    FilenameUtils.getBaseName(file.getName()) + ".xml");
+            XStreamTools.toXML(argumentPairs, outputFile);
+
+            System.out.println("Saved " + argumentPairs.size() + " pairs to " + outputFile);
+        }
+    }
+
+    /**
+     * Lists all binary files and throw an IOException if no binary files were found
+     *
+     * @param inputDir input dir
+     * @return list of binary files
+     * @throws IOException exception
+     */
+    public static List<File> listBinaryFiles(File inputDir)
+            throws IOException
+    {
+        List<File> files = new ArrayList<>(
+                FileUtils.listFiles(inputDir, new String[] { BINARY_EXTENSION }, false));
+
+        if (files.isEmpty()) {
+            throw new IOException("No binary files found in " + inputDir);
+        }
+
+        return files;
+    }
+
+    public static void main(String[] args)
+            throws IOException
+    {
+        if (args.length != 3) {
+            throw new IllegalArgumentException("Usage: toBinary|toXML inputDir outputDir");
+        }
+
+        File inputDir = new File(args[1]);
+        File outputDir = new File(args[2]);
+
+        if ("toBinary".equals(args[0])) {
+            toBinary(inputDir, outputDir);
+        }
+        else if ("toXML".equals(args[0])) {
+            toXML(inputDir, outputDir);
+        }
+        else {
+            throw new IllegalArgumentException("Unknown command " + args[0]);
+        }
+    }
+}
@@ -0,0 +1,309 @@
+/*
+ * Copyright 2016
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.tudarmstadt.ukp.experiments.argumentation.convincingness.sampling;
+
+import de.tudarmstadt.ukp.experiments.argumentation.convincingness.createdebate.Argument;
+import de.tudarmstadt.ukp.experiments.argumentation.convincingness.createdebate.DebateMetaData;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Reads argument pairs in the {@link BinaryPairStore} format from a memory-mapped file. Pairs
+ * can be read all at once or one by one (random access). Strings are decoded once when the
+ * file is opened; each pair gets its own copies of the arguments and the debate, so the pairs
+ * can be modified independently, as those read from XML.
+ * <p/>
+ * The reader is thread-safe: after construction, it only reads the (read-only) buffer at
+ * absolute positions, so a single instance can be shared by threads processing different
+ * pairs.
+ *
+ * @author Ivan Habernal
+ */
+public class BinaryPairStoreReader
+{
+    private final File file;
+
+    private final ByteBuffer buffer;
+
+    private final int debateCount;
+    private final int argumentCount;
+    private final int pairCount;
+    private final int assignmentCount;
+
+    // start of record sections
+    private final int debatesPosition;
+    private final int argumentsPosition;
+    private final int pairsPosition;
+    private final int assignmentsPosition;
+
+    // decoded strings (immutable, shared by all pairs)
+    private final String[] strings;
+
+    /**
+     * Opens the file, reads the header and decodes all strings
+     *
+     * @param file file
+     * @throws IOException if the file is not a valid store
+     */
+    public BinaryPairStoreReader(File file)
+            throws IOException
+    {
+        this.file = file;
+
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+                FileChannel channel = randomAccessFile.getChannel()) {
+            // the mapping stays valid after closing the channel
+            this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        try {
+            if (buffer.getInt() != BinaryPairStore.MAGIC) {
+                throw new IOException("Not a binary pair store: " + file);
+            }
+            int version = buffer.getInt();
+            if (version != BinaryPairStore.VERSION) {
+                throw new IOException(
+                        "Unsupported version " + version + " (expected " + BinaryPairStore.VERSION
+                                + ") of " + file);
+            }
+
+            int stringCount = buffer.getInt();
+            this.debateCount = buffer.getInt();
+            this.argumentCount = buffer.getInt();
+            this.pairCount = buffer.getInt();
+            this.assignmentCount = buffer.getInt();
+
+            this.strings = new String[stringCount];
+            int position = BinaryPairStore.HEADER_SIZE;
+            for (int i = 0; i < stringCount; i++) {
+                int length = buffer.getInt(position);
+
+                byte[] bytes = new byte[length];
+                buffer.position(position + 4);
+                buffer.get(bytes);
+                strings[i] = new String(bytes, StandardCharsets.UTF_8);
+
+                position += 4 + length;
+            }
+
+            this.debatesPosition = position;
+            this.argumentsPosition =
+                    debatesPosition + debateCount * BinaryPairStore.DEBATE_RECORD_SIZE;
+            this.pairsPosition =
+                    argumentsPosition + argumentCount * BinaryPairStore.ARGUMENT_RECORD_SIZE;
+            this.assignmentsPosition =
+                    pairsPosition + pairCount * BinaryPairStore.PAIR_RECORD_SIZE;
+
+            int end = assignmentsPosition
+                    + assignmentCount * BinaryPairStore.ASSIGNMENT_RECORD_SIZE;
+            if (end != buffer.limit()) {
+                throw new IOException(
+                        "Unexpected size of " + file + "; expected " + end + " bytes but was "
+                                + buffer.limit());
+            }
+        }
+        catch (IndexOutOfBoundsException | BufferUnderflowException e) {
+            throw new IOException("Truncated binary pair store: " + file, e);
+        }
+    }
+
+    /**
+     * Reads all pairs from the file
+     *
+     * @param file file
+     * @return list of pairs
+     * @throws IOException exception
+     */
+    public static List<AnnotatedArgumentPair> read(File file)
+            throws IOException
+    {
+        return new BinaryPairStoreReader(file).readAll();
+    }
+
+    public int getPairCount()
+    {
+        return pairCount;
+    }
+
+    public int getArgumentCount()
+    {
+        return argumentCount;
+    }
+
+    /**
+     * Reads all pairs
+     *
+     * @return list of pairs
+     */
+    public List<AnnotatedArgumentPair> readAll()
+    {
+        List<AnnotatedArgumentPair> result = new ArrayList<>(pairCount);
+        for (int i = 0; i < pairCount; i++) {
+            result.add(getPair(i));
+        }
+        return result;
+    }
+
+    /**
+     * Reads a single pair (a new object on each call)
+     *
+     * @param index pair index
+     * @return pair
+     */
+    public AnnotatedArgumentPair getPair(int index)
+    {
+        if (index < 0 || index >= pairCount) {
+            throw new IndexOutOfBoundsException(
+                    "Pair " + index + " out of range (" + pairCount + " pairs in " + file + ")");
+        }
+
+        int position = pairsPosition + index * BinaryPairStore.PAIR_RECORD_SIZE;
+
+        AnnotatedArgumentPair result = new AnnotatedArgumentPair();
+        result.setId(getString(buffer.getInt(position)));
+        result.setArg1(getArgument(buffer.getInt(position + 4)));
+        result.setArg2(getArgument(buffer.getInt(position + 8)));
+        result.setDebateMetaData(getDebate(buffer.getInt(position + 12)));
+
+        String goldLabel = getString(buffer.getInt(position + 16));
+        if (goldLabel != null) {
+            result.setGoldLabel(goldLabel);
+        }
+
+        int firstAssignment = buffer.getInt(position + 20);
+        int count = buffer.getInt(position + 24);
+        for (int i = firstAssignment; i < firstAssignment + count; i++) {
+            result.mTurkAssignments.add(getAssignment(i));
+        }
+
+        return result;
+    }
+
+    private AnnotatedArgumentPair.MTurkAssignment getAssignment(int index)
+    {
+        int position = assignmentsPosition + index * BinaryPairStore.ASSIGNMENT_RECORD_SIZE;
+
+        String turkID = getString(buffer.getInt(position));
+        String hitID = getString(buffer.getInt(position + 4));
+        String value = getString(buffer.getInt(position + 8));
+        String reason = getString(buffer.getInt(position + 12));
+        String hitComment = getString(buffer.getInt(position + 16));
+        String assignmentId = getString(buffer.getInt(position + 20));
+        String workerStance = getString(buffer.getInt(position + 24));
+        Date acceptTime = toDate(buffer.getLong(position + 28));
+        Date submitTime = toDate(buffer.getLong(position + 36));
+        int turkRank = buffer.getInt(position + 44);
+        double turkCompetence = buffer.getDouble(position + 48);
+        int flags = buffer.get(position + 56);
+
+        // setters reject nulls, so only non-null values are set
+        AnnotatedArgumentPair.MTurkAssignment result = new AnnotatedArgumentPair.MTurkAssignment();
+        if (turkID != null) {
+            result.setTurkID(turkID);
+        }
+        if (hitID != null) {
+            result.setHitID(hitID);
+        }
+        if (value != null) {
+            result.setValue(value);
+        }
+        if (reason != null) {
+            result.setReason(reason);
+        }
+        result.setHitComment(hitComment);
+        if (assignmentId != null) {
+            result.setAssignmentId(assignmentId);
+        }
+        result.setWorkerStance(workerStance);
+        if (acceptTime != null) {
+            result.setAssignmentAcceptTime(acceptTime);
+        }
+        if (submitTime != null) {
+            result.setAssignmentSubmitTime(submitTime);
+        }
+        if ((flags & BinaryPairStore.HAS_TURK_RANK) != 0) {
+            result.setTurkRank(turkRank);
+        }
+        if ((flags & BinaryPairStore.HAS_TURK_COMPETENCE) != 0) {
+            result.setTurkCompetence(turkCompetence);
+        }
+
+        return result;
+    }
+
+    private Argument getArgument(int index)
+    {
+        int position = argumentsPosition + index * BinaryPairStore.ARGUMENT_RECORD_SIZE;
+
+        Argument result = new Argument();
+        result.setAuthor(getString(buffer.getInt(position)));
+        result.setStance(getString(buffer.getInt(position + 4)));
+        result.setText(getString(buffer.getInt(position + 8)));
+        result.setParentId(getString(buffer.getInt(position + 12)));
+        result.setId(getString(buffer.getInt(position + 16)));
+        result.setOriginalHTML(getString(buffer.getInt(position + 20)));
+        int voteUpCount = buffer.getInt(position + 24);
+        result.setVoteDownCount(buffer.getInt(position + 28));
+        result.setTimestamp(toDate(buffer.getLong(position + 32)));
+        if ((buffer.get(position + 40) & BinaryPairStore.HAS_VOTE_UP_COUNT) != 0) {
+            result.setVoteUpCount(voteUpCount);
+        }
+
+        return result;
+    }
+
+    private DebateMetaData getDebate(int index)
+    {
+        if (index == BinaryPairStore.NULL) {
+            return null;
+        }
+
+        int position = debatesPosition + index * BinaryPairStore.DEBATE_RECORD_SIZE;
+
+        DebateMetaData result = new DebateMetaData();
+        result.setTitle(getString(buffer.getInt(position)));
+        result.setDescription(getString(buffer.getInt(position + 4)));
+        result.setUrl(getString(buffer.getInt(position + 8)));
+
+        return result;
+    }
+
+    private String getString(int index)
+    {
+        if (index == BinaryPairStore.NULL) {
+            return null;
+        }
+
+        return strings[index];
+    }
+
+    private static Date toDate(long time)
+    {
+        return time != BinaryPairStore.NULL_DATE ? new Date(time) : null;
+    }
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright 2016
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.tudarmstadt.ukp.experiments.argumentation.convincingness.sampling;
+
+import de.tudarmstadt.ukp.experiments.argumentation.convincingness.createdebate.Argument;
+import de.tudarmstadt.ukp.experiments.argumentation.convincingness.createdebate.DebateMetaData;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes argument pairs in the {@link BinaryPairStore} format
+ *
+ * @author Ivan Habernal
+ */
+public class BinaryPairStoreWriter
+{
+    private final Map<String, Integer> stringIndices = new HashMap<>();
+    private final List<String> strings = new ArrayList<>();
+
+    private final Map<List<Object>, Integer> debateIndices = new HashMap<>();
+    private final List<DebateMetaData> debates = new ArrayList<>();
+
+    private final Map<List<Object>, Integer> argumentIndices = new HashMap<>();
+    private final List<Argument> arguments = new ArrayList<>();
+
+    /**
+     * Writes all pairs into the file
+     *
+     * @param argumentPairs pairs (must be exactly {@link AnnotatedArgumentPair}s)
+     * @param outputFile    output file
+     * @throws IOException              exception
+     * @throws IllegalArgumentException if a pair is of another class
+     */
+    public static void write(Collection<AnnotatedArgumentPair> argumentPairs, File outputFile)
+            throws IOException
+    {
+        new BinaryPairStoreWriter().writePairs(argumentPairs, outputFile);
+    }
+
+    private void writePairs(Collection<AnnotatedArgumentPair> argumentPairs, File outputFile)
+            throws IOException
+    {
+        // collect tables first, strings must be written before records
+        int assignmentCount = 0;
+        for (AnnotatedArgumentPair pair : argumentPairs) {
+            if (pair.getClass() != AnnotatedArgumentPair.class) {
+                throw new IllegalArgumentException(
+                        "Only " + AnnotatedArgumentPair.class.getSimpleName()
+                                + " can be stored, got " + pair.getClass().getName());
+            }
+
+            internString(pair.getId());
+            internArgument(pair.getArg1());
+            internArgument(pair.getArg2());
+            internDebate(pair.getDebateMetaData());
+            internString(pair.getGoldLabel());
+
+            for (AnnotatedArgumentPair.MTurkAssignment assignment : pair.getmTurkAssignments()) {
+                internString(assignment.getTurkID());
+                internString(assignment.getHitID());
+                internString(assignment.getValue());
+                internString(assignment.getReason());
+                internString(assignment.getHitComment());
+                internString(assignment.getAssignmentId());
+                internString(assignment.getWorkerStance());
+                assignmentCount++;
+            }
+        }
+
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(outputFile), 1 << 16))) {
+            // header
+            out.writeInt(BinaryPairStore.MAGIC);
+            out.writeInt(BinaryPairStore.VERSION);
+            out.writeInt(strings.size());
+            out.writeInt(debates.size());
+            out.writeInt(arguments.size());
+            out.writeInt(argumentPairs.size());
+            out.writeInt(assignmentCount);
+
+            // strings
+            for (String s : strings) {
+                byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+
+            // debates
+            for (DebateMetaData debate : debates) {
+                out.writeInt(getStringRef(debate.getTitle()));
+                out.writeInt(getStringRef(debate.getDescription()));
+                out.writeInt(getStringRef(debate.getUrl()));
+            }
+
+            // arguments
+            for (Argument argument : arguments) {
+                out.writeInt(getStringRef(argument.getAuthor()));
+                out.writeInt(getStringRef(argument.getStance()));
+                out.writeInt(getStringRef(argument.getText()));
+                out.writeInt(getStringRef(argument.getParentId()));
+                out.writeInt(getStringRef(argument.getId()));
+                out.writeInt(getStringRef(argument.getOriginalHTML()));
+                out.writeInt(argument.getVoteUpCount() != null ? argument.getVoteUpCount() : 0);
+                out.writeInt(argument.getVoteDownCount());
+                out.writeLong(toLong(argument.getTimestamp()));
+                out.writeByte(argument.getVoteUpCount() != null ?
+                        BinaryPairStore.HAS_VOTE_UP_COUNT :
+                        0);
+            }
+
+            // pairs
+            int firstAssignment = 0;
+            for (AnnotatedArgumentPair pair : argumentPairs) {
+                out.writeInt(getStringRef(pair.getId()));
+                out.writeInt(getArgumentRef(pair.getArg1()));
+                out.writeInt(getArgumentRef(pair.getArg2()));
+                out.writeInt(getDebateRef(pair.getDebateMetaData()));
+                out.writeInt(getStringRef(pair.getGoldLabel()));
+                out.writeInt(firstAssignment);
+                out.writeInt(pair.getmTurkAssignments().size());
+
+                firstAssignment += pair.getmTurkAssignments().size();
+            }
+
+            // assignments
+            for (AnnotatedArgumentPair pair : argumentPairs) {
+                for (AnnotatedArgumentPair.MTurkAssignment assignment : pair
+                        .getmTurkAssignments()) {
+                    out.writeInt(getStringRef(assignment.getTurkID()));
+                    out.writeInt(getStringRef(assignment.getHitID()));
+                    out.writeInt(getStringRef(assignment.getValue()));
+                    out.writeInt(getStringRef(assignment.getReason()));
+                    out.writeInt(getStringRef(assignment.getHitComment()));
+                    out.writeInt(getStringRef(assignment.getAssignmentId()));
+                    out.writeInt(getStringRef(assignment.getWorkerStance()));
+                    out.writeLong(toLong(assignment.getAssignmentAcceptTime()));
+                    out.writeLong(toLong(assignment.getAssignmentSubmitTime()));
+
+                    Integer turkRank = assignment.getTurkRank();
+                    Double turkCompetence = assignment.getTurkCompetence();
+                    out.writeInt(turkRank != null ? turkRank : 0);
+                    out.writeDouble(turkCompetence != null ? turkCompetence : 0.0);
+                    out.writeByte((turkRank != null ? BinaryPairStore.HAS_TURK_RANK : 0) | (
+                            turkCompetence != null ? BinaryPairStore.HAS_TURK_COMPETENCE : 0));
+                }
+            }
+        }
+    }
+
+    private static long toLong(Date date)
+    {
+        return date != null ? date.getTime() : BinaryPairStore.NULL_DATE;
+    }
+
+    private void internString(String s)
+    {
+        if (s != null && !stringIndices.containsKey(s)) {
+            stringIndices.put(s, strings.size());
+            strings.add(s);
+        }
+    }
+
+    private int getStringRef(String s)
+    {
+        return s != null ? stringIndices.get(s) : BinaryPairStore.NULL;
+    }
+
+    private static List<Object> createKey(DebateMetaData debate)
+    {
+        return Arrays.<Object>asList(debate.getTitle(), debate.getDescription(),
+                debate.getUrl());
+    }
+
+    private void internDebate(DebateMetaData debate)
+    {
+        if (debate == null) {
+            return;
+        }
+
+        List<Object> key = createKey(debate);
+        if (!debateIndices.containsKey(key)) {
+            internString(debate.getTitle());
+            internString(debate.getDescription());
+            internString(debate.getUrl());
+
+            debateIndices.put(key, debates.size());
+            debates.add(debate);
+        }
+    }
+
+    private int getDebateRef(DebateMetaData debate)
+    {
+        return debate != null ? debateIndices.get(createKey(debate)) : BinaryPairStore.NULL;
+    }
+
+    /**
+     * Arguments are equal if all their fields are equal
+     */
+    private static List<Object> createKey(Argument argument)
+    {
+        return Arrays.<Object>asList(argument.getAuthor(), argument.getStance(),
+                argument.getText(), argument.getParentId(), argument.getId(),
+                argument.getOriginalHTML(), argument.getVoteUpCount(),
+                argument.getVoteDownCount(), argument.getTimestamp());
+    }
+
+    private void internArgument(Argument argument)
+    {
+        if (argument == null) {
+            throw new IllegalArgumentException("Argument pair without argument");
+        }
+
+        List<Object> key = createKey(argument);
+        if (!argumentIndices.containsKey(key)) {
+            internString(argument.getAuthor());
+            internString(argument.getStance());
+            internString(argument.getText());
+            internString(argument.getParentId());
+            internString(argument.getId());
+            internString(argument.getOriginalHTML());
+
+            argumentIndices.put(key, arguments.size());
+            arguments.add(argument);
+        }
+    }
+
+    private int getArgumentRef(Argument argument)
+    {
+        return argumentIndices.get(createKey(argument));
+    }
+}
@@ -16,6 +16,7 @@
  * limitations under the License.
  */
 
+
 package de.tudarmstadt.ukp.experiments.argumentation.convincingness.sampling;
 
 import java.io.*;
@@ -25,6 +26,10 @@ import java.util.*;
  * Reader for the tab-separated output from Mechanical Turk. As the output is not a standard
  * CSV file, it requires a special treatment by parsing. This class provides iterating over
  * entries as a map (column name, value)
+ * <p/>
+ * Files are parsed line by line; column names are interned to indices and each record keeps
+ * only its non-empty cells (sorted column indices and values), short values are shared among
+ * records. Records can be looked up by HIT ID, worker ID, or by a column they have a value in.
  *
  * @author Ivan Habernal
  */
@@ -34,12 +39,29 @@ public class MTurkOutputReader
 
     private static final boolean DEBUG = false;
 
-    private List<Map<String, String>> records = new ArrayList<>();
+    /**
+     * Values up to this length are shared (IDs, labels, statuses)
+     */
+    private static final int MAX_SHARED_VALUE_LENGTH = 32;
+
+    private final List<Record> records = new ArrayList<>();
 
     private final Set<String> columnNames = new TreeSet<>();
 
     private final Map<File, String> hitTypeIdForFile = new HashMap<>();
 
+    // column name -> column index, column index -> column name
+    private final Map<String, Integer> columnIndices = new HashMap<>();
+    private final List<String> indexedColumnNames = new ArrayList<>();
+
+    // pool of short values
+    private final Map<String, String> sharedValues = new HashMap<>();
+
+    // indexes
+    private final Map<String, List<Map<String, String>>> recordsByHitId = new HashMap<>();
+    private final Map<String, List<Map<String, String>>> recordsByWorkerId = new HashMap<>();
+    private final List<List<Map<String, String>>> recordsByColumn = new ArrayList<>();
+
     /**
      * Loads and parses the MTurk output files
      *
@@ -54,11 +76,33 @@ public class MTurkOutputReader
         requiredFields.addAll(additionalRequiredFields);
 
         for (File file : files) {
-            InputStreamReader in = new InputStreamReader(new FileInputStream(file), "utf-8");
-            BufferedReader br = new BufferedReader(in);
+            readFile(file, requiredFields);
+        }
+    }
 
-            List<String> lines = new ArrayList<>();
+    /**
+     * Loads and parses the MTurk output files
+     *
+     * @param files files or several files
+     * @throws IOException I/O exception
+     */
+    public MTurkOutputReader(File... files)
+            throws IOException
 
+    {
+        this(new HashSet<String>(), files);
+    }
+
+    private void readFile(File file, Set<String> requiredFields)
+            throws IOException
+    {
+        Header header = null;
+
+        int extractedRecords = 0;
+        String hitTypeId = null;
+
+        try (BufferedReader br = new BufferedReader(
+                new InputStreamReader(new FileInputStream(file), "utf-8"))) {
             String line = br.readLine();
 
             StringBuilder incompleteLine = new StringBuilder();
@@ -67,9 +111,34 @@ public class MTurkOutputReader
                 // this is a "correct" line, ending with [tab]"xxx" (but not [tab]")
                 if (trim.endsWith("\"") && !trim.endsWith("\t\"")) {
                     incompleteLine.append(trim);
-                    lines.add(incompleteLine.toString().trim());
+                    String completeLine = incompleteLine.toString().trim();
 
                     incompleteLine = new StringBuilder();
+
+                    if (DEBUG) {
+                        System.out.println("=" + completeLine.substring(0, 20) + "..."
+                                + completeLine.substring(completeLine.length() - 20) + "=");
+                    }
+
+                    if (header == null) {
+                        header = extractHeader(completeLine);
+                    }
+                    else {
+                        Record record = extractRecord(completeLine, header, requiredFields,
+                                file);
+                        extractedRecords++;
+
+                        // update hit type id for this file
+                        String typeId = record.get("hittypeid");
+                        if (hitTypeId == null) {
+                            hitTypeId = typeId;
+                        }
+                        else if (!hitTypeId.equals(typeId)) {
+                            System.err.println("Several hitTypeIds found in file " + file);
+                        }
+
+                        addRecord(record);
+                    }
                 }
                 else {
                     incompleteLine.append(" ").append(trim);
@@ -77,69 +146,57 @@ public class MTurkOutputReader
 
                 line = br.readLine();
             }
+        }
 
-            if (DEBUG) {
-                for (String s : lines) {
-                    System.out.println("=" + s.substring(0, 20) + "..." + s
-                            .substring(s.length() - 20, s.length()) + "=");
-                }
-            }
-
-            String header = lines.get(0);
-            SortedMap<Integer, String> headerMapping = extractHeaderMapping(header);
-
-            columnNames.addAll(headerMapping.values());
+        if (header == null) {
+            throw new IOException("No header found in " + file);
+        }
 
-            List<Map<String, String>> extractRecords = extractRecords(
-                    lines.subList(1, lines.size()), headerMapping, requiredFields, file);
+        hitTypeIdForFile.put(file, hitTypeId);
 
-            // update hit type id for this file
-            String hitTypeId = null;
-            for (Map<String, String> record : extractRecords) {
-                String typeId = record.get("hittypeid");
-                if (hitTypeId == null) {
-                    hitTypeId = typeId;
-                }
-                else if (!hitTypeId.equals(typeId)) {
-                    System.err.println("Several hitTypeIds found in file " + file);
-                }
-            }
-            hitTypeIdForFile.put(file, hitTypeId);
+        System.out.println("Extracted " + extractedRecords + " records from " + file);
+    }
 
-            System.out.println("Extracted " + extractRecords.size() + " records from " + file);
+    /**
+     * Adds the record to the result and indexes
+     *
+     * @param record record
+     */
+    private void addRecord(Record record)
+    {
+        boolean approved = "Approved".equals(record.get("assignmentstatus"));
+        boolean rejected = "Rejected".equals(record.get("assignmentstatus"));
+
+        // we load only approved or rejected assignments
+        if (!approved && !rejected) {
+            System.err.println("Skipping unexpected assignmentstatus: " + record
+                    .get("assignmentstatus") + ", HIT: " + record.get("hitid"));
+            return;
+        }
 
-            // all all records that are not duplicate (HIT ID, and worker ID)
-            List<Map<String, String>> recordsToBeAdded = new ArrayList<>();
-            for (Map<String, String> newRecord : extractRecords) {
-                boolean approved = "Approved".equals(newRecord.get("assignmentstatus"));
-                boolean rejected = "Rejected".equals(newRecord.get("assignmentstatus"));
+        records.add(record);
 
-                // we load only approved or rejected assignments
-                if (approved || rejected) {
-                    recordsToBeAdded.add(newRecord);
-                }
-                else {
-                    System.err.println("Skipping unexpected assignmentstatus: " + newRecord
-                            .get("assignmentstatus") + ", HIT: " + newRecord.get("hitid"));
-                }
+        addToIndex(recordsByHitId, record.get("hitid"), record);
+        addToIndex(recordsByWorkerId, record.get("workerid"), record);
 
-            }
-            records.addAll(recordsToBeAdded);
-            //            records.addAll(extractRecords);
+        for (int column : record.columns) {
+            recordsByColumn.get(column).add(record);
         }
     }
 
-    /**
-     * Loads and parses the MTurk output files
-     *
-     * @param files files or several files
-     * @throws IOException I/O exception
-     */
-    public MTurkOutputReader(File... files)
-            throws IOException
-
+    private static void addToIndex(Map<String, List<Map<String, String>>> index, String key,
+            Record record)
     {
-        this(new HashSet<String>(), files);
+        if (key == null) {
+            return;
+        }
+
+        List<Map<String, String>> list = index.get(key);
+        if (list == null) {
+            list = new ArrayList<>();
+            index.put(key, list);
+        }
+        list.add(record);
     }
 
     /**
@@ -163,74 +220,175 @@ public class MTurkOutputReader
     }
 
     /**
-     * Extracts the records
+     * Returns the number of loaded records
      *
-     * @param lines         lines
-     * @param headerMapping mapping from position to column name
-     * @param file
-     * @return list of records
+     * @return number of records
      */
-    private static List<Map<String, String>> extractRecords(List<String> lines,
-            Map<Integer, String> headerMapping, Set<String> requiredFields, File file)
+    public int size()
     {
-        List<Map<String, String>> result = new ArrayList<>(lines.size());
+        return records.size();
+    }
 
-        for (String line : lines) {
-            List<String> stripLine = readAndStripLine(line);
+    /**
+     * Returns all records of the HIT in the order they were loaded
+     *
+     * @param hitId HIT ID
+     * @return list of records, never null
+     */
+    public List<Map<String, String>> getRecordsByHitId(String hitId)
+    {
+        return unmodifiableOrEmpty(recordsByHitId.get(hitId));
+    }
 
-            Map<String, String> record = new HashMap<>();
+    /**
+     * Returns all records of the worker in the order they were loaded
+     *
+     * @param workerId worker ID
+     * @return list of records, never null
+     */
+    public List<Map<String, String>> getRecordsByWorkerId(String workerId)
+    {
+        return unmodifiableOrEmpty(recordsByWorkerId.get(workerId));
+    }
 
-            for (int i = 0; i < stripLine.size(); i++) {
-                String entry = stripLine.get(i).trim();
+    /**
+     * Returns all records with a (non-empty) value in the column in the order they were loaded,
+     * e.g., all answers to a single question
+     *
+     * @param columnName column name, e.g., {@code Answer.xxx}
+     * @return list of records, never null
+     */
+    public List<Map<String, String>> getRecordsWithColumn(String columnName)
+    {
+        Integer column = columnIndices.get(columnName);
+        return unmodifiableOrEmpty(column != null ? recordsByColumn.get(column) : null);
+    }
 
-                // ignore empty records
-                if (!entry.isEmpty()) {
-                    String columnName = headerMapping.get(i);
+    private static List<Map<String, String>> unmodifiableOrEmpty(
+            List<Map<String, String>> records)
+    {
+        return records != null ?
+                Collections.unmodifiableList(records) :
+                Collections.<Map<String, String>>emptyList();
+    }
 
-                    record.put(columnName, entry);
-                }
+    /**
+     * Extracts a single record
+     *
+     * @param line           line
+     * @param header         column index for each position
+     * @param requiredFields required fields
+     * @param file           file
+     * @return record
+     */
+    private Record extractRecord(String line, Header header, Set<String> requiredFields,
+            File file)
+    {
+        List<String> stripLine = readAndStripLine(line);
+
+        // ignore empty records
+        int size = 0;
+        for (int position : header.positions) {
+            if (position < stripLine.size() && !stripLine.get(position).isEmpty()) {
+                size++;
             }
+        }
 
-            // sanity check - some fields are required
-            for (String requiredField : requiredFields) {
-                if (!record.keySet().contains(requiredField)) {
-                    throw new IllegalStateException(
-                            "Field " + requiredField + " is missing in record " + record
-                                    + " in file " + file.getAbsoluteFile());
-                }
+        int[] recordColumns = new int[size];
+        String[] recordValues = new String[size];
+        int i = 0;
+        for (int j = 0; j < header.positions.length; j++) {
+            int position = header.positions[j];
+            if (position < stripLine.size() && !stripLine.get(position).isEmpty()) {
+                recordColumns[i] = header.columns[j];
+                recordValues[i] = share(stripLine.get(position));
+                i++;
+            }
+        }
 
-                if (record.get(requiredField) == null) {
-                    throw new IllegalStateException(
-                            "Required field " + requiredField + " is null in file " + file
-                                    .getAbsoluteFile());
-                }
+        Record record = new Record(recordColumns, recordValues);
+
+        // sanity check - some fields are required
+        for (String requiredField : requiredFields) {
+            if (!record.containsKey(requiredField)) {
+                throw new IllegalStateException(
+                        "Field " + requiredField + " is missing in record " + record
+                                + " in file " + file.getAbsoluteFile());
             }
+        }
 
-            result.add(record);
+        return record;
+    }
+
+    private String share(String value)
+    {
+        if (value.length() > MAX_SHARED_VALUE_LENGTH) {
+            return value;
         }
 
+        String result = sharedValues.get(value);
+        if (result == null) {
+            sharedValues.put(value, value);
+            result = value;
+        }
         return result;
     }
 
     /**
-     * Extracts mapping from the first line (header) = (position, name)
+     * Extracts column indices from the first line (header), adds new column names
      *
      * @param headerLine first line
-     * @return mapping
+     * @return header
      */
-    private static SortedMap<Integer, String> extractHeaderMapping(String headerLine)
+    private Header extractHeader(String headerLine)
     {
         List<String> list = readAndStripLine(headerLine);
 
-        SortedMap<Integer, String> result = new TreeMap<>();
+        // column index -> position; a later position wins for duplicate column names
+        SortedMap<Integer, Integer> positions = new TreeMap<>();
 
         for (int i = 0; i < list.size(); i++) {
-            result.put(i, list.get(i));
+            String columnName = list.get(i);
+
+            Integer column = columnIndices.get(columnName);
+            if (column == null) {
+                column = indexedColumnNames.size();
+                columnIndices.put(columnName, column);
+                indexedColumnNames.add(columnName);
+                recordsByColumn.add(new ArrayList<Map<String, String>>());
+                columnNames.add(columnName);
+            }
+
+            positions.put(column, i);
+        }
+
+        Header result = new Header(positions.size());
+        int i = 0;
+        for (Map.Entry<Integer, Integer> entry : positions.entrySet()) {
+            result.columns[i] = entry.getKey();
+            result.positions[i] = entry.getValue();
+            i++;
         }
 
         return result;
     }
 
+    /**
+     * Columns of a file sorted by column index and their positions in lines
+     */
+    private static class Header
+    {
+        private final int[] columns;
+
+        private final int[] positions;
+
+        Header(int size)
+        {
+            this.columns = new int[size];
+            this.positions = new int[size];
+        }
+    }
+
     /**
      * Reads a single line, splits by tabulator, and trims the content; also removes opening anc
      * closing parentheses and normalizes double parentheses in the content
@@ -243,8 +401,16 @@ public class MTurkOutputReader
         List<String> result = new ArrayList<>();
 
         for (String entry : line.split("\t")) {
-            result.add(
-                    entry.replaceAll("^\"", "").replaceAll("\"$", "").replace("\"\"", "\"").trim());
+            if (entry.startsWith("\"")) {
+                entry = entry.substring(1);
+            }
+            if (entry.endsWith("\"")) {
+                entry = entry.substring(0, entry.length() - 1);
+            }
+            if (entry.contains("\"\"")) {
+                entry = entry.replace("\"\"", "\"");
+            }
+            result.add(entry.trim());
         }
 
         return result;
@@ -258,6 +424,94 @@ public class MTurkOutputReader
     @Override
     public Iterator<Map<String, String>> iterator()
     {
-        return records.iterator();
+        return Collections.<Map<String, String>>unmodifiableList(records).iterator();
+    }
+
+    /**
+     * Read-only record; non-empty cells sorted by column index
+     */
+    private class Record
+            extends AbstractMap<String, String>
+    {
+        private final int[] columns;
+
+        private final String[] values;
+
+        Record(int[] columns, String[] values)
+        {
+            this.columns = columns;
+            this.values = values;
+        }
+
+        @Override
+        public String get(Object key)
+        {
+            int i = indexOf(key);
+            return i >= 0 ? values[i] : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key)
+        {
+            return indexOf(key) >= 0;
+        }
+
+        private int indexOf(Object key)
+        {
+            Integer column = columnIndices.get(key);
+            return column != null ? Arrays.binarySearch(columns, column) : -1;
+        }
+
+        @Override
+        public int size()
+        {
+            return columns.length;
+        }
+
+        @Override
+        public Set<Entry<String, String>> entrySet()
+        {
+            return new AbstractSet<Entry<String, String>>()
+            {
+                @Override
+                public Iterator<Entry<String, String>> iterator()
+                {
+                    return new Iterator<Entry<String, String>>()
+                    {
+                        private int i = 0;
+
+                        @Override
+                        public boolean hasNext()
+                        {
+                            return i < columns.length;
+                        }
+
+                        @Override
+                        public Entry<String, String> next()
+                        {
+                            if (!hasNext()) {
+                                throw new NoSuchElementException();
+                            }
+                            Entry<String, String> result = new SimpleImmutableEntry<>(
+                                    indexedColumnNames.get(columns[i]), values[i]);
+                            i++;
+                            return result;
+                        }
+
+                        @Override
+                        public void remove()
+                        {
+                            throw new UnsupportedOperationException();
+                        }
+                    };
+                }
+
+                @Override
+                public int size()
+                {
+                    return columns.length;
+                }
+            };
+        }
     }
 }
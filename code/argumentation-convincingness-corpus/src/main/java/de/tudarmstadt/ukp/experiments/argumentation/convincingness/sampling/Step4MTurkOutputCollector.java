@@ -43,6 +43,16 @@ public class Step4MTurkOutputCollector
     // we take max 5 assignments
     private static final int MAXIMUM_ASSIGNMENTS_PER_HIT = 5;
 
+    private static final Comparator<AnnotatedArgumentPair.MTurkAssignment> ACCEPT_TIME_COMPARATOR =
+            new Comparator<AnnotatedArgumentPair.MTurkAssignment>()
+            {
+                @Override public int compare(AnnotatedArgumentPair.MTurkAssignment o1,
+                        AnnotatedArgumentPair.MTurkAssignment o2)
+                {
+                    return o1.getAssignmentAcceptTime().compareTo(o2.getAssignmentAcceptTime());
+                }
+            };
+
     @SuppressWarnings("unchecked")
     public static void main(String[] args)
             throws Exception
@@ -195,90 +205,75 @@ public class Step4MTurkOutputCollector
                 // is there such an answer?
                 String key = "Answer." + argumentPair.getId();
 
-                // iterate only if there is such column to save time
-                if (mTurkOutputReader.getColumnNames().contains(key)) {
-                    // now find the results
-                    for (Map<String, String> record : mTurkOutputReader) {
-                        if (record.containsKey(key)) {
-                            // extract the values
-                            AnnotatedArgumentPair.MTurkAssignment assignment = new AnnotatedArgumentPair.MTurkAssignment();
-
-                            boolean wasRejected = "Rejected"
-                                    .equals(record.get("assignmentstatus"));
-
-                            // only non-rejected (if required)
-                            if (!wasRejected) {
-                                String hitID = record.get("hitid");
-                                String workerID = record.get("workerid");
-                                String assignmentId = record.get("assignmentid");
-                                try {
-                                    assignment.setAssignmentAcceptTime(
-                                            DATE_FORMAT
-                                                    .parse(record.get("assignmentaccepttime")));
-                                    assignment.setAssignmentSubmitTime(
-                                            DATE_FORMAT
-                                                    .parse(record.get("assignmentsubmittime")));
-                                    assignment.setHitComment(record.get("Answer.feedback"));
-                                    assignment.setHitID(hitID);
-                                    assignment.setTurkID(workerID);
-                                    assignment.setAssignmentId(assignmentId);
-
-                                    // and answer specific fields
-                                    String valueRaw = record.get(key);
-
-                                    // so far the label has had format aXXX_aYYY_a1, aXXX_aYYY_a2, or aXXX_aYYY_equal
-                                    // strip now only true label
-                                    String label = valueRaw.split("_")[2];
-
-                                    assignment.setValue(label);
-                                    String reason = record.get(key + "_reason");
-
-                                    // missing reason
-                                    if (reason == null) {
-                                        assignmentsWithEmptyReason.add(assignmentId);
-                                    }
-                                    else {
-                                        assignment.setReason(reason);
-
-                                        // get worker's stance
-                                        String stanceRaw = record.get(key + "_stance");
-                                        if (stanceRaw != null) {
-                                            // parse stance
-                                            String stance = stanceRaw.split("_stance_")[1];
-                                            assignment.setWorkerStance(stance);
-                                        }
-
-                                        // we take maximal 5 assignments
-                                        Collections.sort(annotatedArgumentPair.mTurkAssignments,
-                                                new Comparator<AnnotatedArgumentPair.MTurkAssignment>()
-                                                {
-                                                    @Override public int compare(
-                                                            AnnotatedArgumentPair.MTurkAssignment o1,
-                                                            AnnotatedArgumentPair.MTurkAssignment o2)
-                                                    {
-                                                        return o1.getAssignmentAcceptTime()
-                                                                .compareTo(
-                                                                        o2.getAssignmentAcceptTime());
-                                                    }
-                                                });
-
-                                        if (annotatedArgumentPair.mTurkAssignments.size()
-                                                < MAXIMUM_ASSIGNMENTS_PER_HIT) {
-                                            annotatedArgumentPair.mTurkAssignments.add(assignment);
-                                        }
-                                    }
+                // records with such an answer (from the index of the reader)
+                List<Map<String, String>> records = mTurkOutputReader.getRecordsWithColumn(key);
+                if (!records.isEmpty()) {
+                    // now extract the results
+                    for (Map<String, String> record : records) {
+                        // only non-rejected (if required)
+                        if ("Rejected".equals(record.get("assignmentstatus"))) {
+                            continue;
+                        }
+
+                        // extract the values
+                        AnnotatedArgumentPair.MTurkAssignment assignment = new AnnotatedArgumentPair.MTurkAssignment();
+
+                        String hitID = record.get("hitid");
+                        String workerID = record.get("workerid");
+                        String assignmentId = record.get("assignmentid");
+                        try {
+                            assignment.setAssignmentAcceptTime(
+                                    DATE_FORMAT.parse(record.get("assignmentaccepttime")));
+                            assignment.setAssignmentSubmitTime(
+                                    DATE_FORMAT.parse(record.get("assignmentsubmittime")));
+                            assignment.setHitComment(record.get("Answer.feedback"));
+                            assignment.setHitID(hitID);
+                            assignment.setTurkID(workerID);
+                            assignment.setAssignmentId(assignmentId);
+
+                            // and answer specific fields
+                            String valueRaw = record.get(key);
+
+                            // so far the label has had format aXXX_aYYY_a1, aXXX_aYYY_a2, or aXXX_aYYY_equal
+                            // strip now only true label
+                            String label = valueRaw.split("_")[2];
+
+                            assignment.setValue(label);
+                            String reason = record.get(key + "_reason");
+
+                            // missing reason
+                            if (reason == null) {
+                                assignmentsWithEmptyReason.add(assignmentId);
+                            }
+                            else {
+                                assignment.setReason(reason);
+
+                                // get worker's stance
+                                String stanceRaw = record.get(key + "_stance");
+                                if (stanceRaw != null) {
+                                    // parse stance
+                                    String stance = stanceRaw.split("_stance_")[1];
+                                    assignment.setWorkerStance(stance);
                                 }
-                                catch (IllegalArgumentException | NullPointerException ex) {
-                                    System.err.println(
-                                            "Malformed annotations for HIT " + hitID
-                                                    + ", worker "
-                                                    + workerID + ", assignment " + assignmentId
-                                                    + "; " + ex.getMessage() + ", full record: "
-                                                    + record);
+
+                                // we take maximal 5 assignments (the first ones in the output)
+                                if (annotatedArgumentPair.mTurkAssignments.size()
+                                        < MAXIMUM_ASSIGNMENTS_PER_HIT) {
+                                    annotatedArgumentPair.mTurkAssignments.add(assignment);
                                 }
                             }
                         }
+                        catch (IllegalArgumentException | NullPointerException ex) {
+                            System.err.println(
+                                    "Malformed annotations for HIT " + hitID + ", worker "
+                                            + workerID + ", assignment " + assignmentId + "; "
+                                            + ex.getMessage() + ", full record: " + record);
+                        }
                     }
+
+                    // sorted by accept time
+                    Collections.sort(annotatedArgumentPair.mTurkAssignments,
+                            ACCEPT_TIME_COMPARATOR);
                 }
 
                 // and if there are some annotations, add it to the result set
@@ -18,13 +18,12 @@
 
 package de.tudarmstadt.ukp.experiments.argumentation.convincingness.sampling;
 
+import de.tudarmstadt.ukp.experiments.argumentation.convincingness.mace.AnnotationMatrix;
 import de.tudarmstadt.ukp.experiments.argumentation.convincingness.mace.MACE;
-import org.apache.commons.io.FileUtils;
-import org.apache.commons.lang3.StringUtils;
+import de.tudarmstadt.ukp.experiments.argumentation.convincingness.mace.MACEModel;
+import de.tudarmstadt.ukp.experiments.argumentation.convincingness.mace.MACEResult;
 
 import java.io.File;
-import java.nio.file.Files;
-import java.nio.file.Path;
 import java.util.*;
 
 /**
@@ -40,6 +39,16 @@ public class Step5GoldLabelEstimator
     public static double MACE_THRESHOLD = 0.95;
     //    public static double MACE_THRESHOLD = 1.0;
 
+    /**
+     * Number of EM iterations when MACE is initialized from a previous model
+     */
+    public static int WARM_START_ITERATIONS = 50;
+
+    /**
+     * File name of the saved MACE model in the output directory
+     */
+    public static final String MACE_MODEL_FILE_NAME = "mace-model.tsv";
+
     // we cannot ignore equal edges here = they were part of annotations
     //    private static boolean IGNORE_EQUAL = false;
 
@@ -49,6 +58,8 @@ public class Step5GoldLabelEstimator
     {
         String inputDir = args[0];
         File outputDir = new File(args[1]);
+        // optional model from a previous run (e.g., before a new batch of annotations)
+        File previousModel = args.length > 2 ? new File(args[2]) : null;
 
         if (!outputDir.exists()) {
             outputDir.mkdirs();
@@ -64,47 +75,31 @@ public class Step5GoldLabelEstimator
                     .addAll((List<AnnotatedArgumentPair>) XStreamTools.getXStream().fromXML(file));
         }
 
-        // collect turkers and csv
+        // collect turkers and annotations
         List<String> turkerIDs = extractAndSortTurkerIDs(allArgumentPairs);
-        String preparedCSV = prepareCSV(allArgumentPairs, turkerIDs);
-
-        // save CSV and run MACE
-        Path tmpDir = Files.createTempDirectory("mace");
-        File maceInputFile = new File(tmpDir.toFile(), "input.csv");
-        FileUtils.writeStringToFile(maceInputFile, preparedCSV, "utf-8");
-
-        File outputPredictions = new File(tmpDir.toFile(), "predictions.txt");
-        File outputCompetence = new File(tmpDir.toFile(), "competence.txt");
+        AnnotationMatrix annotations = prepareAnnotationMatrix(allArgumentPairs, turkerIDs);
 
         // run MACE
-        MACE.main(
-                new String[] { "--iterations", "500", "--threshold", String.valueOf(MACE_THRESHOLD),
-                        "--restarts", "50", "--outputPredictions",
-                        outputPredictions.getAbsolutePath(), "--outputCompetence",
-                        outputCompetence.getAbsolutePath(), maceInputFile.getAbsolutePath() });
-
-        // read back the predictions and competence
-        List<String> predictions = FileUtils.readLines(outputPredictions, "utf-8");
-
-        // check the output
-        if (predictions.size() != allArgumentPairs.size()) {
-            throw new IllegalStateException(
-                    "Wrong size of the predicted file; expected " + allArgumentPairs.size()
-                            + " lines but was " + predictions.size());
+        MACE mace = new MACE(annotations);
+        mace.setThreads(Runtime.getRuntime().availableProcessors());
+        MACEResult result;
+        if (previousModel != null) {
+            mace.runWarmStart(MACEModel.read(previousModel), turkerIDs, null,
+                    WARM_START_ITERATIONS, mace.getDefaultSmoothing(), MACE.DEFAULT_ALPHA,
+                    MACE.DEFAULT_BETA, false, null);
+            result = mace.getResult(MACE_THRESHOLD);
         }
-
-        String competenceRaw = FileUtils.readFileToString(outputCompetence, "utf-8");
-        String[] competence = competenceRaw.split("\t");
-        if (competence.length != turkerIDs.size()) {
-            throw new IllegalStateException(
-                    "Expected " + turkerIDs.size() + " competence number, got "
-                            + competence.length);
+        else {
+            result = mace.estimate(500, 50, MACE_THRESHOLD);
         }
+        mace.getModel(turkerIDs).write(new File(outputDir, MACE_MODEL_FILE_NAME));
+
+        double[] competence = result.getCompetences();
 
         // rank turkers by competence
         Map<String, Double> turkerIDCompetenceMap = new TreeMap<>();
         for (int i = 0; i < turkerIDs.size(); i++) {
-            turkerIDCompetenceMap.put(turkerIDs.get(i), Double.valueOf(competence[i]));
+            turkerIDCompetenceMap.put(turkerIDs.get(i), competence[i]);
         }
 
         // sort by value descending
@@ -115,10 +110,10 @@ public class Step5GoldLabelEstimator
 
         for (int i = 0; i < allArgumentPairs.size(); i++) {
             AnnotatedArgumentPair annotatedArgumentPair = allArgumentPairs.get(i);
-            String goldLabel = predictions.get(i).trim();
+            String goldLabel = result.getLabelName(i);
 
             // might be empty
-            if (!goldLabel.isEmpty()) {
+            if (goldLabel != null) {
                 // so far the gold label has format aXXX_aYYY_a1, aXXX_aYYY_a2, or aXXX_aYYY_equal
                 // strip now only the gold label
                 annotatedArgumentPair.setGoldLabel(goldLabel);
@@ -208,52 +203,40 @@ public class Step5GoldLabelEstimator
     }
 
     /**
-     * Prepares CSV file for MACE (see http://www.isi.edu/publications/licensed-sw/mace/)
+     * Prepares annotations for MACE (see http://www.isi.edu/publications/licensed-sw/mace/);
+     * each argument pair is an instance, annotators are identified by their index in the
+     * sorted list of turker IDs
      *
      * @param argumentPairs annotated data
      * @param turkerIDs     sorted list of turker IDs
-     * @return single string in the proper MACE format
+     * @return annotation matrix
      */
-    public static String prepareCSV(List<AnnotatedArgumentPair> argumentPairs,
-            List<String> turkerIDs)
+    public static AnnotationMatrix prepareAnnotationMatrix(
+            List<AnnotatedArgumentPair> argumentPairs, List<String> turkerIDs)
     {
-        System.out.println(turkerIDs);
-
-        // for each item we need an array of annotations, i.e.
-        // label1,,,label1,label2,label1,,,
-        // whose size is number of annotators and annotators are identified by position (array index)
-
-        // storing the resulting lines
-        List<String> result = new ArrayList<>();
+        AnnotationMatrix result = new AnnotationMatrix(turkerIDs.size());
 
         for (AnnotatedArgumentPair argumentPair : argumentPairs) {
-            // for storing individual assignments
+            // for storing individual assignments; annotations are added in the order of
+            // annotators and a repeated assignment of the same turker overrides the previous one
             String[] assignmentsArray = new String[turkerIDs.size()];
-            // fill with empty strings
-            Arrays.fill(assignmentsArray, "");
 
             for (AnnotatedArgumentPair.MTurkAssignment assignment : argumentPair.mTurkAssignments) {
-                // do we want to include this annotation at all?
-
                 // get the turker index
                 int turkerIndex = Collections.binarySearch(turkerIDs, assignment.getTurkID());
 
                 // and set the label on the correct position in the array
                 assignmentsArray[turkerIndex] = assignment.getValue();
-
             }
 
-            // concatenate with comma
-            String line = StringUtils.join(assignmentsArray, ",");
-
-            System.out.println(line);
-
-            result.add(line);
+            result.addInstance();
+            for (int i = 0; i < assignmentsArray.length; i++) {
+                if (assignmentsArray[i] != null && !assignmentsArray[i].isEmpty()) {
+                    result.addAnnotation(i, assignmentsArray[i]);
+                }
+            }
         }
 
-        // add empty line at the end
-        result.add("");
-
-        return StringUtils.join(result, "\n");
+        return result;
     }
 }
@@ -23,7 +23,6 @@ import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
 import java.io.File;
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 /**
@@ -32,7 +31,6 @@ import java.util.Map;
 public class Step5bGoldLabelStatistics
 {
 
-    @SuppressWarnings("unchecked")
     public static void main(String[] args)
             throws Exception
     {
@@ -51,40 +49,46 @@ public class Step5bGoldLabelStatistics
         int totalGoldReasonTokens = 0;
 
         for (File file : files) {
-            List<AnnotatedArgumentPair> argumentPairs = (List<AnnotatedArgumentPair>) XStreamTools
-                    .getXStream().fromXML(file);
-
             int pairsPerTopicCounter = 0;
 
-            for (AnnotatedArgumentPair annotatedArgumentPair : argumentPairs) {
-                String goldLabel = annotatedArgumentPair.getGoldLabel();
+            // pairs are processed one by one, not loading the whole file
+            try (XStreamListReader<AnnotatedArgumentPair> reader = new XStreamListReader<>(
+                    file)) {
+                while (reader.hasNext()) {
+                    AnnotatedArgumentPair annotatedArgumentPair = reader.next();
 
-                int sameInOnePair = 0;
+                    String goldLabel = annotatedArgumentPair.getGoldLabel();
 
-                if (goldLabel != null) {
-                    if (!goldDataDistribution.containsKey(goldLabel)) {
-                        goldDataDistribution.put(goldLabel, 0);
-                    }
+                    int sameInOnePair = 0;
+
+                    if (goldLabel != null) {
+                        if (!goldDataDistribution.containsKey(goldLabel)) {
+                            goldDataDistribution.put(goldLabel, 0);
+                        }
 
-                    goldDataDistribution.put(goldLabel, goldDataDistribution.get(goldLabel) + 1);
+                        goldDataDistribution
+                                .put(goldLabel, goldDataDistribution.get(goldLabel) + 1);
 
-                    // get gold reason statistics
-                    for (AnnotatedArgumentPair.MTurkAssignment assignment : annotatedArgumentPair.mTurkAssignments) {
-                        String label = assignment.getValue();
+                        // get gold reason statistics
+                        for (AnnotatedArgumentPair.MTurkAssignment assignment :
+                                annotatedArgumentPair.mTurkAssignments) {
+                            String label = assignment.getValue();
 
-                        if (goldLabel.equals(label)) {
-                            sameInOnePair++;
+                            if (goldLabel.equals(label)) {
+                                sameInOnePair++;
 
-                            totalGoldReasonTokens += assignment.getReason().split("\\W+").length;
+                                totalGoldReasonTokens += assignment.getReason()
+                                        .split("\\W+").length;
+                            }
                         }
-                    }
 
-                    pairsPerTopicCounter++;
-                }
+                        pairsPerTopicCounter++;
+                    }
 
-                ds.addValue(sameInOnePair);
-                totalPairsWithReasonSameAsGold += sameInOnePair;
+                    ds.addValue(sameInOnePair);
+                    totalPairsWithReasonSameAsGold += sameInOnePair;
 
+                }
             }
 
             statsPerTopic.addValue(pairsPerTopicCounter);
@@ -18,43 +18,44 @@
 
 package de.tudarmstadt.ukp.experiments.argumentation.convincingness.sampling;
 
+import de.normalisiert.utils.graphs.CycleHandler;
 import de.normalisiert.utils.graphs.ElementaryCyclesSearch;
 import de.tudarmstadt.ukp.experiments.argumentation.convincingness.createdebate.Argument;
+import de.tudarmstadt.ukp.experiments.argumentation.convincingness.graph.ArgumentGraph;
 import de.tudarmstadt.ukp.experiments.argumentation.convincingness.graph.ArgumentPairListSorter;
 import de.tudarmstadt.ukp.experiments.argumentation.convincingness.graph.AscendingScoreArgumentPairListSorter;
+import de.tudarmstadt.ukp.experiments.argumentation.convincingness.graph.DAGTransitivityScorer;
 import de.tudarmstadt.ukp.experiments.argumentation.convincingness.graph.DescendingScoreArgumentPairListSorter;
+import de.tudarmstadt.ukp.experiments.argumentation.convincingness.graph.EquivalenceClusters;
+import de.tudarmstadt.ukp.experiments.argumentation.convincingness.graph.IncrementalCycleDetector;
 import de.tudarmstadt.ukp.experiments.argumentation.convincingness.graph.RandomArgumentPairListSorter;
+import de.tudarmstadt.ukp.experiments.argumentation.convincingness.graph.TransitiveClosure;
 import org.apache.commons.lang3.Range;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.math3.analysis.function.Sigmoid;
 import org.apache.commons.math3.stat.correlation.PearsonsCorrelation;
 import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
-import org.graphstream.algorithm.BellmanFord;
-import org.graphstream.algorithm.ConnectedComponents;
-import org.graphstream.graph.Edge;
 import org.graphstream.graph.Graph;
 import org.graphstream.graph.Node;
-import org.graphstream.graph.Path;
 import org.graphstream.graph.implementations.DefaultGraph;
-import org.graphstream.graph.implementations.SingleGraph;
 import org.graphstream.stream.file.FileSinkDGS;
-import org.graphstream.stream.file.FileSourceDGS;
 
 import java.io.*;
 import java.lang.reflect.Field;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * @author Ivan Habernal
  */
 public class Step6GraphTransitivityCleaner
 {
-    private static final String EDGE_PRIOR_WEIGHT = "edgePriorWeight";
-
     private static final Sigmoid SIGMOID = new Sigmoid();
 
-    private static final String WEIGHT = "weight";
-
     private static final String LABEL_EQUAL = "equal";
 
     /**
@@ -114,6 +115,9 @@ public class Step6GraphTransitivityCleaner
 
         int preFilteredDataSize = pairs.size();
 
+        // weights do not change during the run, so each is computed only once
+        Map<AnnotatedArgumentPair, Double> edgeWeights = computeEdgeWeights(pairs, LAMBDA_PENALTY);
+
         // compute correlation between score threshold and number of removed edges
         double[] correlationEdgeWeights = new double[pairs.size()];
         double[] correlationRemovedEdges = new double[pairs.size()];
@@ -135,11 +139,22 @@ public class Step6GraphTransitivityCleaner
         // number of edges ignored as they generated cycles
         int ignoredEdgesCount = 0;
 
-        Graph lastGraph = null;
+        ArgumentGraph lastGraph = null;
 
         // flag that the first cycle was already processed
         boolean firstCycleAlreadyHit = false;
 
+        // steps in which the cycle search stopped at its budget (cycle counts are lower bounds)
+        int truncatedCycleSearches = 0;
+
+        // DAG of all successfully added pairs, maintained incrementally; it decides whether
+        // the current pair introduces a cycle, so cycles are enumerated only if there are some
+        IncrementalCycleDetector cycleDetector = new IncrementalCycleDetector();
+
+        // clusters of "equal" arguments of the successfully added pairs; an argument is
+        // represented in the cycle detector by the node of its cluster root
+        EquivalenceClusters equivalenceClusters = new EquivalenceClusters();
+
         for (int i = 1; i < pairs.size(); i++) {
             // now filter the finalArgumentPairList and add only pairs that have not generated cycles
             List<AnnotatedArgumentPair> subList = new ArrayList<>();
@@ -149,27 +164,42 @@ public class Step6GraphTransitivityCleaner
             }
 
             // and add the current at the end
-            subList.add(pairs.get(i));
+            AnnotatedArgumentPair currentPair = pairs.get(i);
+            subList.add(currentPair);
+
+            boolean introducesCycle = introducesCycle(currentPair, cycleDetector,
+                    equivalenceClusters);
+
+            // clusters for the graph including the current pair
+            EquivalenceClusters graphClusters = equivalenceClusters;
+
+            if (!introducesCycle) {
+                // the pair will be kept
+                addPairToCycleDetector(currentPair, cycleDetector, equivalenceClusters);
+            }
+            else if (LABEL_EQUAL.equals(currentPair.getGoldLabel())) {
+                // tentative union, the pair will be ignored
+                graphClusters = equivalenceClusters.copy();
+                graphClusters.union(currentPair.getArg1().getId(),
+                        currentPair.getArg2().getId());
+            }
 
             // what is the current lowest value of a pair weight?
-            double weakestEdgeWeight = computeEdgeWeight(subList.get(subList.size() - 1),
-                    LAMBDA_PENALTY);
+            double weakestEdgeWeight = edgeWeights.get(subList.get(subList.size() - 1));
 
             //            Graph graph = buildGraphFromArgumentPairs(finalArgumentPairList);
-            int numberOfLoops;
 
             // map for storing cycles by their length
             TreeMap<Integer, TreeSet<String>> lengthCyclesMap = new TreeMap<>();
 
-            Graph graph = buildGraphFromArgumentPairs(subList);
+            ArgumentGraph graph = buildGraphFromArgumentPairs(subList, graphClusters,
+                    edgeWeights);
 
             lastGraph = graph;
 
-            List<List<Object>> cyclesInGraph = findCyclesInGraph(graph);
-
             DescriptiveStatistics transitivityScore = new DescriptiveStatistics();
 
-            if (cyclesInGraph.isEmpty()) {
+            if (!introducesCycle) {
                 // we have DAG
                 transitivityScore = computeTransitivityScores(graph);
 
@@ -178,15 +208,18 @@ public class Step6GraphTransitivityCleaner
                 result.avgTransitivityScore = transitivityScore.getMean();
             }
 
-            numberOfLoops = cyclesInGraph.size();
-
             // initialize map
             for (int r = range.getMinimum(); r <= range.getMaximum(); r++) {
                 lengthCyclesMap.put(r, new TreeSet<String>());
             }
 
             // we hit a loop
-            if (numberOfLoops > 0) {
+            if (introducesCycle) {
+                // only cycles within the range are enumerated
+                if (!collectCyclesInGraph(graph, range.getMaximum(), lengthCyclesMap)) {
+                    truncatedCycleSearches++;
+                }
+
                 // let's update the result
 
                 if (!firstCycleAlreadyHit) {
@@ -194,12 +227,7 @@ public class Step6GraphTransitivityCleaner
                     result.graphSizeNodesBeforeFirstCycle = graph.getNodeCount();
 
                     // find the shortest cycle
-                    int shortestCycleLength = Integer.MAX_VALUE;
-
-                    for (List<Object> cycle : cyclesInGraph) {
-                        shortestCycleLength = Math.min(shortestCycleLength, cycle.size());
-                    }
-                    result.lengthOfFirstCircle = shortestCycleLength;
+                    result.lengthOfFirstCircle = findShortestCycleLength(graph);
 
                     result.pairsBeforeFirstCycle = i;
 
@@ -208,22 +236,6 @@ public class Step6GraphTransitivityCleaner
 
                 // ignore this edge further
                 ignoredEdgesCount++;
-
-                // update counts of different cycles lengths
-                for (List<Object> cycle : cyclesInGraph) {
-                    int currentSize = cycle.size();
-
-                    // convert to sorted set of nodes
-                    List<String> cycleAsSortedIDs = new ArrayList<>();
-                    for (Object o : cycle) {
-                        cycleAsSortedIDs.add(o.toString());
-                    }
-                    Collections.sort(cycleAsSortedIDs);
-
-                    if (range.contains(currentSize)) {
-                        lengthCyclesMap.get(currentSize).add(cycleAsSortedIDs.toString());
-                    }
-                }
             }
             else {
                 addedPairsIndices.add(i);
@@ -240,7 +252,7 @@ public class Step6GraphTransitivityCleaner
             }
 
             psTable.printf(Locale.ENGLISH, "%.4f\t%d\t%d\t%b\t%.2f\t%d\t%d\t%d\t%d\t%s%n",
-                    weakestEdgeWeight, i, ignoredEdgesCount, numberOfLoops == 0,
+                    weakestEdgeWeight, i, ignoredEdgesCount, !introducesCycle,
                     Double.isNaN(transitivityScore.getMean()) ? 0d : transitivityScore.getMean(),
                     (int) transitivityScore.getMax(), transitivityScore.getN(),
                     graph.getEdgeCount(), graph.getNodeCount(), loopsAsString.toString().trim());
@@ -254,13 +266,22 @@ public class Step6GraphTransitivityCleaner
             correlationEdgeWeights[i] = weakestEdgeWeight;
             //            correlationRemovedEdges[i] =  (double) ignoredEdgesCount;
             // let's try: if we keep = 0, if we remove = 1
-            correlationRemovedEdges[i] = numberOfLoops == 0 ? 0.0 : 1.0;
+            correlationRemovedEdges[i] = introducesCycle ? 1.0 : 0.0;
         }
 
         psInfo.println("Original: " + fullDataSize + ", removed by MACE: " + (fullDataSize
                 - preFilteredDataSize) + ", final: " + (preFilteredDataSize - ignoredEdgesCount)
                 + " (removed: " + ignoredEdgesCount + ")");
 
+        if (truncatedCycleSearches > 0) {
+            String warning = String.format(Locale.ENGLISH,
+                    "Cycle search stopped at the limit of %d cycles in %d steps; "
+                            + "cycle counts of these steps are lower bounds",
+                    ElementaryCyclesSearch.DEFAULT_MAX_CYCLES, truncatedCycleSearches);
+            psInfo.println(warning);
+            System.err.println("WARNING: " + file.getName() + " (" + prefix + "): " + warning);
+        }
+
         double[][] matrix = new double[correlationEdgeWeights.length][];
         for (int i = 0; i < correlationEdgeWeights.length; i++) {
             matrix[i] = new double[2];
@@ -292,7 +313,6 @@ public class Step6GraphTransitivityCleaner
 
         // TODO: here, we can add newly generated edges from graph transitivity
         if (collectGeneratedArgumentPairs) {
-            Set<GeneratedArgumentPair> generatedArgumentPairs = new HashSet<>();
             // collect all arguments
             Map<String, Argument> allArguments = new HashMap<>();
             for (ArgumentPair argumentPair : pairs) {
@@ -300,56 +320,12 @@ public class Step6GraphTransitivityCleaner
                 allArguments.put(argumentPair.getArg2().getId(), argumentPair.getArg2());
             }
 
-            Graph finalGraph = buildGraphFromArgumentPairs(finalArgumentPairList);
-            for (Edge e : finalGraph.getEdgeSet()) {
-                e.setAttribute(WEIGHT, 1.0);
-            }
-
-            for (Node j : finalGraph) {
-                for (Node k : finalGraph) {
-                    if (j != k) {
-                        // is there a path between?
-                        BellmanFord bfShortest = new BellmanFord(WEIGHT, j.getId());
-                        bfShortest.init(finalGraph);
-                        bfShortest.compute();
+            // all pairs connected by a path, including the reverse ones
+            ArgumentGraph finalGraph = buildGraphFromArgumentPairs(finalArgumentPairList,
+                    buildEquivalencyClusters(finalArgumentPairList), edgeWeights);
+            Set<GeneratedArgumentPair> generatedArgumentPairs = new TransitiveClosure(finalGraph)
+                    .createGeneratedArgumentPairs(allArguments);
 
-                        Path shortestPath = bfShortest.getShortestPath(k);
-
-                        if (shortestPath.size() > 0) {
-                            // we have a path
-                            GeneratedArgumentPair ap = new GeneratedArgumentPair();
-                            Argument arg1 = allArguments.get(j.getId());
-
-                            if (arg1 == null) {
-                                throw new IllegalStateException(
-                                        "Cannot find argument " + j.getId());
-                            }
-                            ap.setArg1(arg1);
-
-                            Argument arg2 = allArguments.get(k.getId());
-
-                            if (arg2 == null) {
-                                throw new IllegalStateException(
-                                        "Cannot find argument " + k.getId());
-                            }
-                            ap.setArg2(arg2);
-
-                            ap.setGoldLabel("a1");
-                            generatedArgumentPairs.add(ap);
-                        }
-                    }
-                }
-            }
-            // and now add the reverse ones
-            Set<GeneratedArgumentPair> generatedReversePairs = new HashSet<>();
-            for (GeneratedArgumentPair pair : generatedArgumentPairs) {
-                GeneratedArgumentPair ap = new GeneratedArgumentPair();
-                ap.setArg1(pair.getArg2());
-                ap.setArg2(pair.getArg1());
-                ap.setGoldLabel("a2");
-                generatedReversePairs.add(ap);
-            }
-            generatedArgumentPairs.addAll(generatedReversePairs);
             // and save it
             XStreamTools.toXML(generatedArgumentPairs,
                     new File(outputDir, "generated_" + prefix + file.getName()));
@@ -433,23 +409,25 @@ public class Step6GraphTransitivityCleaner
     }
 
     /**
-     * Creates a "clean" copy of the source graph with the same nodes+edges and cluster names;
-     * the rest is omitted.
+     * Creates a "clean" GraphStream copy of the argument graph with the same nodes+edges and
+     * cluster names (e.g., for saving into DGS or visualization); the rest is omitted.
      *
      * @param graph graph
      * @return graph
      */
-    public static Graph cleanCopyGraph(Graph graph)
+    public static Graph cleanCopyGraph(ArgumentGraph graph)
     {
         Graph result = new DefaultGraph("g", true, false);
 
-        for (Node n : graph) {
-            Node node = result.addNode(n.getId());
-            node.setAttribute(NODE_ATTR_CLUSTERED_ARGS, n.getAttribute(NODE_ATTR_CLUSTERED_ARGS));
+        for (int n = 0; n < graph.getNodeCount(); n++) {
+            Node node = result.addNode(graph.getNodeId(n));
+            node.setAttribute(NODE_ATTR_CLUSTERED_ARGS, graph.getClusteredArguments(n));
         }
 
-        for (Edge e : graph.getEdgeSet()) {
-            result.addEdge(e.getId(), e.getSourceNode().getId(), e.getTargetNode().getId(), true);
+        for (int e = 0; e < graph.getEdgeCount(); e++) {
+            String sourceId = graph.getNodeId(graph.getEdgeSource(e));
+            String targetId = graph.getNodeId(graph.getEdgeTarget(e));
+            result.addEdge(sourceId + ":" + targetId, sourceId, targetId, true);
         }
 
         return result;
@@ -460,65 +438,15 @@ public class Step6GraphTransitivityCleaner
      * multiple paths between them. A single score for such a pair is a ratio of the longest
      * path from A to B and the shortest path.
      * <p/>
-     * It uses Bellman-Ford algorithm to compute the shortest and longest paths
+     * Paths are computed over the topological order of the graph (see
+     * {@link DAGTransitivityScorer})
      *
      * @param graph graph (must be DAG)
      * @return statistics
      */
-    private static DescriptiveStatistics computeTransitivityScores(Graph graph)
+    private static DescriptiveStatistics computeTransitivityScores(ArgumentGraph graph)
     {
-        // find all out-degree > 1 nodes
-        Set<Node> sourceNodes = new HashSet<>();
-        Set<Node> targetNodes = new HashSet<>();
-        for (Node n : graph) {
-            if (n.getOutDegree() > 1) {
-                sourceNodes.add(n);
-            }
-
-            if (n.getInDegree() > 1) {
-                targetNodes.add(n);
-            }
-        }
-
-        FileSourceDGS source = new FileSourceDGS();
-        source.addSink(graph);
-
-        DescriptiveStatistics result = new DescriptiveStatistics();
-
-        for (Node sourceNode : sourceNodes) {
-            // set positive weight first
-            for (Edge e : graph.getEdgeSet()) {
-                e.setAttribute(WEIGHT, 1.0);
-            }
-
-            BellmanFord bfShortest = new BellmanFord(WEIGHT, sourceNode.getId());
-            bfShortest.init(graph);
-            bfShortest.compute();
-
-            // now negative weight for longest-path
-            for (Edge e : graph.getEdgeSet()) {
-                e.setAttribute(WEIGHT, -1.0);
-            }
-
-            BellmanFord bfLongest = new BellmanFord(WEIGHT, sourceNode.getId());
-            bfLongest.init(graph);
-            bfLongest.compute();
-
-            for (Node targetNode : targetNodes) {
-                Path shortestPath = bfShortest.getShortestPath(targetNode);
-                Path longestPath = bfLongest.getShortestPath(targetNode);
-
-                int shortestPathLength = shortestPath.getEdgeCount();
-                int longestPathLength = longestPath.getEdgeCount();
-
-                if (shortestPathLength == 1 && longestPathLength > 1) {
-                    // update statistics
-                    result.addValue((double) longestPathLength / (double) shortestPathLength);
-                }
-            }
-        }
-
-        return result;
+        return new DAGTransitivityScorer(graph).computeTransitivityScores();
     }
 
     /**
@@ -544,67 +472,180 @@ public class Step6GraphTransitivityCleaner
     */
 
     /**
-     * Find all elementary cycles in graph (with hard limit 10k cycles to prevent overflow)
+     * Finds elementary cycles up to the given length in graph (with hard limit 10k cycles to
+     * prevent overflow) and collects them by their length; each cycle is stored as a sorted
+     * list of node IDs
      *
-     * @param graph graph
-     * @return list of paths (path = list of node ID) of null, if self-loop found
+     * @param graph           graph
+     * @param maxCycleLength  maximal cycle length
+     * @param lengthCyclesMap cycles by their length (must contain all lengths up to the max)
+     * @return true if all cycles were found, false if the search stopped at the 10k limit
      */
-    private static List<List<Object>> findCyclesInGraph(Graph graph)
+    private static boolean collectCyclesInGraph(final ArgumentGraph graph, int maxCycleLength,
+            final Map<Integer, TreeSet<String>> lengthCyclesMap)
     {
-        // convert into adjacency matrix representation
-        SortedMap<String, Integer> nodeToIndexMap = new TreeMap<>();
+        // let's do the magic :)
+        ElementaryCyclesSearch ecs = new ElementaryCyclesSearch(graph.getAdjacencyList(), null);
+        ecs.setMaxCycleLength(maxCycleLength);
 
-        ArrayList<Node> origNodes = new ArrayList<>(graph.getNodeSet());
-        for (int i = 0; i < origNodes.size(); i++) {
-            nodeToIndexMap.put(origNodes.get(i).getId(), i);
-        }
+        ecs.search(new CycleHandler()
+        {
+            @Override
+            public boolean cycleFound(int[] cycle, int length)
+            {
+                // convert to sorted set of nodes
+                List<String> cycleAsSortedIDs = new ArrayList<>(length);
+                for (int i = 0; i < length; i++) {
+                    cycleAsSortedIDs.add(graph.getNodeId(cycle[i]));
+                }
+                Collections.sort(cycleAsSortedIDs);
 
-        // convert to different format for the algorithm
-        String[] nodeIds = new String[origNodes.size()];
-        boolean adjMatrix[][] = new boolean[origNodes.size()][origNodes.size()];
+                lengthCyclesMap.get(length).add(cycleAsSortedIDs.toString());
+
+                return true;
+            }
+        });
 
-        // fill node IDs to array
-        for (Map.Entry<String, Integer> entry : nodeToIndexMap.entrySet()) {
-            nodeIds[entry.getValue()] = entry.getKey();
+        return !ecs.isStopped();
+    }
+
+    /**
+     * Returns the length of the shortest cycle in the graph (breadth-first search from each
+     * node back to itself)
+     *
+     * @param graph graph
+     * @return number of nodes of the shortest cycle or {@code Integer.MAX_VALUE} for DAG
+     */
+    private static int findShortestCycleLength(ArgumentGraph graph)
+    {
+        int result = Integer.MAX_VALUE;
+        int nodeCount = graph.getNodeCount();
+        int[] distances = new int[nodeCount];
+        int[] queue = new int[nodeCount];
+
+        for (int source = 0; source < nodeCount; source++) {
+            Arrays.fill(distances, -1);
+            distances[source] = 0;
+            int head = 0;
+            int tail = 0;
+            queue[tail++] = source;
+
+            // only paths shorter than the current shortest cycle are interesting
+            while (head < tail && distances[queue[head]] + 1 < result) {
+                int n = queue[head++];
+
+                for (int i = 0; i < graph.getOutDegree(n); i++) {
+                    int w = graph.getSuccessor(n, i);
+
+                    if (w == source) {
+                        result = Math.min(result, distances[n] + 1);
+                    }
+                    else if (distances[w] < 0) {
+                        distances[w] = distances[n] + 1;
+                        queue[tail++] = w;
+                    }
+                }
+            }
         }
 
-        // fill adjacency matrix
-        for (Edge edge : graph.getEdgeSet()) {
-            String sourceId = edge.getSourceNode().getId();
-            String targetId = edge.getTargetNode().getId();
+        return result;
+    }
 
-            int sourceIndex = nodeToIndexMap.get(sourceId);
-            int targetIndex = nodeToIndexMap.get(targetId);
+    /**
+     * Returns the node representing the given argument (i.e., its cluster) in the cycle
+     * detector; creates a new node for a yet unseen argument. Nodes of the cycle detector
+     * and elements of the clusters are created together, so they share their indices.
+     *
+     * @param argumentId          argument ID
+     * @param cycleDetector       cycle detector
+     * @param equivalenceClusters clusters of "equal" arguments
+     * @return node
+     */
+    private static int getArgumentNode(String argumentId, IncrementalCycleDetector cycleDetector,
+            EquivalenceClusters equivalenceClusters)
+    {
+        int element = equivalenceClusters.getIndex(argumentId);
 
-            adjMatrix[sourceIndex][targetIndex] = true;
+        if (element < 0) {
+            element = equivalenceClusters.add(argumentId);
+            cycleDetector.addNode();
         }
 
-        // let's do the magic :)
-        ElementaryCyclesSearch ecs = new ElementaryCyclesSearch(adjMatrix, nodeIds);
+        return equivalenceClusters.find(element);
+    }
 
-        List<List<Object>> cycles = ecs.getElementaryCycles();
+    /**
+     * Returns true if adding the argument pair into the graph would introduce a cycle. An
+     * "equal" pair introduces a cycle if there is a path between the two arguments, as they
+     * will be merged into a single node (see {@link #buildGraphFromArgumentPairs(List)})
+     *
+     * @param argumentPair        argument pair
+     * @param cycleDetector       DAG of the pairs added so far
+     * @param equivalenceClusters clusters of "equal" arguments
+     * @return boolean
+     */
+    private static boolean introducesCycle(AnnotatedArgumentPair argumentPair,
+            IncrementalCycleDetector cycleDetector, EquivalenceClusters equivalenceClusters)
+    {
+        String goldLabel = argumentPair.getGoldLabel();
+        int node1 = getArgumentNode(argumentPair.getArg1().getId(), cycleDetector,
+                equivalenceClusters);
+        int node2 = getArgumentNode(argumentPair.getArg2().getId(), cycleDetector,
+                equivalenceClusters);
+
+        if (LABEL_EQUAL.equals(goldLabel)) {
+            return cycleDetector.wouldCreateCycleByMerging(node1, node2);
+        }
+        else if ("a2".equals(goldLabel)) {
+            return cycleDetector.wouldCreateCycle(node2, node1);
+        }
+        else {
+            return cycleDetector.wouldCreateCycle(node1, node2);
+        }
+    }
 
-        // since the algorithm doesn't reveal self-loops, find them by ourselves
-        for (Edge edge : graph.getEdgeSet()) {
-            if (edge.getTargetNode().getId().equals(edge.getSourceNode().getId())) {
-                //                cycles.add(Arrays.asList((Object) edge.getSourceNode().getId(),
-                //                        edge.getTargetNode().getId()));
-                cycles.add(Collections.<Object>singletonList(edge.getSourceNode().getId()));
+    /**
+     * Adds the argument pair into the DAG; it must not introduce a cycle. "Equal" pairs
+     * merge the clusters of both arguments.
+     *
+     * @param argumentPair        argument pair
+     * @param cycleDetector       DAG of the pairs added so far
+     * @param equivalenceClusters clusters of "equal" arguments
+     */
+    private static void addPairToCycleDetector(AnnotatedArgumentPair argumentPair,
+            IncrementalCycleDetector cycleDetector, EquivalenceClusters equivalenceClusters)
+    {
+        String goldLabel = argumentPair.getGoldLabel();
+        int node1 = getArgumentNode(argumentPair.getArg1().getId(), cycleDetector,
+                equivalenceClusters);
+        int node2 = getArgumentNode(argumentPair.getArg2().getId(), cycleDetector,
+                equivalenceClusters);
+
+        if (LABEL_EQUAL.equals(goldLabel)) {
+            if (node1 != node2) {
+                int root = equivalenceClusters.union(node1, node2);
+                cycleDetector.mergeNodes(root, root == node1 ? node2 : node1);
             }
         }
-
-        //        System.out.println(cycles);
-
-        return cycles;
+        else if ("a2".equals(goldLabel)) {
+            cycleDetector.addEdge(node2, node1);
+        }
+        else {
+            cycleDetector.addEdge(node1, node2);
+        }
     }
 
-    protected static Set<Set<String>> buildEquivalencyClusters(
+    /**
+     * Clusters all arguments connected by "equal" relation
+     *
+     * @param argumentPairs argument pairs
+     * @return clusters
+     * @throws IllegalStateException if a pair has no gold label
+     */
+    protected static EquivalenceClusters buildEquivalencyClusters(
             List<AnnotatedArgumentPair> argumentPairs)
     {
-        // create a new undirected graph
-        Graph ccGraph = new DefaultGraph("ConnectedComponentsGraph");
-        ccGraph.setAutoCreate(true);
-        ccGraph.setStrict(false);
+        EquivalenceClusters result = new EquivalenceClusters();
 
         for (AnnotatedArgumentPair annotatedArgumentPair : argumentPairs) {
             String goldLabel = annotatedArgumentPair.getGoldLabel();
@@ -614,50 +655,12 @@ public class Step6GraphTransitivityCleaner
             }
 
             if (LABEL_EQUAL.equals(goldLabel)) {
-                String arg1 = annotatedArgumentPair.getArg1().getId();
-                String arg2 = annotatedArgumentPair.getArg2().getId();
-
-                List<String> names = Arrays.asList(arg1, arg2);
-                Collections.sort(names);
-                String edgeName = StringUtils.join(names, "_");
-                ccGraph.addEdge(edgeName, arg1, arg2);
-            }
-        }
-        // compute connected components
-        ConnectedComponents cc = new ConnectedComponents();
-        cc.init(ccGraph);
-
-        cc.setCountAttribute("cluster");
-        cc.compute();
-
-        //        System.out.println(cc.getConnectedComponentsCount());
-
-        Set<Set<String>> equalClusters = new HashSet<>();
-
-        // re-create clusters from all connected components
-        for (ConnectedComponents.ConnectedComponent component : cc) {
-            Set<String> cluster = new HashSet<>();
-            for (Node n : component) {
-                cluster.add(n.getId());
+                result.union(annotatedArgumentPair.getArg1().getId(),
+                        annotatedArgumentPair.getArg2().getId());
             }
-            equalClusters.add(cluster);
         }
 
-        // sanity check: all nodes from the clusters must be unique
-        Set<String> uniqueSetOfNodes = new HashSet<>();
-        for (Set<String> set : equalClusters) {
-            for (String node : set) {
-                if (uniqueSetOfNodes.contains(node)) {
-                    throw new IllegalStateException(
-                            "Wrong mapping of nodes to clusters, duplicate entry: " + node + ",\n"
-                                    + equalClusters);
-                }
-
-                uniqueSetOfNodes.add(node);
-            }
-        }
-
-        return equalClusters;
+        return result;
     }
 
     /**
@@ -668,21 +671,50 @@ public class Step6GraphTransitivityCleaner
      * @param argumentPairs argument pairs
      * @return graph
      */
-    public static Graph buildGraphFromArgumentPairs(List<AnnotatedArgumentPair> argumentPairs)
-            throws InterruptedException
+    public static ArgumentGraph buildGraphFromArgumentPairs(
+            List<AnnotatedArgumentPair> argumentPairs)
     {
-        Graph graph = new SingleGraph("g");
-        graph.setStrict(false);
-        graph.setAutoCreate(true);
+        return buildGraphFromArgumentPairs(argumentPairs,
+                buildEquivalencyClusters(argumentPairs));
+    }
+
+    /**
+     * Builds the graph from argument pairs using already known clusters of "equal" arguments
+     * (which must correspond to the "equal" pairs in the list)
+     *
+     * @param argumentPairs       argument pairs
+     * @param equivalenceClusters clusters
+     * @return graph
+     * @see #buildGraphFromArgumentPairs(List)
+     */
+    public static ArgumentGraph buildGraphFromArgumentPairs(
+            List<AnnotatedArgumentPair> argumentPairs, EquivalenceClusters equivalenceClusters)
+    {
+        return buildGraphFromArgumentPairs(argumentPairs, equivalenceClusters,
+                computeEdgeWeights(argumentPairs, LAMBDA_PENALTY));
+    }
+
+    /**
+     * Builds the graph from argument pairs using already known clusters of "equal" arguments
+     * and already computed edge weights
+     *
+     * @param argumentPairs       argument pairs
+     * @param equivalenceClusters clusters
+     * @param edgeWeights         weights of (at least) all pairs in the list
+     * @return graph
+     */
+    private static ArgumentGraph buildGraphFromArgumentPairs(
+            List<AnnotatedArgumentPair> argumentPairs, EquivalenceClusters equivalenceClusters,
+            Map<AnnotatedArgumentPair, Double> edgeWeights)
+    {
+        ArgumentGraph graph = new ArgumentGraph();
 
         // so what are now the nodes (clusters?)
-        Set<Set<String>> equalClusters = buildEquivalencyClusters(argumentPairs);
+        List<SortedSet<String>> equalClusters = equivalenceClusters.getClusters();
 
         // first add nodes that represent the clusters
-        // update source and target id
-        for (Set<String> cluster : equalClusters) {
-            String nodeID = StringUtils.join(cluster, "+");
-            graph.addNode(nodeID);
+        for (SortedSet<String> cluster : equalClusters) {
+            graph.addNode(equivalenceClusters.getClusterName(cluster.first()));
         }
 
         //        System.out.println("Equal clusters: " + equalClusters);
@@ -696,7 +728,7 @@ public class Step6GraphTransitivityCleaner
             // we're skipping equal pairs, these are already clustered in a single node
             // so there's no need to add edges
             if (!LABEL_EQUAL.equals(goldLabel)) {
-                double priorEdgeWeight = computeEdgeWeight(annotatedArgumentPair, LAMBDA_PENALTY);
+                double priorEdgeWeight = edgeWeights.get(annotatedArgumentPair);
 
                 // gold is a1 (default)
                 String sourceId = annotatedArgumentPair.getArg1().getId();
@@ -708,55 +740,22 @@ public class Step6GraphTransitivityCleaner
                     targetId = annotatedArgumentPair.getArg1().getId();
                 }
 
-                Set<String> sourceCluster = null;
-                Set<String> targetCluster = null;
-
-                // first find the mapping from nodeId to its cluster (for clustering "equal" nodes)
-                for (Set<String> cluster : equalClusters) {
-                    if (cluster.contains(sourceId)) {
-                        sourceCluster = cluster;
-                    }
-
-                    if (cluster.contains(targetId)) {
-                        targetCluster = cluster;
-                    }
-                }
-
-                // update source and target id
-                if (sourceCluster != null) {
-                    sourceId = StringUtils.join(sourceCluster, "+");
-                }
-                if (targetCluster != null) {
-                    targetId = StringUtils.join(targetCluster, "+");
-                }
+                // the mapping from nodeId to its cluster (for clustering "equal" nodes)
+                Set<String> sourceCluster = equivalenceClusters.getCluster(sourceId);
+                Set<String> targetCluster = equivalenceClusters.getCluster(targetId);
 
                 // would this edge introduce a self-loop? (it's possible)
                 // will be revealed later
-                boolean selfLoop = false;
-
-                if (sourceId.equals(targetId)) {
-                    //                    System.err.println("Argument pair " + annotatedArgumentPair.toStringSimple()
-                    //                            + " caused self-loop " + sourceId);
-                    selfLoop = true;
-                }
+                int source = graph.addNode(equivalenceClusters.getClusterName(sourceId));
+                int target = graph.addNode(equivalenceClusters.getClusterName(targetId));
 
-                String edgeId = sourceId + ":" + targetId;
-                Edge edge = graph.addEdge(edgeId, sourceId, targetId, true);
-
-                if (selfLoop) {
-                    //                    System.err.println(edge);
-                }
+                int edge = graph.addEdge(source, target, priorEdgeWeight);
 
                 // if the edge does not exist yet
-                if (edge != null) {
-                    edge.setAttribute(EDGE_PRIOR_WEIGHT, priorEdgeWeight);
-
-                    edge.getSourceNode().addAttribute("ui.label", sourceId);
-                    edge.getTargetNode().addAttribute("ui.label", targetId);
-
+                if (edge >= 0) {
                     // update the properties of nodes as well
-                    edge.getSourceNode().setAttribute(NODE_ATTR_CLUSTERED_ARGS, sourceCluster);
-                    edge.getTargetNode().setAttribute(NODE_ATTR_CLUSTERED_ARGS, targetCluster);
+                    graph.setClusteredArguments(source, sourceCluster);
+                    graph.setClusteredArguments(target, targetCluster);
                 }
             }
         }
@@ -768,8 +767,6 @@ public class Step6GraphTransitivityCleaner
         if (equalClusters.size() > graph.getNodeCount() && graph.getNodeCount() > 0) {
             System.err.println(equalClusters);
             System.err.println(graph.getNodeCount());
-            graph.display();
-            Thread.sleep(5000);
             throw new IllegalStateException("More nodes than expected",
                     new IOException(argumentPairs.get(0).toString()));
         }
@@ -779,60 +776,30 @@ public class Step6GraphTransitivityCleaner
 
     /**
      * Merges clusters that contain common elements into one cluster. Internally uses
-     * connected components graph algorithm.
+     * {@link EquivalenceClusters}; single-element clusters are omitted.
      *
      * @param equalClusters clusters
      * @return new set of clusters
      */
     public static Set<Set<String>> mergeClusters(Set<Set<String>> equalClusters)
     {
-        // create a new undirected graph
-        Graph graph = new DefaultGraph("CC Test");
-        graph.setAutoCreate(true);
-        graph.setStrict(false);
+        EquivalenceClusters clusters = new EquivalenceClusters();
 
-        // add all "edges"; for each pair from each cluster
         for (Set<String> cluster : equalClusters) {
-            List<String> clusterList = new ArrayList<>(cluster);
+            String first = null;
 
-            for (int i = 0; i < clusterList.size(); i++) {
-                for (int j = i + 1; j < clusterList.size(); j++) {
-                    // edge name
-                    String iName = clusterList.get(i);
-                    String jName = clusterList.get(j);
-
-                    List<String> names = Arrays.asList(iName, jName);
-                    Collections.sort(names);
-                    String edgeName = StringUtils.join(names, "_");
-
-                    graph.addEdge(edgeName, iName, jName);
+            for (String element : cluster) {
+                if (first == null) {
+                    first = element;
+                    clusters.add(element);
+                }
+                else {
+                    clusters.union(first, element);
                 }
             }
         }
 
-        // compute connected components
-        ConnectedComponents cc = new ConnectedComponents();
-        cc.init(graph);
-
-        Set<Set<String>> result = new HashSet<>();
-
-        cc.setCountAttribute("cluster");
-        cc.compute();
-
-        //        System.out.println(cc.getConnectedComponentsCount());
-
-        // re-create clusters from all connected components
-        for (ConnectedComponents.ConnectedComponent component : cc) {
-            Set<String> cluster = new HashSet<>();
-            for (Node n : component) {
-                cluster.add(n.getId());
-            }
-            result.add(cluster);
-        }
-
-        //        System.out.println(result);
-
-        return result;
+        return new HashSet<Set<String>>(clusters.getClusters());
     }
 
     /*
@@ -853,6 +820,25 @@ public class Step6GraphTransitivityCleaner
     }
     */
 
+    /**
+     * Computes weights of all pairs (see {@link #computeEdgeWeight(AnnotatedArgumentPair,
+     * double)}); pairs are compared by identity, so the weights must be computed again after
+     * the pairs change
+     *
+     * @param argumentPairs argument pairs
+     * @param lambda        lambda penalty
+     * @return weights by pair
+     */
+    public static Map<AnnotatedArgumentPair, Double> computeEdgeWeights(
+            Collection<AnnotatedArgumentPair> argumentPairs, double lambda)
+    {
+        Map<AnnotatedArgumentPair, Double> result = new IdentityHashMap<>(argumentPairs.size());
+        for (AnnotatedArgumentPair argumentPair : argumentPairs) {
+            result.put(argumentPair, computeEdgeWeight(argumentPair, lambda));
+        }
+        return result;
+    }
+
     /**
      * Computes the weight of the argument pair given the workers' scores from MACE. Labels
      * different from the gold predicted label are penalized by the {@code lambda} parameter.
@@ -894,7 +880,28 @@ public class Step6GraphTransitivityCleaner
         return SIGMOID.value(sum);
     }
 
-    @SuppressWarnings("unchecked")
+    /**
+     * Creates a new instance of each sorting algorithm; sorters may keep a state (e.g., random
+     * generator), so each run gets its own instances
+     *
+     * @return list of sorters
+     */
+    private static List<ArgumentPairListSorter> createSortingAlgorithms()
+    {
+        return Arrays.asList(new RandomArgumentPairListSorter(1),
+                new AscendingScoreArgumentPairListSorter(),
+                new DescendingScoreArgumentPairListSorter());
+    }
+
+    /**
+     * Runs the cleaning for all files and all settings (removing/keeping equal edges x sorting
+     * algorithms). Each run is independent and writes into its own output files, so the runs
+     * are executed in parallel; the results are collected in a fixed order.
+     *
+     * @param args input dir, output dir, optionally number of threads (default: number of
+     *             available processors)
+     * @throws Exception exception
+     */
     public static void collectResults(String[] args)
             throws Exception
     {
@@ -902,46 +909,101 @@ public class Step6GraphTransitivityCleaner
 
         File outputDir = new File(args[1]);
 
+        int threads = args.length > 2 ?
+                Integer.parseInt(args[2]) :
+                Runtime.getRuntime().availableProcessors();
+
         if (!outputDir.exists()) {
             outputDir.mkdirs();
         }
 
         List<File> files = new ArrayList<>(IOHelper.listXmlFiles(new File(inputDir)));
 
-        Map<String, Map<String, GraphCleaningResults>> results = new TreeMap<>();
+        Map<String, Map<String, GraphCleaningResults>> results = collectResults(files, outputDir,
+                threads);
 
-        List<ArgumentPairListSorter> sortingAlgorithms = Arrays
-                .asList(new RandomArgumentPairListSorter(1),
-                        new AscendingScoreArgumentPairListSorter(),
-                        new DescendingScoreArgumentPairListSorter());
-
-        for (File file : files) {
-            Map<String, GraphCleaningResults> resultsForSingleFile = new HashMap<>();
-            results.put(file.getName(), resultsForSingleFile);
-
-            List<Boolean> removeEqualPairsParams = Arrays.asList(true, false);
+        System.out.println(results);
 
-            for (Boolean removeEqualEdgesParam : removeEqualPairsParams) {
+        XStreamTools.getXStream()
+                .toXML(results, new FileOutputStream(new File(outputDir, "all-results-step6.xml")));
+    }
 
-                for (ArgumentPairListSorter sorter : sortingAlgorithms) {
-                    Step6GraphTransitivityCleaner transitivityCleaner = new Step6GraphTransitivityCleaner(
-                            sorter, removeEqualEdgesParam);
+    /**
+     * Runs the cleaning for all files and all settings using the given number of threads
+     *
+     * @param files     input files
+     * @param outputDir output dir
+     * @param threads   number of threads
+     * @return results (file name, (setting, result))
+     * @throws Exception exception thrown by any of the runs
+     */
+    public static Map<String, Map<String, GraphCleaningResults>> collectResults(List<File> files,
+            final File outputDir, int threads)
+            throws Exception
+    {
+        ExecutorService executorService = Executors.newFixedThreadPool(threads);
+
+        // all runs in the order of submission (file, setting, future result)
+        List<String> fileNames = new ArrayList<>();
+        List<String> prefixes = new ArrayList<>();
+        List<Future<GraphCleaningResults>> futures = new ArrayList<>();
+
+        try {
+            for (final File file : files) {
+                List<Boolean> removeEqualPairsParams = Arrays.asList(true, false);
+
+                for (final Boolean removeEqualEdgesParam : removeEqualPairsParams) {
+
+                    for (ArgumentPairListSorter sorter : createSortingAlgorithms()) {
+                        final Step6GraphTransitivityCleaner transitivityCleaner = new Step6GraphTransitivityCleaner(
+                                sorter, removeEqualEdgesParam);
+
+                        final String prefix = (removeEqualEdgesParam ? "no-eq_" : "all_") + sorter
+                                .getClass().getSimpleName();
+
+                        fileNames.add(file.getName());
+                        prefixes.add(prefix);
+                        futures.add(executorService.submit(new Callable<GraphCleaningResults>()
+                        {
+                            @Override
+                            public GraphCleaningResults call()
+                                    throws Exception
+                            {
+                                return transitivityCleaner
+                                        .processSingleFile(file, outputDir, prefix,
+                                                removeEqualEdgesParam);
+                            }
+                        }));
+                    }
+                }
+            }
 
-                    String prefix = (removeEqualEdgesParam ? "no-eq_" : "all_") + sorter.getClass()
-                            .getSimpleName();
+            Map<String, Map<String, GraphCleaningResults>> results = new TreeMap<>();
 
-                    GraphCleaningResults singleResult = transitivityCleaner
-                            .processSingleFile(file, outputDir, prefix, removeEqualEdgesParam);
+            for (int i = 0; i < futures.size(); i++) {
+                if (!results.containsKey(fileNames.get(i))) {
+                    results.put(fileNames.get(i), new HashMap<String, GraphCleaningResults>());
+                }
 
-                    resultsForSingleFile.put(prefix, singleResult);
+                GraphCleaningResults singleResult;
+                try {
+                    singleResult = futures.get(i).get();
+                }
+                catch (ExecutionException e) {
+                    if (e.getCause() instanceof Exception) {
+                        throw (Exception) e.getCause();
+                    }
+                    throw e;
                 }
-            }
-        }
 
-        System.out.println(results);
+                results.get(fileNames.get(i)).put(prefixes.get(i), singleResult);
+            }
 
-        XStreamTools.getXStream()
-                .toXML(results, new FileOutputStream(new File(outputDir, "all-results-step6.xml")));
+            return results;
+        }
+        finally {
+            executorService.shutdownNow();
+        }
     }
 
     @SuppressWarnings("unchecked")
@@ -32,7 +32,6 @@ import java.util.*;
  */
 public class Step7aLearningDataProducer
 {
-    @SuppressWarnings("unchecked")
     public static void main(String[] args)
             throws IOException
     {
@@ -71,9 +70,6 @@ public class Step7aLearningDataProducer
         DescriptiveStatistics ds = new DescriptiveStatistics();
 
         for (File file : files) {
-            List<AnnotatedArgumentPair> argumentPairs = (List<AnnotatedArgumentPair>) XStreamTools
-                    .getXStream().fromXML(file);
-
             int pairsPerTopicCounter = 0;
 
             String name = file.getName().replaceAll(prefix, "").replaceAll("\\.xml", "");
@@ -82,36 +78,43 @@ public class Step7aLearningDataProducer
 
             pw.println("#id\tlabel\ta1\ta2");
 
-            for (AnnotatedArgumentPair argumentPair : argumentPairs) {
-                String goldLabel = argumentPair.getGoldLabel();
+            // pairs are processed one by one, not loading the whole file
+            try (XStreamListReader<AnnotatedArgumentPair> reader = new XStreamListReader<>(
+                    file)) {
+                while (reader.hasNext()) {
+                    AnnotatedArgumentPair argumentPair = reader.next();
 
-                if (!goldDataDistribution.containsKey(goldLabel)) {
-                    goldDataDistribution.put(goldLabel, 0);
-                }
+                    String goldLabel = argumentPair.getGoldLabel();
+
+                    if (!goldDataDistribution.containsKey(goldLabel)) {
+                        goldDataDistribution.put(goldLabel, 0);
+                    }
 
-                goldDataDistribution.put(goldLabel, goldDataDistribution.get(goldLabel) + 1);
+                    goldDataDistribution.put(goldLabel, goldDataDistribution.get(goldLabel) + 1);
 
-                pw.printf(Locale.ENGLISH, "%s\t%s\t%s\t%s%n",
-                        argumentPair.getId(), goldLabel,
-                        multipleParagraphsToSingleLine(argumentPair.getArg1().getText()),
-                        multipleParagraphsToSingleLine(argumentPair.getArg2().getText())
-                );
+                    pw.printf(Locale.ENGLISH, "%s\t%s\t%s\t%s%n",
+                            argumentPair.getId(), goldLabel,
+                            multipleParagraphsToSingleLine(argumentPair.getArg1().getText()),
+                            multipleParagraphsToSingleLine(argumentPair.getArg2().getText())
+                    );
 
-                pairsPerTopicCounter++;
+                    pairsPerTopicCounter++;
 
-                int sameInOnePair = 0;
+                    int sameInOnePair = 0;
 
-                // get gold reason statistics
-                for (AnnotatedArgumentPair.MTurkAssignment assignment : argumentPair.mTurkAssignments) {
-                    String label = assignment.getValue();
+                    // get gold reason statistics
+                    for (AnnotatedArgumentPair.MTurkAssignment assignment :
+                            argumentPair.mTurkAssignments) {
+                        String label = assignment.getValue();
 
-                    if (goldLabel.equals(label)) {
-                        sameInOnePair++;
+                        if (goldLabel.equals(label)) {
+                            sameInOnePair++;
+                        }
                     }
-                }
 
-                ds.addValue(sameInOnePair);
-                totalPairsWithReasonSameAsGold += sameInOnePair;
+                    ds.addValue(sameInOnePair);
+                    totalPairsWithReasonSameAsGold += sameInOnePair;
+                }
             }
 
             totalGoldPairsCounter += pairsPerTopicCounter;
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2016
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.tudarmstadt.ukp.experiments.argumentation.convincingness.sampling;
+
+import com.thoughtworks.xstream.XStreamException;
+import com.thoughtworks.xstream.io.HierarchicalStreamReader;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads a list serialized by {@link XStreamTools} (e.g., {@code List<AnnotatedArgumentPair>})
+ * item by item, so the whole list is never kept in memory. The reader must be closed.
+ * <p/>
+ * Usage:
+ * <pre>
+ * try (XStreamListReader&lt;AnnotatedArgumentPair&gt; reader =
+ *         new XStreamListReader&lt;&gt;(file)) {
+ *     while (reader.hasNext()) {
+ *         AnnotatedArgumentPair pair = reader.next();
+ *     }
+ * }
+ * </pre>
+ *
+ * @param <T> type of items
+ * @author Ivan Habernal
+ */
+public class XStreamListReader<T>
+        implements Iterator<T>, Closeable
+{
+    private final File file;
+
+    private final InputStream inputStream;
+
+    private final ObjectInputStream objectInputStream;
+
+    private T next;
+
+    private boolean nextRead;
+
+    private boolean finished;
+
+    /**
+     * Opens the file; items are read on demand
+     *
+     * @param file XML file with a list
+     * @throws IOException exception
+     */
+    public XStreamListReader(File file)
+            throws IOException
+    {
+        this.file = file;
+        this.inputStream = new BufferedInputStream(new FileInputStream(file));
+
+        try {
+            // the children of the root element (list) are read as a stream of objects
+            HierarchicalStreamReader reader = XStreamTools.getDriver().createReader(inputStream);
+            this.objectInputStream = XStreamTools.getXStream().createObjectInputStream(reader);
+        }
+        catch (RuntimeException e) {
+            inputStream.close();
+            throw new IOException("Cannot read " + file, e);
+        }
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+        if (!nextRead && !finished) {
+            try {
+                next = readNext();
+                nextRead = true;
+            }
+            catch (EOFException e) {
+                finished = true;
+            }
+            catch (IOException | ClassNotFoundException | XStreamException e) {
+                // also truncated or malformed XML
+                throw new IllegalStateException("Cannot read " + file, e);
+            }
+        }
+
+        return nextRead;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T readNext()
+            throws IOException, ClassNotFoundException
+    {
+        return (T) objectInputStream.readObject();
+    }
+
+    @Override
+    public T next()
+    {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        T result = next;
+        next = null;
+        nextRead = false;
+        return result;
+    }
+
+    @Override
+    public void remove()
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void close()
+            throws IOException
+    {
+        try {
+            objectInputStream.close();
+        }
+        finally {
+            inputStream.close();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2016
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.tudarmstadt.ukp.experiments.argumentation.convincingness.sampling;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes a list item by item in the same format as {@link XStreamTools#toXML(Object, File)}
+ * does for a whole {@code List}, so it can be read by {@link XStreamListReader} or at once by
+ * {@link XStreamTools#getXStream()}. The file is complete only after closing the writer.
+ *
+ * @param <T> type of items
+ * @author Ivan Habernal
+ */
+public class XStreamListWriter<T>
+        implements Closeable
+{
+    /**
+     * Root element of serialized lists
+     */
+    private static final String ROOT_NODE_NAME = "list";
+
+    private final Writer writer;
+
+    private final ObjectOutputStream objectOutputStream;
+
+    /**
+     * Creates the file (UTF-8) and writes the root element
+     *
+     * @param file output file
+     * @throws IOException exception
+     */
+    public XStreamListWriter(File file)
+            throws IOException
+    {
+        this.writer = new BufferedWriter(
+                new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8));
+
+        try {
+            this.objectOutputStream = XStreamTools.getXStream()
+                    .createObjectOutputStream(XStreamTools.getDriver().createWriter(writer),
+                            ROOT_NODE_NAME);
+        }
+        catch (RuntimeException e) {
+            writer.close();
+            throw new IOException("Cannot write " + file, e);
+        }
+    }
+
+    /**
+     * Appends an item to the list
+     *
+     * @param item item
+     * @throws IOException exception
+     */
+    public void write(T item)
+            throws IOException
+    {
+        objectOutputStream.writeObject(item);
+    }
+
+    @Override
+    public void close()
+            throws IOException
+    {
+        try {
+            // closes the root element, but not the underlying writer
+            objectOutputStream.close();
+        }
+        finally {
+            writer.close();
+        }
+    }
+}
@@ -19,19 +19,28 @@
 package de.tudarmstadt.ukp.experiments.argumentation.convincingness.sampling;
 
 import com.thoughtworks.xstream.XStream;
+import com.thoughtworks.xstream.io.HierarchicalStreamDriver;
 import com.thoughtworks.xstream.io.xml.StaxDriver;
 import de.tudarmstadt.ukp.experiments.argumentation.convincingness.createdebate.Argument;
 import de.tudarmstadt.ukp.experiments.argumentation.convincingness.createdebate.Debate;
 import org.apache.commons.io.IOUtils;
 
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
 import java.io.*;
 
 /**
+ * Shared XStream serializer of arguments, debates and argument pairs. The instance is
+ * configured once when the class is loaded and never modified afterwards, so it can be used by
+ * several threads at once.
+ *
  * @author Ivan Habernal
  */
 public class XStreamTools
 {
-    private static XStream xStream;
+    private static final ThreadLocalStaxDriver DRIVER = new ThreadLocalStaxDriver();
+
+    private static final XStream X_STREAM = createXStream(DRIVER);
 
     public static String toXML(Object object)
             throws IOException
@@ -54,19 +63,38 @@ public class XStreamTools
         return xStream.fromXML(new StringReader(xml));
     }
 
+    /**
+     * Returns the shared instance; it is thread-safe but must not be re-configured (aliases,
+     * modes, etc.)
+     *
+     * @return XStream
+     */
     public static XStream getXStream()
     {
-        if (xStream == null) {
-            xStream = new XStream(new StaxDriver());
-            xStream.alias("argument", Argument.class);
-            xStream.alias("debate", Debate.class);
-            xStream.alias("argumentPair", ArgumentPair.class);
-            xStream.alias("annotatedArgumentPair", AnnotatedArgumentPair.class);
-            xStream.alias("mTurkAssignment", AnnotatedArgumentPair.MTurkAssignment.class);
-
-            // no references for duplicate objects
-            xStream.setMode(XStream.NO_REFERENCES);
-        }
+        return X_STREAM;
+    }
+
+    /**
+     * Returns the driver of the shared instance (for streaming reading and writing)
+     *
+     * @return driver
+     */
+    static HierarchicalStreamDriver getDriver()
+    {
+        return DRIVER;
+    }
+
+    private static XStream createXStream(HierarchicalStreamDriver driver)
+    {
+        XStream xStream = new XStream(driver);
+        xStream.alias("argument", Argument.class);
+        xStream.alias("debate", Debate.class);
+        xStream.alias("argumentPair", ArgumentPair.class);
+        xStream.alias("annotatedArgumentPair", AnnotatedArgumentPair.class);
+        xStream.alias("mTurkAssignment", AnnotatedArgumentPair.MTurkAssignment.class);
+
+        // no references for duplicate objects
+        xStream.setMode(XStream.NO_REFERENCES);
 
         return xStream;
     }
@@ -78,4 +106,44 @@ public class XStreamTools
         getXStream().toXML(object, outputStream);
         IOUtils.closeQuietly(outputStream);
     }
+
+    /**
+     * StAX driver with its own StAX factories in each thread; StAX factories are not
+     * guaranteed to be thread-safe (e.g., the JDK input factory reuses its last reader)
+     */
+    private static class ThreadLocalStaxDriver
+            extends StaxDriver
+    {
+        private final ThreadLocal<XMLInputFactory> inputFactories =
+                new ThreadLocal<XMLInputFactory>()
+                {
+                    @Override
+                    protected XMLInputFactory initialValue()
+                    {
+                        return createInputFactory();
+                    }
+                };
+
+        private final ThreadLocal<XMLOutputFactory> outputFactories =
+                new ThreadLocal<XMLOutputFactory>()
+                {
+                    @Override
+                    protected XMLOutputFactory initialValue()
+                    {
+                        return createOutputFactory();
+                    }
+                };
+
+        @Override
+        public XMLInputFactory getInputFactory()
+        {
+            return inputFactories.get();
+        }
+
+        @Override
+        public XMLOutputFactory getOutputFactory()
+        {
+            return outputFactories.get();
+        }
+    }
 }
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2016
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.normalisiert.utils.graphs;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Ivan Habernal
+ */
+public class ElementaryCyclesSearchTest
+{
+    /**
+     * 0 -> 1 -> 2 -> 0, 2 -> 3 -> 0, 3 -> 3
+     */
+    private static final int[][] ADJ_LIST = new int[][] { { 1 }, { 2 }, { 0, 3 }, { 0, 3 } };
+
+    private static final Object[] NODES = new Object[] { "a", "b", "c", "d" };
+
+    @Test
+    public void testGetElementaryCycles()
+            throws Exception
+    {
+        ElementaryCyclesSearch search = new ElementaryCyclesSearch(ADJ_LIST, NODES);
+        List<List<Object>> cycles = search.getElementaryCycles();
+
+        assertEquals(3, cycles.size());
+        assertTrue(cycles.contains(Arrays.<Object>asList("a", "b", "c")));
+        assertTrue(cycles.contains(Arrays.<Object>asList("a", "b", "c", "d")));
+        assertTrue(cycles.contains(Arrays.<Object>asList("d")));
+        assertFalse(search.isStopped());
+    }
+
+    @Test
+    public void testLimits()
+            throws Exception
+    {
+        ElementaryCyclesSearch search = new ElementaryCyclesSearch(ADJ_LIST, NODES);
+        search.setMaxCycleLength(3);
+        assertEquals(2, search.getElementaryCycles().size());
+
+        search.setMaxCycles(1);
+        assertEquals(1, search.getElementaryCycles().size());
+        assertTrue(search.isStopped());
+
+        // stopped by the handler
+        search.setMaxCycles(ElementaryCyclesSearch.DEFAULT_MAX_CYCLES);
+        int found = search.search(new CycleHandler()
+        {
+            @Override
+            public boolean cycleFound(int[] cycle, int length)
+            {
+                return false;
+            }
+        });
+        assertEquals(1, found);
+        assertTrue(search.isStopped());
+    }
+}
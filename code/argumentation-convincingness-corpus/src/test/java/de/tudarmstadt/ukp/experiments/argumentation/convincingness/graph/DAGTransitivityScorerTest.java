@@ -0,0 +1,80 @@
+/*
+ * Copyright 2016
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.tudarmstadt.ukp.experiments.argumentation.convincingness.graph;
+
+import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author Ivan Habernal
+ */
+public class DAGTransitivityScorerTest
+{
+    @Test
+    public void testTransitivityScores()
+            throws Exception
+    {
+        // A -> B -> C -> D, A -> C, A -> D, X -> Y
+        ArgumentGraph graph = new ArgumentGraph();
+        int d = graph.addNode("D");
+        int c = graph.addNode("C");
+        int b = graph.addNode("B");
+        int a = graph.addNode("A");
+        int x = graph.addNode("X");
+        int y = graph.addNode("Y");
+        graph.addEdge(a, b, 1.0);
+        graph.addEdge(b, c, 1.0);
+        graph.addEdge(c, d, 1.0);
+        graph.addEdge(a, c, 1.0);
+        graph.addEdge(a, d, 1.0);
+        graph.addEdge(x, y, 1.0);
+
+        DAGTransitivityScorer scorer = new DAGTransitivityScorer(graph);
+
+        int[] shortest = scorer.computeShortestPathLengths(a);
+        int[] longest = scorer.computeLongestPathLengths(a);
+        assertEquals(1, shortest[d]);
+        assertEquals(3, longest[d]);
+        assertEquals(1, shortest[c]);
+        assertEquals(2, longest[c]);
+        assertEquals(DAGTransitivityScorer.UNREACHABLE, shortest[y]);
+        assertEquals(0, longest[a]);
+
+        // A -> C (2 / 1) and A -> D (3 / 1)
+        DescriptiveStatistics scores = scorer.computeTransitivityScores();
+        assertEquals(2, scores.getN());
+        assertEquals(2.5, scores.getMean(), 0.0001);
+        assertEquals(3.0, scores.getMax(), 0.0001);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCycle()
+            throws Exception
+    {
+        ArgumentGraph graph = new ArgumentGraph();
+        int a = graph.addNode("A");
+        int b = graph.addNode("B");
+        graph.addEdge(a, b, 1.0);
+        graph.addEdge(b, a, 1.0);
+
+        DAGTransitivityScorer.sortTopologically(graph);
+    }
+}
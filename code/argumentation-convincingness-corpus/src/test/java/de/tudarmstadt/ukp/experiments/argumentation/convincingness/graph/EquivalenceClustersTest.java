@@ -0,0 +1,75 @@
+/*
+ * Copyright 2016
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.tudarmstadt.ukp.experiments.argumentation.convincingness.graph;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * @author Ivan Habernal
+ */
+public class EquivalenceClustersTest
+{
+    @Test
+    public void testUnion()
+            throws Exception
+    {
+        EquivalenceClusters clusters = new EquivalenceClusters();
+        clusters.add("e");
+        clusters.union("c", "a");
+        clusters.union("d", "b");
+
+        SortedSet<String> cluster = clusters.getCluster("a");
+        assertEquals("a+c", clusters.getClusterName("c"));
+        assertEquals("e", clusters.getClusterName("e"));
+        assertNull(clusters.getCluster("e"));
+
+        clusters.union("a", "b");
+
+        assertEquals("a+b+c+d", clusters.getClusterName("d"));
+        assertEquals(4, clusters.getClusterSize(clusters.getIndex("c")));
+        assertEquals(1, clusters.getClusters().size());
+        assertArrayEquals(new int[] { 0, 1, 1, 1, 1 }, clusters.getClusterIds());
+
+        // previously obtained clusters do not change
+        assertEquals(new TreeSet<>(Arrays.asList("a", "c")), cluster);
+    }
+
+    @Test
+    public void testCopy()
+            throws Exception
+    {
+        EquivalenceClusters clusters = new EquivalenceClusters();
+        clusters.union("a", "b");
+
+        EquivalenceClusters copy = clusters.copy();
+        copy.union("b", "c");
+
+        assertEquals("a+b", clusters.getClusterName("a"));
+        assertEquals(-1, clusters.getIndex("c"));
+        assertEquals("a+b+c", copy.getClusterName("a"));
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2016
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.tudarmstadt.ukp.experiments.argumentation.convincingness.graph;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Ivan Habernal
+ */
+public class IncrementalCycleDetectorTest
+{
+    @Test
+    public void testCycleDetection()
+            throws Exception
+    {
+        IncrementalCycleDetector detector = new IncrementalCycleDetector();
+        int a = detector.addNode();
+        int b = detector.addNode();
+        int c = detector.addNode();
+        int d = detector.addNode();
+
+        // edges against the initial order force re-ordering: d -> c -> b -> a
+        detector.addEdge(d, c);
+        detector.addEdge(c, b);
+        detector.addEdge(b, a);
+
+        assertTrue(detector.wouldCreateCycle(a, d));
+        assertTrue(detector.wouldCreateCycle(b, c));
+        assertTrue(detector.wouldCreateCycle(a, a));
+        assertFalse(detector.wouldCreateCycle(d, a));
+
+        int[] order = detector.getTopologicalOrder();
+        assertEquals(4, order.length);
+        assertEquals(d, order[0]);
+        assertEquals(c, order[1]);
+        assertEquals(b, order[2]);
+        assertEquals(a, order[3]);
+    }
+
+    @Test
+    public void testMergeNodes()
+            throws Exception
+    {
+        IncrementalCycleDetector detector = new IncrementalCycleDetector();
+        int a = detector.addNode();
+        int b = detector.addNode();
+        int c = detector.addNode();
+        int d = detector.addNode();
+
+        detector.addEdge(a, b);
+        detector.addEdge(c, d);
+
+        // a -> b -> ... -> a
+        assertTrue(detector.wouldCreateCycleByMerging(a, b));
+        assertFalse(detector.wouldCreateCycleByMerging(b, c));
+
+        // b+c, so a -> b+c -> d
+        detector.mergeNodes(b, c);
+        assertEquals(2, detector.getEdgeCount());
+        assertTrue(detector.isReachable(a, d));
+        assertTrue(detector.wouldCreateCycle(d, a));
+        assertEquals(3, detector.getTopologicalOrder().length);
+    }
+}
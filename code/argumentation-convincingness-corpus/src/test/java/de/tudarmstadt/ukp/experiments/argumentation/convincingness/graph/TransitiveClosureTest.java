@@ -0,0 +1,72 @@
+/*
+ * Copyright 2016
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.tudarmstadt.ukp.experiments.argumentation.convincingness.graph;
+
+import de.tudarmstadt.ukp.experiments.argumentation.convincingness.createdebate.Argument;
+import de.tudarmstadt.ukp.experiments.argumentation.convincingness.sampling.GeneratedArgumentPair;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Ivan Habernal
+ */
+public class TransitiveClosureTest
+{
+    @Test
+    public void testCreateGeneratedArgumentPairs()
+            throws Exception
+    {
+        // A -> B -> C, D
+        ArgumentGraph graph = new ArgumentGraph();
+        Map<String, Argument> arguments = new HashMap<>();
+        for (String id : new String[] { "A", "B", "C", "D" }) {
+            graph.addNode(id);
+            Argument argument = new Argument();
+            argument.setId(id);
+            arguments.put(id, argument);
+        }
+        graph.addEdge(graph.getNodeIndex("B"), graph.getNodeIndex("C"), 1.0);
+        graph.addEdge(graph.getNodeIndex("A"), graph.getNodeIndex("B"), 1.0);
+
+        TransitiveClosure closure = new TransitiveClosure(graph);
+        assertTrue(closure.isReachable(graph.getNodeIndex("A"), graph.getNodeIndex("C")));
+        assertFalse(closure.isReachable(graph.getNodeIndex("C"), graph.getNodeIndex("A")));
+        assertFalse(closure.isReachable(graph.getNodeIndex("A"), graph.getNodeIndex("D")));
+        assertEquals(3, closure.getPairCount());
+
+        Set<GeneratedArgumentPair> pairs = closure.createGeneratedArgumentPairs(arguments);
+        assertEquals(6, pairs.size());
+
+        int a1Count = 0;
+        for (GeneratedArgumentPair pair : pairs) {
+            if ("a1".equals(pair.getGoldLabel())) {
+                a1Count++;
+                assertTrue(pair.getArg1().getId().compareTo(pair.getArg2().getId()) < 0);
+            }
+        }
+        assertEquals(3, a1Count);
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2016
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.tudarmstadt.ukp.experiments.argumentation.convincingness.mace;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Ivan Habernal
+ */
+public class MACETest
+{
+    private static final String[] LABELS = new String[] { "a1", "a2", "equal" };
+
+    /**
+     * Four reliable annotators (each one errs on every 10th instance) and a spammer who always
+     * says "a1"
+     */
+    private static String createCSV()
+    {
+        StringBuilder sb = new StringBuilder();
+        for (int d = 0; d < 200; d++) {
+            String gold = LABELS[d % 3];
+            for (int a = 0; a < 4; a++) {
+                sb.append((d + a) % 10 == 0 ? LABELS[(d + 1) % 3] : gold).append(",");
+            }
+            sb.append("a1\n");
+        }
+        return sb.toString();
+    }
+
+    private static InputStream toStream(String csv)
+    {
+        return new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testReadFileData()
+            throws Exception
+    {
+        AnnotationMatrix matrix = MACE.readFileData(toStream("a1,,a2\r\n,,\nequal,a1,"));
+
+        assertEquals(3, matrix.getNumInstances());
+        assertEquals(3, matrix.getNumAnnotators());
+        assertEquals(3, matrix.getNumLabels());
+        assertArrayEquals(new int[] { 0, 2, 2, 4 }, matrix.getInstanceOffsets());
+        assertArrayEquals(new int[] { 0, 2, 0, 1 }, matrix.getAnnotators());
+        assertArrayEquals(new int[] { 0, 1, 2, 0 }, matrix.getLabels());
+    }
+
+    @Test
+    public void testEstimate()
+            throws Exception
+    {
+        AnnotationMatrix matrix = MACE.readFileData(toStream(createCSV()));
+
+        MACE mace = new MACE(matrix);
+        mace.setSeed(1);
+        MACEResult result = mace.estimate(50, 3, 1.0);
+
+        assertEquals(200, result.getLabels().length);
+        assertEquals(200, result.getEntropies().length);
+        assertEquals(5, result.getCompetences().length);
+
+        for (int d = 0; d < 200; d++) {
+            assertEquals(LABELS[d % 3], result.getLabelName(d));
+        }
+
+        for (int a = 0; a < 4; a++) {
+            assertTrue(result.getCompetences()[a] > result.getCompetences()[4]);
+        }
+
+        // the same model on the same data with the same seed gives the same results
+        MACE other = new MACE(matrix);
+        other.setSeed(1);
+        other.setThreads(2);
+        other.setEStepThreads(3);
+        MACEResult otherResult = other.estimate(50, 3, 1.0);
+        assertArrayEquals(result.getLabels(), otherResult.getLabels());
+        assertArrayEquals(result.getCompetences(), otherResult.getCompetences(), 1e-12);
+    }
+
+    @Test
+    public void testEarlyStopping()
+            throws Exception
+    {
+        AnnotationMatrix matrix = MACE.readFileData(toStream(createCSV()));
+
+        MACE mace = new MACE(matrix);
+        mace.setSeed(1);
+        mace.setTolerance(1e-6);
+        mace.setPatience(3);
+        MACEResult result = mace.estimate(1000, 3, 1.0);
+
+        assertEquals(3, result.getIterationsPerRestart().length);
+        for (int iterations : result.getIterationsPerRestart()) {
+            assertTrue(iterations >= 3);
+            assertTrue(iterations < 1000);
+        }
+
+        for (int d = 0; d < 200; d++) {
+            assertEquals(LABELS[d % 3], result.getLabelName(d));
+        }
+    }
+
+    @Test
+    public void testWarmStart()
+            throws Exception
+    {
+        AnnotationMatrix matrix = MACE.readFileData(toStream(createCSV()));
+
+        MACE mace = new MACE(matrix);
+        mace.setSeed(1);
+        mace.estimate(50, 3, 1.0);
+
+        File modelFile = File.createTempFile("mace", ".tsv");
+        modelFile.deleteOnExit();
+        mace.getModel().write(modelFile);
+        MACEModel model = MACEModel.read(modelFile);
+        assertArrayEquals(mace.getCompetences(), new double[] { model.getThetas()[1],
+                model.getThetas()[3], model.getThetas()[5], model.getThetas()[7],
+                model.getThetas()[9] }, 0.0);
+
+        // the spammer is frozen
+        MACE warm = new MACE(matrix);
+        warm.runWarmStart(model, warm.getAnnotatorIndexIds(),
+                new boolean[] { false, false, false, false, true }, 5,
+                warm.getDefaultSmoothing(), MACE.DEFAULT_ALPHA, MACE.DEFAULT_BETA, false, null);
+        MACEResult result = warm.getResult(1.0);
+
+        assertArrayEquals(new int[] { 5 }, result.getIterationsPerRestart());
+        assertEquals(model.getThetas()[9], result.getCompetences()[4], 1e-12);
+        for (int d = 0; d < 200; d++) {
+            assertEquals(LABELS[d % 3], result.getLabelName(d));
+        }
+    }
+}
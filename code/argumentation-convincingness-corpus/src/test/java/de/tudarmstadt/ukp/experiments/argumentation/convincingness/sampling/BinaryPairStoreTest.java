@@ -0,0 +1,175 @@
+/*
+ * Copyright 2016
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.tudarmstadt.ukp.experiments.argumentation.convincingness.sampling;
+
+import de.tudarmstadt.ukp.experiments.argumentation.convincingness.createdebate.Argument;
+import de.tudarmstadt.ukp.experiments.argumentation.convincingness.createdebate.DebateMetaData;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+
+/**
+ * @author Ivan Habernal
+ */
+public class BinaryPairStoreTest
+{
+    private static Argument createArgument(String id, Integer voteUpCount)
+    {
+        Argument result = new Argument();
+        result.setId(id);
+        result.setAuthor("author");
+        result.setStance("Yes, it is “good”");
+        result.setText("Text of " + id + "\nwith a new line");
+        result.setVoteUpCount(voteUpCount);
+        result.setVoteDownCount(2);
+        result.setTimestamp(voteUpCount != null ? new Date(1234567890000L) : null);
+        // parent ID and HTML are null
+        return result;
+    }
+
+    private static AnnotatedArgumentPair.MTurkAssignment createAssignment(String turkID,
+            boolean complete)
+    {
+        AnnotatedArgumentPair.MTurkAssignment result = new AnnotatedArgumentPair.MTurkAssignment();
+        result.setTurkID(turkID);
+        result.setHitID("hit");
+        result.setAssignmentId("assignment-" + turkID);
+        result.setValue("a1");
+        result.setReason("because");
+        result.setAssignmentAcceptTime(new Date(1000L));
+        result.setAssignmentSubmitTime(new Date(2000L));
+        if (complete) {
+            result.setHitComment("comment");
+            result.setWorkerStance("yes");
+            result.setTurkRank(3);
+            result.setTurkCompetence(0.75);
+        }
+        return result;
+    }
+
+    private static List<AnnotatedArgumentPair> createPairs()
+    {
+        DebateMetaData debate = new DebateMetaData();
+        debate.setTitle("Debate");
+        debate.setUrl("http://example.com");
+
+        Argument shared = createArgument("arg1", 5);
+
+        List<AnnotatedArgumentPair> result = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            AnnotatedArgumentPair pair = new AnnotatedArgumentPair();
+            pair.setArg1(shared);
+            pair.setArg2(createArgument("arg" + (i + 2), i == 0 ? null : i));
+            pair.setId("arg1_arg" + (i + 2));
+            pair.setDebateMetaData(i < 2 ? debate : null);
+            if (i > 0) {
+                pair.setGoldLabel("a1");
+            }
+            for (int j = 0; j < i + 1; j++) {
+                pair.mTurkAssignments.add(createAssignment("turk" + j, j % 2 == 0));
+            }
+            result.add(pair);
+        }
+        return result;
+    }
+
+    private static String toString(AnnotatedArgumentPair pair)
+    {
+        return pair.getId() + pair.getArg1() + pair.getArg2() + pair.getDebateMetaData() + pair;
+    }
+
+    @Test
+    public void testWriteRead()
+            throws Exception
+    {
+        List<AnnotatedArgumentPair> pairs = createPairs();
+
+        File file = File.createTempFile("pairs", ".bin");
+        file.deleteOnExit();
+        BinaryPairStoreWriter.write(pairs, file);
+
+        BinaryPairStoreReader reader = new BinaryPairStoreReader(file);
+        assertEquals(3, reader.getPairCount());
+        // the shared argument is stored only once
+        assertEquals(4, reader.getArgumentCount());
+
+        List<AnnotatedArgumentPair> read = reader.readAll();
+        assertEquals(pairs.size(), read.size());
+        for (int i = 0; i < pairs.size(); i++) {
+            assertEquals(toString(pairs.get(i)), toString(read.get(i)));
+        }
+        // each pair has its own copy of the shared argument
+        assertNotSame(read.get(0).getArg1(), read.get(2).getArg1());
+        read.get(0).getArg1().setText("changed");
+        assertEquals(pairs.get(2).getArg1().getText(), read.get(2).getArg1().getText());
+
+        // random access
+        assertEquals(toString(pairs.get(2)), toString(reader.getPair(2)));
+    }
+
+    @Test
+    public void testConcurrentRead()
+            throws Exception
+    {
+        final List<AnnotatedArgumentPair> pairs = createPairs();
+
+        File file = File.createTempFile("pairs", ".bin");
+        file.deleteOnExit();
+        BinaryPairStoreWriter.write(pairs, file);
+
+        final BinaryPairStoreReader reader = new BinaryPairStoreReader(file);
+
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<List<AnnotatedArgumentPair>>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executorService.submit(new Callable<List<AnnotatedArgumentPair>>()
+                {
+                    @Override
+                    public List<AnnotatedArgumentPair> call()
+                            throws Exception
+                    {
+                        return reader.readAll();
+                    }
+                }));
+            }
+
+            for (Future<List<AnnotatedArgumentPair>> future : futures) {
+                List<AnnotatedArgumentPair> read = future.get();
+                for (int i = 0; i < pairs.size(); i++) {
+                    assertEquals(toString(pairs.get(i)), toString(read.get(i)));
+                }
+            }
+        }
+        finally {
+            executorService.shutdown();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2016
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.tudarmstadt.ukp.experiments.argumentation.convincingness.sampling;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Ivan Habernal
+ */
+public class MTurkOutputReaderTest
+{
+    private static File createFile(String content)
+            throws Exception
+    {
+        File file = File.createTempFile("mturk", ".csv");
+        file.deleteOnExit();
+        FileUtils.writeStringToFile(file, content, "utf-8");
+        return file;
+    }
+
+    @Test
+    public void testRead()
+            throws Exception
+    {
+        File file1 = createFile(
+                "\"hitid\"\t\"hittypeid\"\t\"workerid\"\t\"assignmentstatus\"\t"
+                        + "\"Answer.p1\"\t\"Answer.p1_reason\"\n"
+                        // a cell over two lines (joined without a space)
+                        + "\"h1\"\t\"t1\"\t\"w1\"\t\"Approved\"\t\"p1_a1\"\t\"a good re\n"
+                        + "ason \"\"x\"\"\"\n"
+                        + "\"h1\"\t\"t1\"\t\"w2\"\t\"Rejected\"\t\"p1_a2\"\t\"\"\n"
+                        + "\"h2\"\t\"t1\"\t\"w1\"\t\"Submitted\"\t\"p1_a2\"\t\"x\"\n");
+        // different order of columns
+        File file2 = createFile(
+                "\"hittypeid\"\t\"hitid\"\t\"Answer.p2\"\t\"workerid\"\t\"assignmentstatus\"\n"
+                        + "\"t2\"\t\"h3\"\t\"p2_equal\"\t\"w1\"\t\"Approved\"\n");
+
+        MTurkOutputReader reader = new MTurkOutputReader(file1, file2);
+
+        // the submitted (not reviewed) assignment is skipped
+        assertEquals(3, reader.size());
+        assertEquals("t1", reader.getHitTypeIdForFile().get(file1));
+        assertEquals("t2", reader.getHitTypeIdForFile().get(file2));
+        assertTrue(reader.getColumnNames().contains("Answer.p2"));
+
+        Map<String, String> first = reader.iterator().next();
+        assertEquals("a good reason \"x\"", first.get("Answer.p1_reason"));
+        assertEquals("p1_a1", first.get("Answer.p1"));
+        assertFalse(first.containsKey("Answer.p2"));
+        assertNull(first.get("unknown"));
+        assertEquals(6, first.size());
+
+        // empty cells are missing
+        List<Map<String, String>> hit1 = reader.getRecordsByHitId("h1");
+        assertEquals(2, hit1.size());
+        assertFalse(hit1.get(1).containsKey("Answer.p1_reason"));
+
+        List<Map<String, String>> worker1 = reader.getRecordsByWorkerId("w1");
+        assertEquals(2, worker1.size());
+        assertEquals("h3", worker1.get(1).get("hitid"));
+
+        assertEquals(2, reader.getRecordsWithColumn("Answer.p1").size());
+        assertEquals("p2_equal", reader.getRecordsWithColumn("Answer.p2").get(0).get("Answer.p2"));
+        assertTrue(reader.getRecordsWithColumn("Answer.p3").isEmpty());
+    }
+}
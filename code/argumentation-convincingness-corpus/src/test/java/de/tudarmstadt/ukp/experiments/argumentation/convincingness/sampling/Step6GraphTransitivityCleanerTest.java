@@ -18,10 +18,14 @@
 
 package de.tudarmstadt.ukp.experiments.argumentation.convincingness.sampling;
 
+import de.tudarmstadt.ukp.experiments.argumentation.convincingness.createdebate.Argument;
+import de.tudarmstadt.ukp.experiments.argumentation.convincingness.graph.ArgumentGraph;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import static org.junit.Assert.assertEquals;
@@ -31,6 +35,77 @@ import static org.junit.Assert.assertEquals;
  */
 public class Step6GraphTransitivityCleanerTest
 {
+    static AnnotatedArgumentPair createPair(String arg1Id, String arg2Id, String goldLabel)
+    {
+        Argument arg1 = new Argument();
+        arg1.setId(arg1Id);
+        Argument arg2 = new Argument();
+        arg2.setId(arg2Id);
+
+        AnnotatedArgumentPair result = new AnnotatedArgumentPair();
+        result.setId(arg1Id + "_" + arg2Id);
+        result.setArg1(arg1);
+        result.setArg2(arg2);
+        result.setGoldLabel(goldLabel);
+
+        AnnotatedArgumentPair.MTurkAssignment assignment = new AnnotatedArgumentPair.MTurkAssignment();
+        assignment.setValue(goldLabel);
+        assignment.setTurkCompetence(0.5);
+        result.getmTurkAssignments().add(assignment);
+
+        return result;
+    }
+
+    @Test
+    public void testBuildGraphFromArgumentPairs()
+            throws Exception
+    {
+        List<AnnotatedArgumentPair> pairs = new ArrayList<>();
+        pairs.add(createPair("1", "2", "a1"));
+        pairs.add(createPair("3", "2", "a2"));
+        pairs.add(createPair("3", "4", "equal"));
+        pairs.add(createPair("4", "5", "a1"));
+        // duplicate edge
+        pairs.add(createPair("2", "1", "a2"));
+
+        ArgumentGraph graph = Step6GraphTransitivityCleaner.buildGraphFromArgumentPairs(pairs);
+
+        // 1 -> 2 -> 3+4 -> 5
+        assertEquals(4, graph.getNodeCount());
+        assertEquals(3, graph.getEdgeCount());
+
+        int node1 = graph.getNodeIndex("1");
+        int node2 = graph.getNodeIndex("2");
+        int node5 = graph.getNodeIndex("5");
+
+        assertEquals(1, graph.getOutDegree(node1));
+        assertEquals(node2, graph.getSuccessor(node1, 0));
+        assertEquals(1, graph.getInDegree(node2));
+        assertEquals(graph.getSuccessor(node2, 0), graph.getPredecessor(node5, 0));
+        assertEquals(1, graph.getInDegree(node5));
+        assertEquals(new HashSet<>(Arrays.asList("3", "4")),
+                graph.getClusteredArguments(graph.getPredecessor(node5, 0)));
+    }
+
+    @Test
+    public void testComputeEdgeWeight()
+            throws Exception
+    {
+        AnnotatedArgumentPair pair = createPair("1", "2", "a1");
+        double lambda = Step6GraphTransitivityCleaner.LAMBDA_PENALTY;
+
+        double weight = Step6GraphTransitivityCleaner.computeEdgeWeight(pair, lambda);
+        assertEquals(1.0 / (1.0 + Math.exp(-0.5)), weight, 1e-9);
+
+        // the weight reflects changed competences and gold label immediately
+        pair.getmTurkAssignments().get(0).setTurkCompetence(1.0);
+        assertEquals(1.0 / (1.0 + Math.exp(-1.0)),
+                Step6GraphTransitivityCleaner.computeEdgeWeight(pair, lambda), 1e-9);
+
+        pair.setGoldLabel("a2");
+        assertEquals(1.0 / (1.0 + Math.exp(10.0)),
+                Step6GraphTransitivityCleaner.computeEdgeWeight(pair, lambda), 1e-9);
+    }
 
     @Test
     public void testMergeClusters()
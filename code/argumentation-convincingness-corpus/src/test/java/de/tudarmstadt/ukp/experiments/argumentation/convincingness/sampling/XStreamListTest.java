@@ -0,0 +1,165 @@
+/*
+ * Copyright 2016
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.tudarmstadt.ukp.experiments.argumentation.convincingness.sampling;
+
+import de.tudarmstadt.ukp.experiments.argumentation.convincingness.createdebate.Argument;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ivan Habernal
+ */
+public class XStreamListTest
+{
+    private static List<AnnotatedArgumentPair> createPairs(int count)
+    {
+        List<AnnotatedArgumentPair> result = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Argument arg1 = new Argument();
+            arg1.setId("arg" + i);
+            arg1.setText("Text of “argument” " + i + "\nwith a new line");
+            Argument arg2 = new Argument();
+            arg2.setId("arg" + (i + 1));
+            arg2.setText("Text of argument " + (i + 1));
+
+            AnnotatedArgumentPair pair = new AnnotatedArgumentPair();
+            pair.setId(arg1.getId() + "_" + arg2.getId());
+            pair.setArg1(arg1);
+            pair.setArg2(arg2);
+            pair.setGoldLabel("a1");
+
+            AnnotatedArgumentPair.MTurkAssignment assignment =
+                    new AnnotatedArgumentPair.MTurkAssignment();
+            assignment.setTurkID("turk" + i);
+            assignment.setValue("a1");
+            assignment.setReason("because");
+            pair.mTurkAssignments.add(assignment);
+
+            result.add(pair);
+        }
+        return result;
+    }
+
+    private static File write(List<AnnotatedArgumentPair> pairs)
+            throws Exception
+    {
+        File file = File.createTempFile("pairs", ".xml");
+        file.deleteOnExit();
+
+        try (XStreamListWriter<AnnotatedArgumentPair> writer = new XStreamListWriter<>(file)) {
+            for (AnnotatedArgumentPair pair : pairs) {
+                writer.write(pair);
+            }
+        }
+
+        return file;
+    }
+
+    private static List<AnnotatedArgumentPair> read(File file)
+            throws Exception
+    {
+        List<AnnotatedArgumentPair> result = new ArrayList<>();
+        try (XStreamListReader<AnnotatedArgumentPair> reader = new XStreamListReader<>(file)) {
+            while (reader.hasNext()) {
+                result.add(reader.next());
+            }
+        }
+        return result;
+    }
+
+    private static void assertSamePairs(List<AnnotatedArgumentPair> expected,
+            List<?> actual)
+            throws Exception
+    {
+        // compared by their serialized form
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(XStreamTools.toXML(expected.get(i)), XStreamTools.toXML(actual.get(i)));
+        }
+    }
+
+    @Test
+    public void testWriteRead()
+            throws Exception
+    {
+        List<AnnotatedArgumentPair> pairs = createPairs(5);
+        File file = write(pairs);
+
+        assertSamePairs(pairs, read(file));
+        // the same format as a whole serialized list
+        assertSamePairs(pairs, (List<?>) XStreamTools.getXStream().fromXML(file));
+    }
+
+    @Test
+    public void testEmpty()
+            throws Exception
+    {
+        File file = write(new ArrayList<AnnotatedArgumentPair>());
+
+        assertTrue(read(file).isEmpty());
+        assertTrue(((List<?>) XStreamTools.getXStream().fromXML(file)).isEmpty());
+    }
+
+    @Test
+    public void testTruncated()
+            throws Exception
+    {
+        File file = write(createPairs(3));
+
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        randomAccessFile.setLength(randomAccessFile.length() * 2 / 3);
+        randomAccessFile.close();
+
+        try (XStreamListReader<AnnotatedArgumentPair> reader = new XStreamListReader<>(file)) {
+            // complete pairs are read, the truncated one fails
+            assertTrue(reader.hasNext());
+            while (reader.hasNext()) {
+                reader.next();
+            }
+            fail("Truncated file read");
+        }
+        catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testMalformed()
+            throws Exception
+    {
+        File file = File.createTempFile("pairs", ".xml");
+        file.deleteOnExit();
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        randomAccessFile.write("<list><no-such-class>".getBytes("utf-8"));
+        randomAccessFile.close();
+
+        try (XStreamListReader<AnnotatedArgumentPair> reader = new XStreamListReader<>(file)) {
+            assertFalse(reader.hasNext());
+        }
+    }
+}
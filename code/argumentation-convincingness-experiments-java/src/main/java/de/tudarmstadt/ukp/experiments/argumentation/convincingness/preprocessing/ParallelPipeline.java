@@ -0,0 +1,263 @@
+/*
+ * Copyright 2016
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.tudarmstadt.ukp.experiments.argumentation.convincingness.preprocessing;
+
+import org.apache.uima.UIMAException;
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.analysis_engine.AnalysisEngineDescription;
+import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.collection.CollectionReader;
+import org.apache.uima.collection.CollectionReaderDescription;
+import org.apache.uima.fit.factory.AnalysisEngineFactory;
+import org.apache.uima.fit.factory.CollectionReaderFactory;
+import org.apache.uima.resource.metadata.ResourceMetaData;
+import org.apache.uima.util.CasCreationUtils;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Multi-threaded replacement of {@link org.apache.uima.fit.pipeline.SimplePipeline}. The
+ * collection reader and the writer run on the calling thread, the analysis runs on a fixed
+ * number of threads, each with its own replica of the analysis engine. Documents are read into
+ * a pool of CASes (two per thread), so reading and writing overlap with the analysis and the
+ * memory stays bounded.
+ * <p/>
+ * In the ordered mode, documents are passed to the writer in the order of the reader; otherwise
+ * in the order they are finished (a long document does not block the others).
+ *
+ * @author Ivan Habernal
+ */
+public class ParallelPipeline
+{
+    /**
+     * How long to wait for the analysis threads after a failure before the engines are destroyed
+     */
+    private static final long TERMINATION_TIMEOUT_SECONDS = 60;
+
+    private final int threads;
+
+    private final boolean ordered;
+
+    /**
+     * Creates a new pipeline
+     *
+     * @param threads number of analysis threads (and engine replicas)
+     * @param ordered whether documents are written in the order of the reader
+     */
+    public ParallelPipeline(int threads, boolean ordered)
+    {
+        if (threads < 1) {
+            throw new IllegalArgumentException("At least one thread required, was " + threads);
+        }
+
+        this.threads = threads;
+        this.ordered = ordered;
+    }
+
+    /**
+     * Reads all documents, processes them with the analysis engine and passes them to the writer
+     *
+     * @param readerDescription   collection reader
+     * @param analysisDescription analysis engine (instantiated once per thread)
+     * @param writerDescription   writer (or any other consumer, instantiated once)
+     * @throws UIMAException if any component fails
+     * @throws IOException   if reading fails
+     */
+    public void run(CollectionReaderDescription readerDescription,
+            AnalysisEngineDescription analysisDescription,
+            AnalysisEngineDescription writerDescription)
+            throws UIMAException, IOException
+    {
+        CollectionReader reader = CollectionReaderFactory.createReader(readerDescription);
+        List<AnalysisEngine> engines = new ArrayList<AnalysisEngine>(threads);
+        AnalysisEngine writer = null;
+        ExecutorService executorService = Executors.newFixedThreadPool(threads);
+
+        try {
+            for (int i = 0; i < threads; i++) {
+                engines.add(AnalysisEngineFactory.createEngine(analysisDescription));
+            }
+            writer = AnalysisEngineFactory.createEngine(writerDescription);
+
+            BlockingQueue<CAS> freeCases = createCasPool(reader, engines.get(0), writer);
+            final BlockingQueue<AnalysisEngine> freeEngines =
+                    new ArrayBlockingQueue<AnalysisEngine>(threads, false, engines);
+
+            CompletionService<CAS> completionService = new ExecutorCompletionService<CAS>(
+                    executorService);
+            // submitted and not yet written, in the order of submission
+            Deque<Future<CAS>> pending = new ArrayDeque<Future<CAS>>();
+
+            while (reader.hasNext()) {
+                CAS cas = freeCases.poll();
+                if (cas == null) {
+                    // all CASes in use; wait for one to be processed
+                    cas = writeNext(pending, completionService, writer);
+                }
+
+                reader.getNext(cas);
+
+                final CAS submitted = cas;
+                Callable<CAS> task = new Callable<CAS>()
+                {
+                    @Override
+                    public CAS call()
+                            throws Exception
+                    {
+                        AnalysisEngine engine = freeEngines.take();
+                        try {
+                            engine.process(submitted);
+                        }
+                        finally {
+                            freeEngines.put(engine);
+                        }
+                        return submitted;
+                    }
+                };
+
+                pending.add(ordered ?
+                        executorService.submit(task) :
+                        completionService.submit(task));
+            }
+
+            while (!pending.isEmpty()) {
+                writeNext(pending, completionService, writer);
+            }
+
+            for (AnalysisEngine engine : engines) {
+                engine.collectionProcessComplete();
+            }
+            writer.collectionProcessComplete();
+        }
+        finally {
+            executorService.shutdownNow();
+
+            // after a failure, other threads may still be processing documents with the engines
+            boolean terminated = awaitTermination(executorService);
+
+            if (terminated) {
+                for (AnalysisEngine engine : engines) {
+                    engine.destroy();
+                }
+            }
+            else {
+                System.err.println("Analysis threads did not finish within "
+                        + TERMINATION_TIMEOUT_SECONDS + " s; engines are not destroyed");
+            }
+            if (writer != null) {
+                writer.destroy();
+            }
+            reader.close();
+            reader.destroy();
+        }
+    }
+
+    private static boolean awaitTermination(ExecutorService executorService)
+    {
+        try {
+            return executorService
+                    .awaitTermination(TERMINATION_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * All CASes share the same type system, so the engines do not re-initialize on each document
+     */
+    private BlockingQueue<CAS> createCasPool(CollectionReader reader, AnalysisEngine engine,
+            AnalysisEngine writer)
+            throws UIMAException
+    {
+        List<ResourceMetaData> metaData = new ArrayList<ResourceMetaData>();
+        metaData.add(reader.getMetaData());
+        metaData.add(engine.getMetaData());
+        metaData.add(writer.getMetaData());
+
+        int size = threads * 2;
+        BlockingQueue<CAS> result = new ArrayBlockingQueue<CAS>(size);
+
+        CAS first = CasCreationUtils.createCas(metaData);
+        reader.typeSystemInit(first.getTypeSystem());
+        result.add(first);
+
+        for (int i = 1; i < size; i++) {
+            result.add(CasCreationUtils.createCas(metaData, first.getTypeSystem(), null));
+        }
+
+        return result;
+    }
+
+    /**
+     * Waits for the next processed CAS (the oldest one in the ordered mode, otherwise the first
+     * finished one), writes it and resets it
+     *
+     * @return the empty CAS
+     */
+    private CAS writeNext(Deque<Future<CAS>> pending, CompletionService<CAS> completionService,
+            AnalysisEngine writer)
+            throws AnalysisEngineProcessException
+    {
+        CAS cas;
+        try {
+            Future<CAS> future;
+            if (ordered) {
+                future = pending.removeFirst();
+            }
+            else {
+                future = completionService.take();
+                pending.remove(future);
+            }
+
+            cas = future.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AnalysisEngineProcessException(e);
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof AnalysisEngineProcessException) {
+                throw (AnalysisEngineProcessException) e.getCause();
+            }
+            throw new AnalysisEngineProcessException(e.getCause());
+        }
+
+        writer.process(cas);
+        cas.reset();
+
+        return cas;
+    }
+}
@@ -27,6 +27,7 @@ import de.tudarmstadt.ukp.experiments.argumentation.convincingness.io.ArgumentPa
 import de.tudarmstadt.ukp.experiments.argumentation.convincingness.io.RankedArgumentReader;
 import org.apache.uima.UIMAException;
 import org.apache.uima.analysis_engine.AnalysisEngineDescription;
+import org.apache.uima.collection.CollectionReaderDescription;
 import org.apache.uima.fit.factory.AnalysisEngineFactory;
 import org.apache.uima.fit.factory.CollectionReaderFactory;
 import org.apache.uima.fit.pipeline.SimplePipeline;
@@ -39,7 +40,11 @@ import java.io.IOException;
  */
 public class Pipeline
 {
-    private static AnalysisEngineDescription createPipeline(String outDir)
+    /**
+     * Segmentation, lemmatization, POS tagging, parsing and NER (without the writer); models
+     * are shared by all instances, so parallel replicas do not multiply the memory
+     */
+    private static AnalysisEngineDescription createAnalysis()
             throws ResourceInitializationException
     {
         return AnalysisEngineFactory.createEngineDescription(
@@ -58,28 +63,61 @@ public class Pipeline
                         StanfordLemmatizer.class
                 ),
                 AnalysisEngineFactory.createEngineDescription(
-                        StanfordPosTagger.class
+                        SharedStanfordPosTagger.class
                 ),
                 AnalysisEngineFactory.createEngineDescription(
-                        StanfordParser.class
+                        SharedStanfordParser.class
                 ),
                 AnalysisEngineFactory.createEngineDescription(
-                        StanfordNamedEntityRecognizer.class
-                ),
-                AnalysisEngineFactory.createEngineDescription(
-                        BinaryCasWriter.class,
-                        BinaryCasWriter.PARAM_TARGET_LOCATION,
-                        outDir,
-                        BinaryCasWriter.PARAM_COMPRESSION,
-                        CompressionMethod.BZIP2
+                        SharedStanfordNamedEntityRecognizer.class
                 )
         );
     }
 
+    private static AnalysisEngineDescription createWriter(String outDir)
+            throws ResourceInitializationException
+    {
+        return AnalysisEngineFactory.createEngineDescription(
+                BinaryCasWriter.class,
+                BinaryCasWriter.PARAM_TARGET_LOCATION,
+                outDir,
+                BinaryCasWriter.PARAM_COMPRESSION,
+                CompressionMethod.BZIP2
+        );
+    }
+
+    /**
+     * Runs the pipeline; with a single thread using {@link SimplePipeline}
+     *
+     * @param reader  reader
+     * @param outDir  output directory
+     * @param threads number of analysis threads
+     * @param ordered whether documents are written in the order of the reader
+     */
+    private static void runPipeline(CollectionReaderDescription reader, String outDir,
+            int threads, boolean ordered)
+            throws IOException, UIMAException
+    {
+        if (threads == 1) {
+            SimplePipeline.runPipeline(reader, createAnalysis(), createWriter(outDir));
+        }
+        else {
+            new ParallelPipeline(threads, ordered)
+                    .run(reader, createAnalysis(), createWriter(outDir));
+        }
+    }
+
     public static void processDataPairs(String inputDir, String outputDir)
             throws IOException, UIMAException
     {
-        SimplePipeline.runPipeline(
+        processDataPairs(inputDir, outputDir, 1, true);
+    }
+
+    public static void processDataPairs(String inputDir, String outputDir, int threads,
+            boolean ordered)
+            throws IOException, UIMAException
+    {
+        runPipeline(
                 CollectionReaderFactory.createReaderDescription(
                         ArgumentPairReader.class,
                         ArgumentPairReader.PARAM_SOURCE_LOCATION,
@@ -87,14 +125,21 @@ public class Pipeline
                         ArgumentPairReader.PARAM_PATTERNS,
                         ArgumentPairReader.INCLUDE_PREFIX + "*.csv"
                 ),
-                createPipeline(outputDir)
+                outputDir, threads, ordered
         );
     }
 
     public static void processDataRank(String inputDir, String outputDir)
             throws IOException, UIMAException
     {
-        SimplePipeline.runPipeline(
+        processDataRank(inputDir, outputDir, 1, true);
+    }
+
+    public static void processDataRank(String inputDir, String outputDir, int threads,
+            boolean ordered)
+            throws IOException, UIMAException
+    {
+        runPipeline(
                 CollectionReaderFactory.createReaderDescription(
                         RankedArgumentReader.class,
                         RankedArgumentReader.PARAM_SOURCE_LOCATION,
@@ -102,14 +147,21 @@ public class Pipeline
                         RankedArgumentReader.PARAM_PATTERNS,
                         RankedArgumentReader.INCLUDE_PREFIX + "*.csv"
                 ),
-                createPipeline(outputDir)
+                outputDir, threads, ordered
         );
     }
 
+    /**
+     * Arguments: pairs input dir, pairs output dir, ranks input dir, ranks output dir, optionally
+     * number of threads (default 1) and "unordered" to write documents as they are finished
+     */
     public static void main(String[] args)
             throws IOException, UIMAException
     {
-        processDataPairs(args[0], args[1]);
-        processDataRank(args[2], args[3]);
+        int threads = args.length > 4 ? Integer.parseInt(args[4]) : 1;
+        boolean ordered = !(args.length > 5 && "unordered".equals(args[5]));
+
+        processDataPairs(args[0], args[1], threads, ordered);
+        processDataRank(args[2], args[3], threads, ordered);
     }
 }
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2016
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.tudarmstadt.ukp.experiments.argumentation.convincingness.preprocessing;
+
+import de.tudarmstadt.ukp.dkpro.core.api.resources.CasConfigurableProviderBase;
+import de.tudarmstadt.ukp.dkpro.core.api.resources.ResourceObjectProviderBase;
+import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.resource.ResourceInitializationException;
+import org.apache.uima.util.Level;
+import org.apache.uima.util.Logger;
+
+import java.lang.reflect.Field;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shares models of DKPro Stanford components among all their instances in the JVM (e.g., the
+ * engine replicas of {@link ParallelPipeline}), so a model is loaded only once regardless of the
+ * number of threads.
+ * <p/>
+ * DKPro model providers keep loaded models in a JVM-wide cache if the model is marked as
+ * "sharable", which the Stanford components do not set; here the flag is set on the (private)
+ * model provider of the component. Loading is serialized, as the provider cache is not
+ * thread-safe, and the heap usage is reported after each model is loaded; once a provider has
+ * its model for the document language, the lock is skipped. The Stanford parser,
+ * tagger and NER models are read-only during annotation and can be used by multiple threads.
+ *
+ * @author Ivan Habernal
+ */
+final class SharedModels
+{
+    private static final String MODEL_PROVIDER_FIELD = "modelProvider";
+
+    /**
+     * Number of components using each model (by identity)
+     */
+    private static final Map<Object, Integer> MODEL_USERS = new IdentityHashMap<Object, Integer>();
+
+    /**
+     * Document language each provider has its model loaded for (by identity, as providers do
+     * not override equals); read without the lock
+     */
+    private static final Map<CasConfigurableProviderBase<?>, String> LOADED_LANGUAGES =
+            new ConcurrentHashMap<CasConfigurableProviderBase<?>, String>();
+
+    private SharedModels()
+    {
+        // no instances
+    }
+
+    /**
+     * Marks the model of the component as sharable; must be called after the component is
+     * initialized
+     *
+     * @param component      component instance
+     * @param componentClass DKPro class declaring the model provider
+     * @return model provider of the component
+     * @throws ResourceInitializationException if the class has no model provider
+     */
+    static CasConfigurableProviderBase<?> share(Object component, Class<?> componentClass)
+            throws ResourceInitializationException
+    {
+        try {
+            Field field = componentClass.getDeclaredField(MODEL_PROVIDER_FIELD);
+            field.setAccessible(true);
+
+            CasConfigurableProviderBase<?> result = (CasConfigurableProviderBase<?>) field
+                    .get(component);
+            result.setOverride(ResourceObjectProviderBase.SHARABLE, "true");
+
+            return result;
+        }
+        catch (NoSuchFieldException e) {
+            throw new ResourceInitializationException(e);
+        }
+        catch (IllegalAccessException e) {
+            throw new ResourceInitializationException(e);
+        }
+    }
+
+    /**
+     * Loads the model for the CAS (its language) or takes it from the cache if another
+     * component has already loaded it; to be called before the component processes the CAS
+     *
+     * @param provider       model provider returned by {@link #share(Object, Class)}
+     * @param cas            CAS
+     * @param componentClass component class (for the report)
+     * @param logger         logger
+     * @throws AnalysisEngineProcessException if the model cannot be loaded
+     */
+    static void load(CasConfigurableProviderBase<?> provider, CAS cas, Class<?> componentClass,
+            Logger logger)
+            throws AnalysisEngineProcessException
+    {
+        String language = cas.getDocumentLanguage();
+
+        // the provider is used by a single thread at a time, so its resource is stable here
+        if (language != null && provider.getResource() != null && language
+                .equals(LOADED_LANGUAGES.get(provider))) {
+            return;
+        }
+
+        loadSynchronized(provider, cas, componentClass, logger);
+
+        if (language != null) {
+            LOADED_LANGUAGES.put(provider, language);
+        }
+    }
+
+    private static synchronized void loadSynchronized(CasConfigurableProviderBase<?> provider,
+            CAS cas, Class<?> componentClass, Logger logger)
+            throws AnalysisEngineProcessException
+    {
+        Object previous = provider.getResource();
+        provider.configure(cas);
+        Object model = provider.getResource();
+
+        if (model == previous) {
+            return;
+        }
+
+        if (previous != null) {
+            release(previous);
+        }
+
+        Integer users = MODEL_USERS.get(model);
+        users = users != null ? users + 1 : 1;
+        MODEL_USERS.put(model, users);
+
+        Runtime runtime = Runtime.getRuntime();
+        long usedMB = (runtime.totalMemory() - runtime.freeMemory()) / 1024 / 1024;
+        long maxMB = runtime.maxMemory() / 1024 / 1024;
+
+        logger.log(Level.INFO,
+                String.format("%s model %s (%s, used by %d instances); %d models loaded, "
+                                + "heap used %d MB of %d MB", componentClass.getSimpleName(),
+                        users == 1 ? "loaded" : "shared", model.getClass().getSimpleName(),
+                        users, MODEL_USERS.size(), usedMB, maxMB));
+    }
+
+    private static void release(Object model)
+    {
+        Integer users = MODEL_USERS.get(model);
+        if (users == null || users == 1) {
+            MODEL_USERS.remove(model);
+        }
+        else {
+            MODEL_USERS.put(model, users - 1);
+        }
+    }
+}
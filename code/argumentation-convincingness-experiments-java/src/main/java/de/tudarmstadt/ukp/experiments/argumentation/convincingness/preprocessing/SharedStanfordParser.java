@@ -0,0 +1,57 @@
+/*
+ * Copyright 2016
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.tudarmstadt.ukp.experiments.argumentation.convincingness.preprocessing;
+
+import de.tudarmstadt.ukp.dkpro.core.api.resources.CasConfigurableProviderBase;
+import de.tudarmstadt.ukp.dkpro.core.stanfordnlp.StanfordParser;
+import org.apache.uima.UimaContext;
+import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.resource.ResourceInitializationException;
+
+/**
+ * {@link StanfordParser} whose model is loaded once and shared by all instances in the JVM
+ * (see {@link SharedModels})
+ *
+ * @author Ivan Habernal
+ */
+public class SharedStanfordParser
+        extends StanfordParser
+{
+    private CasConfigurableProviderBase<?> modelProvider;
+
+    @Override
+    public void initialize(UimaContext aContext)
+            throws ResourceInitializationException
+    {
+        super.initialize(aContext);
+
+        modelProvider = SharedModels.share(this, StanfordParser.class);
+    }
+
+    @Override
+    public void process(JCas aJCas)
+            throws AnalysisEngineProcessException
+    {
+        SharedModels.load(modelProvider, aJCas.getCas(), StanfordParser.class, getLogger());
+
+        super.process(aJCas);
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright 2016
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.tudarmstadt.ukp.experiments.argumentation.convincingness.preprocessing;
+
+import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Token;
+import de.tudarmstadt.ukp.dkpro.core.tokit.BreakIteratorSegmenter;
+import org.apache.uima.analysis_engine.AnalysisEngineDescription;
+import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
+import org.apache.uima.collection.CollectionException;
+import org.apache.uima.collection.CollectionReaderDescription;
+import org.apache.uima.fit.component.JCasAnnotator_ImplBase;
+import org.apache.uima.fit.component.JCasCollectionReader_ImplBase;
+import org.apache.uima.fit.descriptor.ConfigurationParameter;
+import org.apache.uima.fit.factory.AnalysisEngineFactory;
+import org.apache.uima.fit.factory.CollectionReaderFactory;
+import org.apache.uima.fit.util.JCasUtil;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.util.Progress;
+import org.apache.uima.util.ProgressImpl;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ivan Habernal
+ */
+public class ParallelPipelineTest
+{
+    private static final int DOCUMENTS = 20;
+
+    /**
+     * Output of the {@link Collector}
+     */
+    static final List<String> COLLECTED = Collections.synchronizedList(new ArrayList<String>());
+
+    /**
+     * Number of threads inside {@link SlowEngine#process(JCas)}
+     */
+    static final AtomicInteger ACTIVE = new AtomicInteger();
+
+    static final AtomicBoolean DESTROYED_WHILE_ACTIVE = new AtomicBoolean();
+
+    /**
+     * Documents "Document i. The second sentence."
+     */
+    public static class Reader
+            extends JCasCollectionReader_ImplBase
+    {
+        private int next;
+
+        @Override
+        public void getNext(JCas jCas)
+                throws CollectionException
+        {
+            jCas.setDocumentLanguage("en");
+            jCas.setDocumentText(createText(next));
+            next++;
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            return next < DOCUMENTS;
+        }
+
+        @Override
+        public Progress[] getProgress()
+        {
+            return new Progress[] { new ProgressImpl(next, DOCUMENTS, Progress.ENTITIES) };
+        }
+    }
+
+    /**
+     * Spends time on some documents (so they finish out of order) and fails on the given one
+     */
+    public static class SlowEngine
+            extends JCasAnnotator_ImplBase
+    {
+        public static final String PARAM_FAILING_DOCUMENT = "failingDocument";
+        @ConfigurationParameter(name = PARAM_FAILING_DOCUMENT, defaultValue = "-1")
+        private int failingDocument;
+
+        @Override
+        public void process(JCas jCas)
+                throws AnalysisEngineProcessException
+        {
+            ACTIVE.incrementAndGet();
+            try {
+                int document = Integer.valueOf(jCas.getDocumentText().split("[ .]")[1]);
+                if (document == failingDocument) {
+                    throw new AnalysisEngineProcessException(
+                            new IllegalStateException("Failing document " + document));
+                }
+
+                // not interruptible, like a long-running parser
+                long end = System.nanoTime() + (document % 4 == 0 ? 100 : 10) * 1000000L;
+                while (System.nanoTime() < end) {
+                    Thread.yield();
+                }
+            }
+            finally {
+                ACTIVE.decrementAndGet();
+            }
+        }
+
+        @Override
+        public void destroy()
+        {
+            if (ACTIVE.get() > 0) {
+                DESTROYED_WHILE_ACTIVE.set(true);
+            }
+            super.destroy();
+        }
+    }
+
+    /**
+     * Collects the text and the number of tokens of each document
+     */
+    public static class Collector
+            extends JCasAnnotator_ImplBase
+    {
+        @Override
+        public void process(JCas jCas)
+                throws AnalysisEngineProcessException
+        {
+            COLLECTED.add(jCas.getDocumentText() + " " + JCasUtil.select(jCas, Token.class).size());
+        }
+    }
+
+    private static String createText(int document)
+    {
+        return "Document " + document + ". The second sentence.";
+    }
+
+    private static List<String> createExpected()
+    {
+        List<String> result = new ArrayList<String>();
+        for (int i = 0; i < DOCUMENTS; i++) {
+            // "Document", number, ".", "The", "second", "sentence", "."
+            result.add(createText(i) + " 7");
+        }
+        return result;
+    }
+
+    private static void run(boolean ordered, int failingDocument)
+            throws Exception
+    {
+        CollectionReaderDescription reader = CollectionReaderFactory
+                .createReaderDescription(Reader.class);
+        AnalysisEngineDescription analysis = AnalysisEngineFactory.createEngineDescription(
+                AnalysisEngineFactory.createEngineDescription(BreakIteratorSegmenter.class),
+                AnalysisEngineFactory.createEngineDescription(SlowEngine.class,
+                        SlowEngine.PARAM_FAILING_DOCUMENT, failingDocument));
+        AnalysisEngineDescription writer = AnalysisEngineFactory
+                .createEngineDescription(Collector.class);
+
+        new ParallelPipeline(4, ordered).run(reader, analysis, writer);
+    }
+
+    @Before
+    public void setUp()
+    {
+        COLLECTED.clear();
+        DESTROYED_WHILE_ACTIVE.set(false);
+    }
+
+    @Test
+    public void testOrdered()
+            throws Exception
+    {
+        run(true, -1);
+
+        assertEquals(createExpected(), COLLECTED);
+        assertFalse(DESTROYED_WHILE_ACTIVE.get());
+    }
+
+    @Test
+    public void testUnordered()
+            throws Exception
+    {
+        run(false, -1);
+
+        assertEquals(DOCUMENTS, COLLECTED.size());
+        assertEquals(new HashSet<String>(createExpected()), new HashSet<String>(COLLECTED));
+        assertFalse(DESTROYED_WHILE_ACTIVE.get());
+    }
+
+    @Test
+    public void testFailure()
+            throws Exception
+    {
+        for (boolean ordered : new boolean[] { true, false }) {
+            setUp();
+
+            try {
+                run(ordered, 5);
+                fail("Failure not propagated");
+            }
+            catch (AnalysisEngineProcessException e) {
+                // expected
+            }
+
+            assertTrue(COLLECTED.size() < DOCUMENTS);
+            // engines are destroyed only after the other threads finished their documents
+            assertFalse(DESTROYED_WHILE_ACTIVE.get());
+        }
+    }
+}
@@ -0,0 +1,308 @@
+/*
+ * Copyright 2016 Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.tudarmstadt.ukp.dkpro.core.stanfordsentiment;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Persistent cache of sentence sentiment scores, addressed by the SHA-1 hash of the normalized
+ * sentence text (and the annotation mode). The same arguments appear in many argument pairs,
+ * so most sentences are annotated repeatedly with identical results.
+ * <p/>
+ * All entries are stored in an append-only file of fixed-size records (the hash and 5 scores),
+ * only their positions are kept in memory; recently used scores are kept in a LRU map. Instances
+ * are shared by all annotators using the same file in the JVM; the file must not be used by more
+ * JVMs at the same time.
+ *
+ * @author Ivan Habernal
+ */
+final class SentimentCache
+{
+    /**
+     * "UASC"
+     */
+    private static final int MAGIC = 0x55415343;
+
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 2 * 4;
+
+    /**
+     * Number of sentiment classes (scores per sentence)
+     */
+    static final int SCORES = 5;
+
+    private static final int KEY_SIZE = 20;
+
+    // record: SHA-1 of the key, scores
+    private static final int RECORD_SIZE = KEY_SIZE + SCORES * 8;
+
+    /**
+     * Opened caches by their (absolute) file
+     */
+    private static final Map<File, SentimentCache> CACHES = new HashMap<File, SentimentCache>();
+
+    private final File file;
+
+    private final RandomAccessFile store;
+
+    /**
+     * Positions of all records in the file
+     */
+    private final Map<String, Long> positions = new HashMap<String, Long>();
+
+    /**
+     * Recently used scores
+     */
+    private final Map<String, double[]> memory;
+
+    private int users;
+
+    private long memoryHits;
+    private long diskHits;
+    private long misses;
+
+    private SentimentCache(File file, final int memorySize)
+            throws IOException
+    {
+        this.file = file;
+        this.memory = new LinkedHashMap<String, double[]>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, double[]> eldest)
+            {
+                return size() > memorySize;
+            }
+        };
+
+        this.store = new RandomAccessFile(file, "rw");
+        try {
+            if (store.length() == 0) {
+                store.writeInt(MAGIC);
+                store.writeInt(VERSION);
+            }
+            else {
+                readIndex();
+            }
+        }
+        catch (IOException e) {
+            store.close();
+            throw e;
+        }
+    }
+
+    private void readIndex()
+            throws IOException
+    {
+        if (store.length() < HEADER_SIZE || store.readInt() != MAGIC) {
+            throw new IOException("Not a sentiment cache: " + file);
+        }
+        int version = store.readInt();
+        if (version != VERSION) {
+            throw new IOException(
+                    "Unsupported version " + version + " (expected " + VERSION + ") of " + file);
+        }
+
+        // a record may be incomplete if the previous run was killed while writing
+        long count = (store.length() - HEADER_SIZE) / RECORD_SIZE;
+        store.setLength(HEADER_SIZE + count * RECORD_SIZE);
+
+        byte[] key = new byte[KEY_SIZE];
+        for (long i = 0; i < count; i++) {
+            long position = HEADER_SIZE + i * RECORD_SIZE;
+            store.seek(position);
+            store.readFully(key);
+            positions.put(toHex(key), position);
+        }
+    }
+
+    /**
+     * Opens the cache, creates the file if it does not exist
+     *
+     * @param file       cache file
+     * @param memorySize maximal number of entries kept in memory (of the first opening)
+     * @return shared cache
+     * @throws IOException if the file is not a valid cache
+     */
+    static synchronized SentimentCache open(File file, int memorySize)
+            throws IOException
+    {
+        File absoluteFile = file.getAbsoluteFile();
+
+        SentimentCache result = CACHES.get(absoluteFile);
+        if (result == null) {
+            result = new SentimentCache(absoluteFile, memorySize);
+            CACHES.put(absoluteFile, result);
+        }
+        result.users++;
+
+        return result;
+    }
+
+    /**
+     * Closes the file once the cache is released by all its users
+     *
+     * @param cache cache returned by {@link #open(File, int)}
+     * @throws IOException exception
+     */
+    static synchronized void release(SentimentCache cache)
+            throws IOException
+    {
+        cache.users--;
+        if (cache.users == 0) {
+            CACHES.remove(cache.file);
+            cache.store.close();
+        }
+    }
+
+    /**
+     * Creates the cache key; sentences differing only in white spaces share the key
+     *
+     * @param mode annotation mode (scores of the same sentence differ among the modes)
+     * @param text sentence text
+     * @return key
+     */
+    static String createKey(String mode, String text)
+    {
+        String normalized = text.trim().replaceAll("\\s+", " ");
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            digest.update(mode.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            return toHex(digest.digest(normalized.getBytes(StandardCharsets.UTF_8)));
+        }
+        catch (NoSuchAlgorithmException e) {
+            // every JVM supports SHA-1
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns the scores from memory or from the file
+     *
+     * @param key key
+     * @return scores or null if the sentence is not cached
+     * @throws IOException if reading fails
+     */
+    synchronized double[] get(String key)
+            throws IOException
+    {
+        double[] result = memory.get(key);
+        if (result != null) {
+            memoryHits++;
+            return result;
+        }
+
+        Long position = positions.get(key);
+        if (position == null) {
+            misses++;
+            return null;
+        }
+
+        byte[] record = new byte[RECORD_SIZE];
+        store.seek(position);
+        store.readFully(record);
+
+        ByteBuffer buffer = ByteBuffer.wrap(record, KEY_SIZE, SCORES * 8);
+        result = new double[SCORES];
+        for (int i = 0; i < SCORES; i++) {
+            result[i] = buffer.getDouble();
+        }
+
+        memory.put(key, result);
+        diskHits++;
+
+        return result;
+    }
+
+    /**
+     * Stores the scores into memory and appends them to the file
+     *
+     * @param key    key
+     * @param scores scores
+     * @throws IOException if writing fails
+     */
+    synchronized void put(String key, double[] scores)
+            throws IOException
+    {
+        if (scores.length != SCORES) {
+            throw new IllegalArgumentException(
+                    "Expected " + SCORES + " scores but got " + scores.length);
+        }
+
+        if (!positions.containsKey(key)) {
+            ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE);
+            buffer.put(fromHex(key));
+            for (double score : scores) {
+                buffer.putDouble(score);
+            }
+
+            long position = store.length();
+            store.seek(position);
+            store.write(buffer.array());
+            positions.put(key, position);
+        }
+
+        memory.put(key, scores.clone());
+    }
+
+    /**
+     * Returns hit statistics and the size of the cache
+     *
+     * @return statistics
+     */
+    synchronized String getStatistics()
+    {
+        long lookups = memoryHits + diskHits + misses;
+
+        return String.format(
+                "%d lookups, %d memory hits, %d disk hits, %d misses (hit rate %.1f %%); "
+                        + "%d entries in %s", lookups, memoryHits, diskHits, misses,
+                lookups > 0 ? 100.0 * (memoryHits + diskHits) / lookups : 0.0,
+                positions.size(), file);
+    }
+
+    private static String toHex(byte[] bytes)
+    {
+        StringBuilder result = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            result.append(String.format("%02x", b));
+        }
+        return result.toString();
+    }
+
+    private static byte[] fromHex(String hex)
+    {
+        byte[] result = new byte[hex.length() / 2];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = (byte) Integer.parseInt(hex.substring(i * 2, i * 2 + 2), 16);
+        }
+        return result;
+    }
+}
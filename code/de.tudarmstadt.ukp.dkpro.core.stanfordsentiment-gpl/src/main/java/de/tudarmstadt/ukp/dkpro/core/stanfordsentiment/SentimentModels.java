@@ -0,0 +1,119 @@
+/*
+ * Copyright 2016 Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.tudarmstadt.ukp.dkpro.core.stanfordsentiment;
+
+import edu.stanford.nlp.pipeline.SentimentAnnotator;
+import edu.stanford.nlp.pipeline.StanfordCoreNLP;
+import org.apache.uima.util.Level;
+import org.apache.uima.util.Logger;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Stanford models shared by all {@link StanfordSentimentAnnotator} instances in the JVM, so
+ * parallel instances do not load their own copies. The models are read-only during annotation
+ * and can be used by multiple threads.
+ *
+ * @author Ivan Habernal
+ */
+final class SentimentModels
+{
+    /**
+     * CoreNLP pipelines by the list of annotators
+     */
+    private static final Map<String, StanfordCoreNLP> PIPELINES =
+            new HashMap<String, StanfordCoreNLP>();
+
+    private static final Map<String, Integer> PIPELINE_USERS = new HashMap<String, Integer>();
+
+    /**
+     * Sentiment RNN with the default model (without the rest of the pipeline)
+     */
+    private static SentimentAnnotator sentimentAnnotator;
+
+    private static int sentimentAnnotatorUsers;
+
+    private SentimentModels()
+    {
+        // no instances
+    }
+
+    /**
+     * Returns the pipeline, creates it on the first call
+     *
+     * @param annotators CoreNLP annotators
+     * @param logger     logger for the memory report
+     * @return shared pipeline
+     */
+    static synchronized StanfordCoreNLP getPipeline(String annotators, Logger logger)
+    {
+        StanfordCoreNLP result = PIPELINES.get(annotators);
+        if (result == null) {
+            Properties props = new Properties();
+            props.setProperty("annotators", annotators);
+            // input of the sentiment model
+            props.setProperty("parse.binaryTrees", "true");
+            // the annotators may run on already tokenized annotations
+            result = new StanfordCoreNLP(props, false);
+
+            PIPELINES.put(annotators, result);
+        }
+
+        Integer users = PIPELINE_USERS.get(annotators);
+        users = users != null ? users + 1 : 1;
+        PIPELINE_USERS.put(annotators, users);
+
+        report(logger, "CoreNLP pipeline [" + annotators + "]", users);
+
+        return result;
+    }
+
+    /**
+     * Returns the sentiment annotator (the RNN only, requires binarized trees), creates it on
+     * the first call
+     *
+     * @param logger logger for the memory report
+     * @return shared annotator
+     */
+    static synchronized SentimentAnnotator getSentimentAnnotator(Logger logger)
+    {
+        if (sentimentAnnotator == null) {
+            sentimentAnnotator = new SentimentAnnotator("sentiment", new Properties());
+        }
+
+        sentimentAnnotatorUsers++;
+
+        report(logger, "Sentiment model", sentimentAnnotatorUsers);
+
+        return sentimentAnnotator;
+    }
+
+    private static void report(Logger logger, String model, int users)
+    {
+        Runtime runtime = Runtime.getRuntime();
+        long usedMB = (runtime.totalMemory() - runtime.freeMemory()) / 1024 / 1024;
+        long maxMB = runtime.maxMemory() / 1024 / 1024;
+
+        logger.log(Level.INFO,
+                String.format("%s %s (used by %d instances); heap used %d MB of %d MB", model,
+                        users == 1 ? "loaded" : "shared", users, usedMB, maxMB));
+    }
+}
@@ -20,19 +20,30 @@ package de.tudarmstadt.ukp.dkpro.core.stanfordsentiment;
 
 import de.tudarmstadt.ukp.dkpro.core.api.resources.CompressionMethod;
 import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Sentence;
+import de.tudarmstadt.ukp.dkpro.core.api.syntax.type.constituent.ROOT;
 import de.tudarmstadt.ukp.dkpro.core.io.bincas.BinaryCasReader;
 import de.tudarmstadt.ukp.dkpro.core.io.bincas.BinaryCasWriter;
 import de.tudarmstadt.ukp.dkpro.core.sentiment.type.StanfordSentimentAnnotation;
+import de.tudarmstadt.ukp.dkpro.core.stanfordnlp.util.TreeUtils;
 import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.ling.CoreLabel;
 import edu.stanford.nlp.neural.rnn.RNNCoreAnnotations;
+import edu.stanford.nlp.parser.lexparser.EnglishTreebankParserParams;
+import edu.stanford.nlp.parser.lexparser.TreeBinarizer;
 import edu.stanford.nlp.pipeline.Annotation;
+import edu.stanford.nlp.pipeline.SentimentAnnotator;
 import edu.stanford.nlp.pipeline.StanfordCoreNLP;
 import edu.stanford.nlp.sentiment.SentimentCoreAnnotations;
 import edu.stanford.nlp.trees.Tree;
+import edu.stanford.nlp.trees.TreeCoreAnnotations;
+import edu.stanford.nlp.trees.Trees;
+import edu.stanford.nlp.util.ArrayCoreMap;
 import edu.stanford.nlp.util.CoreMap;
 import org.apache.uima.UimaContext;
+import org.apache.uima.analysis_engine.AnalysisEngineDescription;
 import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
 import org.apache.uima.fit.component.JCasAnnotator_ImplBase;
+import org.apache.uima.fit.descriptor.ConfigurationParameter;
 import org.apache.uima.fit.descriptor.TypeCapability;
 import org.apache.uima.fit.factory.AnalysisEngineFactory;
 import org.apache.uima.fit.factory.CollectionReaderFactory;
@@ -40,16 +51,22 @@ import org.apache.uima.fit.pipeline.SimplePipeline;
 import org.apache.uima.fit.util.JCasUtil;
 import org.apache.uima.jcas.JCas;
 import org.apache.uima.resource.ResourceInitializationException;
+import org.apache.uima.util.Level;
 import org.ejml.simple.SimpleMatrix;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Properties;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * Experimental wrapper for {@link edu.stanford.nlp.pipeline.SentimentAnnotator} which assigns 5 scores to each sentence.
- * NOTE: Is very slow in the current state as it runs full Stanford pipeline and does not take into account any
- * existing DKPro annotations.
+ * NOTE: Is very slow by default as it runs full Stanford pipeline and does not take into account any
+ * existing DKPro annotations; with {@link #PARAM_USE_EXISTING_PARSE}, only the sentiment model runs
+ * on the existing constituency trees. All sentences of a document are annotated in one batch;
+ * with {@link #PARAM_CACHE_FILE}, scores of already annotated sentences are reused.
  *
  * @author Anil Narassiguing
  * @author Ivan Habernal
@@ -62,19 +79,92 @@ import java.util.Properties;
 public class StanfordSentimentAnnotator
         extends JCasAnnotator_ImplBase
 {
+    /**
+     * Annotators splitting each DKPro sentence into CoreNLP tokens and sentences
+     */
+    private static final String TOKENIZER_ANNOTATORS = "tokenize, ssplit";
+
+    /**
+     * Annotators running on all tokenized sentences of a document at once
+     */
+    private static final String SENTIMENT_ANNOTATORS = "pos, parse, sentiment";
+
+    /**
+     * Use existing tokens, POS tags and constituents (e.g., from the DKPro StanfordParser)
+     * instead of re-parsing each sentence; sentences without a parse tree are processed with the
+     * full pipeline.
+     */
+    public static final String PARAM_USE_EXISTING_PARSE = "useExistingParse";
+    @ConfigurationParameter(name = PARAM_USE_EXISTING_PARSE, mandatory = true, defaultValue = "false")
+    private boolean useExistingParse;
+
+    /**
+     * Cache of sentence scores, created if it does not exist (optional). The cache should be
+     * used only with the same CoreNLP models.
+     */
+    public static final String PARAM_CACHE_FILE = "cacheFile";
+    @ConfigurationParameter(name = PARAM_CACHE_FILE, mandatory = false)
+    private File cacheFile;
+
+    /**
+     * Maximal number of cached scores kept in memory
+     */
+    public static final String PARAM_CACHE_MEMORY_SIZE = "cacheMemorySize";
+    @ConfigurationParameter(name = PARAM_CACHE_MEMORY_SIZE, mandatory = true,
+            defaultValue = "100000")
+    private int cacheMemorySize;
+
+    private static final String MODE_TREE = "tree";
+
+    private static final String MODE_PIPELINE = "pipeline";
+
+    private SentimentCache cache;
+
+    private int cacheHits;
+
+    private int cacheMisses;
+
+    private StanfordCoreNLP tokenizer;
 
     private StanfordCoreNLP pipeline;
 
+    private SentimentAnnotator sentimentAnnotator;
+
+    private TreeBinarizer binarizer;
+
     @Override
     public void initialize(UimaContext context)
             throws ResourceInitializationException
     {
         super.initialize(context);
 
-        Properties props = new Properties();
-        props.setProperty("annotators", "tokenize, ssplit, pos, parse, sentiment");
-        //		props.setProperty("annotators", "sentiment");
-        pipeline = new StanfordCoreNLP(props);
+        // models are loaded once per JVM
+        if (useExistingParse) {
+            sentimentAnnotator = SentimentModels.getSentimentAnnotator(getLogger());
+
+            // the same binarization as in the CoreNLP parser annotator
+            EnglishTreebankParserParams params = new EnglishTreebankParserParams();
+            binarizer = new TreeBinarizer(params.headFinder(), params.treebankLanguagePack(),
+                    false, false, 0, false, false, 0.0, false, true, true);
+        }
+        else {
+            initializePipeline();
+        }
+
+        if (cacheFile != null) {
+            try {
+                cache = SentimentCache.open(cacheFile, cacheMemorySize);
+            }
+            catch (IOException e) {
+                throw new ResourceInitializationException(e);
+            }
+        }
+    }
+
+    private void initializePipeline()
+    {
+        tokenizer = SentimentModels.getPipeline(TOKENIZER_ANNOTATORS, getLogger());
+        pipeline = SentimentModels.getPipeline(SENTIMENT_ANNOTATORS, getLogger());
     }
 
     @Override
@@ -88,33 +178,207 @@ public class StanfordSentimentAnnotator
                     new IllegalStateException("No sentences annotated"));
         }
 
+        // all sentences of the document are annotated in one batch per mode
+        List<Sentence> sentencesWithTree = new ArrayList<Sentence>();
+        List<CoreMap> trees = new ArrayList<CoreMap>();
+        List<Sentence> sentencesWithoutTree = new ArrayList<Sentence>();
+
         for (Sentence sentenceDKPro : dkproSentences) {
-            String sentenceText = sentenceDKPro.getCoveredText();
-
-            Annotation annotation = pipeline.process(sentenceText);
-
-            for (CoreMap sentence : annotation.get(CoreAnnotations.SentencesAnnotation.class)) {
-                Tree tree = sentence.get(SentimentCoreAnnotations.AnnotatedTree.class);
-                SimpleMatrix sentimentCoefficients = RNNCoreAnnotations.getPredictions(tree);
-
-                double veryNegative = sentimentCoefficients.get(0);
-                double negative = sentimentCoefficients.get(1);
-                double neutral = sentimentCoefficients.get(2);
-                double positive = sentimentCoefficients.get(3);
-                double veryPositive = sentimentCoefficients.get(4);
-
-                StanfordSentimentAnnotation sentimentAnnotation = new StanfordSentimentAnnotation(
-                        jCas);
-                sentimentAnnotation.setBegin(sentenceDKPro.getBegin());
-                sentimentAnnotation.setEnd(sentenceDKPro.getEnd());
-                sentimentAnnotation.setVeryNegative(veryNegative);
-                sentimentAnnotation.setNegative(negative);
-                sentimentAnnotation.setNeutral(neutral);
-                sentimentAnnotation.setPositive(positive);
-                sentimentAnnotation.setVeryPositive(veryPositive);
-                sentimentAnnotation.addToIndexes();
+            List<ROOT> roots = useExistingParse ?
+                    JCasUtil.selectCovered(ROOT.class, sentenceDKPro) :
+                    Collections.<ROOT>emptyList();
+
+            if (cache != null) {
+                double[] scores = getCached(roots.isEmpty() ? MODE_PIPELINE : MODE_TREE,
+                        sentenceDKPro);
+                if (scores != null) {
+                    addSentimentAnnotation(jCas, sentenceDKPro, scores);
+                    continue;
+                }
+            }
+
+            if (!roots.isEmpty()) {
+                sentencesWithTree.add(sentenceDKPro);
+                trees.add(createBinarizedTree(roots.get(0)));
+            }
+            else {
+                sentencesWithoutTree.add(sentenceDKPro);
+            }
+        }
+
+        if (!trees.isEmpty()) {
+            sentimentAnnotator.annotate(createBatch(jCas, trees, null));
+            addSentimentAnnotations(jCas, sentencesWithTree, trees, MODE_TREE);
+        }
+
+        if (!sentencesWithoutTree.isEmpty()) {
+            processWithPipeline(jCas, sentencesWithoutTree);
+        }
+    }
+
+    /**
+     * Converts the DKPro tree into a CoreNLP sentence with a binarized tree, the input of the
+     * sentiment model
+     *
+     * @param root DKPro parse tree of the sentence
+     * @return CoreNLP sentence
+     */
+    private CoreMap createBinarizedTree(ROOT root)
+    {
+        Tree tree = TreeUtils.createStanfordTree(root);
+        Tree binarized = binarizer.transformTree(tree);
+        Trees.convertToCoreLabels(binarized);
+
+        CoreMap result = new ArrayCoreMap();
+        result.set(TreeCoreAnnotations.BinarizedTreeAnnotation.class, binarized);
+
+        return result;
+    }
+
+    /**
+     * Tokenizes each sentence text separately (so the sentence boundaries are kept), then tags,
+     * parses and annotates all sentences with the CoreNLP pipeline at once
+     */
+    private void processWithPipeline(JCas jCas, List<Sentence> sentencesDKPro)
+            throws AnalysisEngineProcessException
+    {
+        if (pipeline == null) {
+            // sentences without a parse tree in the existing parse mode
+            initializePipeline();
+        }
+
+        // a DKPro sentence may be split into more CoreNLP sentences
+        List<Sentence> owners = new ArrayList<Sentence>();
+        List<CoreMap> sentences = new ArrayList<CoreMap>();
+        List<CoreLabel> tokens = new ArrayList<CoreLabel>();
+
+        for (Sentence sentenceDKPro : sentencesDKPro) {
+            Annotation tokenized = tokenizer.process(sentenceDKPro.getCoveredText());
+
+            for (CoreMap sentence : tokenized.get(CoreAnnotations.SentencesAnnotation.class)) {
+                owners.add(sentenceDKPro);
+                sentences.add(sentence);
             }
+            tokens.addAll(tokenized.get(CoreAnnotations.TokensAnnotation.class));
+        }
+
+        pipeline.annotate(createBatch(jCas, sentences, tokens));
+        addSentimentAnnotations(jCas, owners, sentences, MODE_PIPELINE);
+    }
+
+    private static Annotation createBatch(JCas jCas, List<CoreMap> sentences,
+            List<CoreLabel> tokens)
+    {
+        Annotation result = new Annotation(jCas.getDocumentText());
+        result.set(CoreAnnotations.SentencesAnnotation.class, sentences);
+        if (tokens != null) {
+            result.set(CoreAnnotations.TokensAnnotation.class, tokens);
         }
+
+        return result;
+    }
+
+    private double[] getCached(String mode, Sentence sentenceDKPro)
+            throws AnalysisEngineProcessException
+    {
+        try {
+            double[] result = cache
+                    .get(SentimentCache.createKey(mode, sentenceDKPro.getCoveredText()));
+            if (result != null) {
+                cacheHits++;
+            }
+            else {
+                cacheMisses++;
+            }
+            return result;
+        }
+        catch (IOException e) {
+            throw new AnalysisEngineProcessException(e);
+        }
+    }
+
+    /**
+     * Maps the predictions of the annotated CoreNLP sentences back to the DKPro sentences and
+     * caches them
+     */
+    private void addSentimentAnnotations(JCas jCas, List<Sentence> sentencesDKPro,
+            List<CoreMap> sentences, String mode)
+            throws AnalysisEngineProcessException
+    {
+        for (int i = 0; i < sentences.size(); i++) {
+            Tree tree = sentences.get(i).get(SentimentCoreAnnotations.AnnotatedTree.class);
+            SimpleMatrix predictions = RNNCoreAnnotations.getPredictions(tree);
+
+            double[] scores = new double[SentimentCache.SCORES];
+            for (int j = 0; j < scores.length; j++) {
+                scores[j] = predictions.get(j);
+            }
+
+            Sentence sentenceDKPro = sentencesDKPro.get(i);
+            addSentimentAnnotation(jCas, sentenceDKPro, scores);
+
+            // only sentences with a single prediction (not split by CoreNLP) are cached
+            boolean single = (i == 0 || sentencesDKPro.get(i - 1) != sentenceDKPro) && (
+                    i == sentences.size() - 1 || sentencesDKPro.get(i + 1) != sentenceDKPro);
+            if (cache != null && single) {
+                try {
+                    cache.put(SentimentCache.createKey(mode, sentenceDKPro.getCoveredText()),
+                            scores);
+                }
+                catch (IOException e) {
+                    throw new AnalysisEngineProcessException(e);
+                }
+            }
+        }
+    }
+
+    private static void addSentimentAnnotation(JCas jCas, Sentence sentenceDKPro,
+            double[] scores)
+    {
+        double veryNegative = scores[0];
+        double negative = scores[1];
+        double neutral = scores[2];
+        double positive = scores[3];
+        double veryPositive = scores[4];
+
+        StanfordSentimentAnnotation sentimentAnnotation = new StanfordSentimentAnnotation(
+                jCas);
+        sentimentAnnotation.setBegin(sentenceDKPro.getBegin());
+        sentimentAnnotation.setEnd(sentenceDKPro.getEnd());
+        sentimentAnnotation.setVeryNegative(veryNegative);
+        sentimentAnnotation.setNegative(negative);
+        sentimentAnnotation.setNeutral(neutral);
+        sentimentAnnotation.setPositive(positive);
+        sentimentAnnotation.setVeryPositive(veryPositive);
+        sentimentAnnotation.addToIndexes();
+    }
+
+    @Override
+    public void collectionProcessComplete()
+            throws AnalysisEngineProcessException
+    {
+        super.collectionProcessComplete();
+
+        if (cache != null) {
+            getLogger().log(Level.INFO, String.format("Sentiment cache: %d of %d sentences cached; %s",
+                    cacheHits, cacheHits + cacheMisses, cache.getStatistics()));
+        }
+    }
+
+    @Override
+    public void destroy()
+    {
+        if (cache != null) {
+            try {
+                SentimentCache.release(cache);
+            }
+            catch (IOException e) {
+                getLogger().log(Level.WARNING, "Cannot close the sentiment cache: " + e.getMessage());
+            }
+            cache = null;
+        }
+
+        super.destroy();
     }
 
     public static void main(String[] args)
@@ -123,6 +387,14 @@ public class StanfordSentimentAnnotator
         File inputDir = new File(args[0]);
         File outputDir = new File(args[1]);
 
+        // Sentiment (on trees from the preprocessing pipeline), optionally cached
+        AnalysisEngineDescription sentiment = args.length > 2 ?
+                AnalysisEngineFactory.createEngineDescription(StanfordSentimentAnnotator.class,
+                        StanfordSentimentAnnotator.PARAM_USE_EXISTING_PARSE, true,
+                        StanfordSentimentAnnotator.PARAM_CACHE_FILE, new File(args[2])) :
+                AnalysisEngineFactory.createEngineDescription(StanfordSentimentAnnotator.class,
+                        StanfordSentimentAnnotator.PARAM_USE_EXISTING_PARSE, true);
+
         SimplePipeline.runPipeline(
                 CollectionReaderFactory.createReaderDescription(
                         BinaryCasReader.class,
@@ -131,8 +403,7 @@ public class StanfordSentimentAnnotator
                         BinaryCasReader.INCLUDE_PREFIX + "*.bz2"
                 ),
 
-                // Sentiment
-                AnalysisEngineFactory.createEngineDescription(StanfordSentimentAnnotator.class),
+                sentiment,
 
                 AnalysisEngineFactory.createEngineDescription(
                         BinaryCasWriter.class,
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2016 Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.tudarmstadt.ukp.dkpro.core.stanfordsentiment;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+public class SentimentCacheTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testCreateKey()
+    {
+        assertEquals(SentimentCache.createKey("tree", "I feel  very\nbad. "),
+                SentimentCache.createKey("tree", "I feel very bad."));
+        assertNotEquals(SentimentCache.createKey("tree", "I feel very bad."),
+                SentimentCache.createKey("pipeline", "I feel very bad."));
+    }
+
+    @Test
+    public void testPersistence()
+            throws Exception
+    {
+        File file = new File(folder.getRoot(), "sentiment.cache");
+        String key1 = SentimentCache.createKey("tree", "first");
+        String key2 = SentimentCache.createKey("tree", "second");
+        double[] scores1 = { 0.1, 0.2, 0.3, 0.2, 0.2 };
+        double[] scores2 = { 0.5, 0.2, 0.1, 0.1, 0.1 };
+
+        SentimentCache cache = SentimentCache.open(file, 1);
+        assertNull(cache.get(key1));
+        cache.put(key1, scores1);
+        cache.put(key2, scores2);
+        // key1 is evicted from memory but still on disk
+        assertArrayEquals(scores1, cache.get(key1), 0.0);
+        SentimentCache.release(cache);
+
+        // simulates a run killed while writing
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        randomAccessFile.setLength(randomAccessFile.length() + 7);
+        randomAccessFile.close();
+
+        cache = SentimentCache.open(file, 1);
+        assertArrayEquals(scores1, cache.get(key1), 0.0);
+        assertArrayEquals(scores2, cache.get(key2), 0.0);
+        assertNull(cache.get(SentimentCache.createKey("pipeline", "first")));
+        SentimentCache.release(cache);
+    }
+}
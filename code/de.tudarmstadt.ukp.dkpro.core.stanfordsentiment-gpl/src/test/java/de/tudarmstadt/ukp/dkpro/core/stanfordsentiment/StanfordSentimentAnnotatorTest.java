@@ -18,21 +18,41 @@
 
 package de.tudarmstadt.ukp.dkpro.core.stanfordsentiment;
 
+import de.tudarmstadt.ukp.dkpro.core.api.lexmorph.type.pos.POS;
+import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Token;
+import de.tudarmstadt.ukp.dkpro.core.api.syntax.type.constituent.Constituent;
+import de.tudarmstadt.ukp.dkpro.core.api.syntax.type.constituent.ROOT;
 import de.tudarmstadt.ukp.dkpro.core.sentiment.type.StanfordSentimentAnnotation;
+import de.tudarmstadt.ukp.dkpro.core.stanfordnlp.util.TreeUtils;
 import de.tudarmstadt.ukp.dkpro.core.tokit.BreakIteratorSegmenter;
+import edu.stanford.nlp.trees.Tree;
 import org.apache.uima.cas.CAS;
 import org.apache.uima.fit.component.CasDumpWriter;
 import org.apache.uima.fit.factory.AnalysisEngineFactory;
 import org.apache.uima.fit.factory.TypeSystemDescriptionFactory;
 import org.apache.uima.fit.pipeline.SimplePipeline;
+import org.apache.uima.fit.util.FSCollectionFactory;
 import org.apache.uima.fit.util.JCasUtil;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.jcas.tcas.Annotation;
 import org.apache.uima.util.CasCreationUtils;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 public class StanfordSentimentAnnotatorTest
 {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
 
     //	@Ignore
     @Test
@@ -54,6 +74,144 @@ public class StanfordSentimentAnnotatorTest
         assertTrue(sentimentAnnotation.getNegative() > 0);
     }
 
+    @Test
+    public void testSentimentBatch()
+            throws Exception
+    {
+        CAS cas = CasCreationUtils
+                .createCas(TypeSystemDescriptionFactory.createTypeSystemDescription(), null, null);
+        cas.setDocumentLanguage("en");
+        cas.setDocumentText("I feel very very bad. This is a great and wonderful idea.");
+
+        SimplePipeline.runPipeline(cas,
+                AnalysisEngineFactory.createEngineDescription(BreakIteratorSegmenter.class),
+                AnalysisEngineFactory.createEngineDescription(StanfordSentimentAnnotator.class));
+
+        List<StanfordSentimentAnnotation> annotations = new ArrayList<StanfordSentimentAnnotation>(
+                JCasUtil.select(cas.getJCas(), StanfordSentimentAnnotation.class));
+
+        // predictions mapped back to the sentences
+        assertEquals(2, annotations.size());
+        assertEquals("I feel very very bad.", annotations.get(0).getCoveredText());
+        assertEquals("This is a great and wonderful idea.", annotations.get(1).getCoveredText());
+        assertTrue(annotations.get(0).getNegative() > annotations.get(0).getPositive());
+        assertTrue(annotations.get(1).getPositive() > annotations.get(1).getNegative());
+    }
+
+    @Test
+    public void testSentimentCache()
+            throws Exception
+    {
+        File cacheFile = new File(folder.getRoot(), "sentiment.cache");
+        double[] scores = null;
+
+        // the second run reads the scores from the cache
+        for (int i = 0; i < 2; i++) {
+            CAS cas = CasCreationUtils.createCas(
+                    TypeSystemDescriptionFactory.createTypeSystemDescription(), null, null);
+            cas.setDocumentLanguage("en");
+            cas.setDocumentText("I feel very very bad.");
+
+            SimplePipeline.runPipeline(cas,
+                    AnalysisEngineFactory.createEngineDescription(BreakIteratorSegmenter.class),
+                    AnalysisEngineFactory.createEngineDescription(StanfordSentimentAnnotator.class,
+                            StanfordSentimentAnnotator.PARAM_CACHE_FILE, cacheFile));
+
+            StanfordSentimentAnnotation annotation = JCasUtil
+                    .select(cas.getJCas(), StanfordSentimentAnnotation.class).iterator().next();
+            double[] current = { annotation.getVeryNegative(), annotation.getNegative(),
+                    annotation.getNeutral(), annotation.getPositive(),
+                    annotation.getVeryPositive() };
+
+            if (scores != null) {
+                assertArrayEquals(scores, current, 0.0);
+            }
+            scores = current;
+        }
+
+        SentimentCache cache = SentimentCache.open(cacheFile, 1);
+        assertArrayEquals(scores,
+                cache.get(SentimentCache.createKey("pipeline", "I feel very very bad.")), 0.0);
+        SentimentCache.release(cache);
+    }
+
+    @Test
+    public void testSentimentExistingParse()
+            throws Exception
+    {
+        CAS cas = CasCreationUtils
+                .createCas(TypeSystemDescriptionFactory.createTypeSystemDescription(), null, null);
+        cas.setDocumentLanguage("en");
+        cas.setDocumentText("I feel very very bad.");
+
+        SimplePipeline.runPipeline(cas,
+                AnalysisEngineFactory.createEngineDescription(BreakIteratorSegmenter.class));
+
+        // the tree as produced by the Stanford parser
+        createConstituents(cas.getJCas(), TreeUtils.pennString2Tree(
+                        "(ROOT (S (NP (PRP I)) (VP (VBP feel) (ADJP (RB very) (RB very) "
+                                + "(JJ bad))) (. .)))"),
+                JCasUtil.select(cas.getJCas(), Token.class).iterator());
+
+        SimplePipeline.runPipeline(cas,
+                AnalysisEngineFactory.createEngineDescription(StanfordSentimentAnnotator.class,
+                        StanfordSentimentAnnotator.PARAM_USE_EXISTING_PARSE, true));
+
+        StanfordSentimentAnnotation fromTree = JCasUtil
+                .select(cas.getJCas(), StanfordSentimentAnnotation.class).iterator().next();
+        assertTrue(fromTree.getNegative() > 0);
+        double[] treeScores = { fromTree.getVeryNegative(), fromTree.getNegative(),
+                fromTree.getNeutral(), fromTree.getPositive(), fromTree.getVeryPositive() };
+
+        // the same scores as with the full pipeline
+        cas.reset();
+        cas.setDocumentLanguage("en");
+        cas.setDocumentText("I feel very very bad.");
+
+        SimplePipeline.runPipeline(cas,
+                AnalysisEngineFactory.createEngineDescription(BreakIteratorSegmenter.class),
+                AnalysisEngineFactory.createEngineDescription(StanfordSentimentAnnotator.class));
+
+        StanfordSentimentAnnotation fromPipeline = JCasUtil
+                .select(cas.getJCas(), StanfordSentimentAnnotation.class).iterator().next();
+        assertEquals(fromPipeline.getVeryNegative(), treeScores[0], 1e-9);
+        assertEquals(fromPipeline.getNegative(), treeScores[1], 1e-9);
+        assertEquals(fromPipeline.getNeutral(), treeScores[2], 1e-9);
+        assertEquals(fromPipeline.getPositive(), treeScores[3], 1e-9);
+        assertEquals(fromPipeline.getVeryPositive(), treeScores[4], 1e-9);
+    }
+
+    /**
+     * Creates POS tags and constituents from the tree the same way as the DKPro StanfordParser
+     */
+    private static Annotation createConstituents(JCas jCas, Tree tree, Iterator<Token> tokens)
+    {
+        if (tree.isPreTerminal()) {
+            Token token = tokens.next();
+            POS pos = new POS(jCas, token.getBegin(), token.getEnd());
+            pos.setPosValue(tree.value());
+            pos.addToIndexes();
+            token.setPos(pos);
+            return token;
+        }
+
+        List<Annotation> children = new ArrayList<Annotation>();
+        for (Tree child : tree.children()) {
+            children.add(createConstituents(jCas, child, tokens));
+        }
+
+        Constituent constituent = "ROOT".equals(tree.value()) ?
+                new ROOT(jCas) :
+                new Constituent(jCas);
+        constituent.setBegin(children.get(0).getBegin());
+        constituent.setEnd(children.get(children.size() - 1).getEnd());
+        constituent.setConstituentType(tree.value());
+        constituent.setChildren(FSCollectionFactory.createFSArray(jCas, children));
+        constituent.addToIndexes();
+
+        return constituent;
+    }
+
     /*
     @Ignore
 	@Test